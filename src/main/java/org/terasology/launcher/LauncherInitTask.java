@@ -9,7 +9,12 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.layout.Region;
 import javafx.stage.Stage;
 import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import org.kohsuke.github.GHRelease;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +22,8 @@ import org.terasology.launcher.game.GameManager;
 import org.terasology.launcher.model.GameIdentifier;
 import org.terasology.launcher.model.GameRelease;
 import org.terasology.launcher.model.LauncherVersion;
+import org.terasology.launcher.peers.PeerCache;
+import org.terasology.launcher.repositories.LocalRepositoryAdapter;
 import org.terasology.launcher.repositories.RepositoryManager;
 import org.terasology.launcher.settings.LauncherSettingsValidator;
 import org.terasology.launcher.settings.Settings;
@@ -37,6 +44,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -46,12 +54,35 @@ public class LauncherInitTask extends Task<LauncherConfiguration> {
 
     private static final Logger logger = LoggerFactory.getLogger(LauncherInitTask.class);
 
+    /**
+     * The directory within the cache directory for the HTTP response cache.
+     */
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+
+    /**
+     * Hosts the launcher talks to right after start-up. Connections to them are opened while the splash screen is
+     * still busy with other things, so that the first real requests don't have to wait for DNS, TCP and TLS.
+     */
+    private static final List<String> PRECONNECT_URLS = List.of(
+            "http://jenkins.terasology.io/",
+            "https://api.github.com/",
+            "https://github.com/");
+
     private final Stage owner;
     private final HostServices hostServices;
+    private final List<Path> importSources;
 
     public LauncherInitTask(final Stage newOwner, HostServices hostServices) {
+        this(newOwner, hostServices, List.of());
+    }
+
+    /**
+     * @param importSources game packages, or directories of them, to import into the cache before fetching releases
+     */
+    public LauncherInitTask(final Stage newOwner, HostServices hostServices, List<Path> importSources) {
         this.owner = newOwner;
         this.hostServices = hostServices;
+        this.importSources = importSources;
     }
 
     /**
@@ -85,12 +116,18 @@ public class LauncherInitTask extends Task<LauncherConfiguration> {
             // validate the settings
             LauncherSettingsValidator.validate(launcherSettings);
 
-            // looking for launcher updates (first network communication)
+            // one client (and connection pool) is shared by all network communication of the launcher
+            // the response cache gets a directory of its own, which it clears completely if its journal is corrupt
             final var client = new OkHttpClient.Builder()
-                    .cache(new Cache(cacheDirectory.toFile(), 10L * 1024L * 1024L /*10 MiB*/))
+                    .cache(new Cache(cacheDirectory.resolve(HTTP_CACHE_DIRECTORY).toFile(),
+                            10L * 1024L * 1024L /*10 MiB*/))
+                    .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
                     .callTimeout(10, TimeUnit.SECONDS)
                     .build();
-            checkForLauncherUpdates(downloadDirectory, tempDirectory, launcherSettings.keepDownloadedFiles.get());
+            preconnect(client);
+
+            // looking for launcher updates (first network communication)
+            checkForLauncherUpdates(client, downloadDirectory, tempDirectory, launcherSettings.keepDownloadedFiles.get());
 
             // game directories
             updateMessage(BundleUtils.getLabel("splash_initGameDirs"));
@@ -99,10 +136,15 @@ public class LauncherInitTask extends Task<LauncherConfiguration> {
 
             updateMessage(BundleUtils.getLabel("splash_fetchReleases"));
             logger.info("Fetching game releases ...");
-            final RepositoryManager repositoryManager = new RepositoryManager(client);
+            final LocalRepositoryAdapter localReleases = new LocalRepositoryAdapter(cacheDirectory);
+            if (!importSources.isEmpty()) {
+                localReleases.importPackages(importSources);
+            }
+            final RepositoryManager repositoryManager = new RepositoryManager(client, localReleases);
             Set<GameRelease> releases = repositoryManager.getReleases();
 
-            final GameManager gameManager = new GameManager(cacheDirectory, gameDirectory);
+            final GameManager gameManager = new GameManager(cacheDirectory, gameDirectory, tempDirectory,
+                    launcherSettings, client, startPeerCache(cacheDirectory, launcherSettings));
             Set<GameIdentifier> installedGames = gameManager.getInstalledGames();
 
             logger.trace("Change LauncherSettings...");
@@ -127,6 +169,22 @@ public class LauncherInitTask extends Task<LauncherConfiguration> {
         return null;
     }
 
+    /**
+     * Start sharing the cached game packages with other launchers in the local network, if enabled.
+     */
+    private PeerCache startPeerCache(Path cacheDirectory, Settings launcherSettings) {
+        if (launcherSettings.peerCache.get()) {
+            try {
+                return PeerCache.start(cacheDirectory, launcherSettings.peerCachePort.get(),
+                        launcherSettings.peerCacheHosts.get(), true);
+            } catch (IOException e) {
+                logger.warn("Could not start sharing cached game packages on port {}",
+                        launcherSettings.peerCachePort.get(), e);
+            }
+        }
+        return PeerCache.disabled();
+    }
+
     private Platform getPlatform() {
         logger.trace("Init Platform...");
         updateMessage(BundleUtils.getLabel("splash_checkOS"));
@@ -179,10 +237,34 @@ public class LauncherInitTask extends Task<LauncherConfiguration> {
         return settings;
     }
 
-    private void checkForLauncherUpdates(Path downloadDirectory, Path tempDirectory, boolean saveDownloadedFiles) {
+    /**
+     * Warm up the connection pool of the given client by sending {@code HEAD} requests to the hosts used later on.
+     * <p>
+     * The requests are sent asynchronously and their results are ignored; failures only mean that the connection is
+     * established on first use instead.
+     */
+    private void preconnect(OkHttpClient client) {
+        for (String url : PRECONNECT_URLS) {
+            final Request request = new Request.Builder().url(url).head().build();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    logger.debug("Could not pre-connect to '{}': {}", url, e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                }
+            });
+        }
+    }
+
+    private void checkForLauncherUpdates(OkHttpClient client, Path downloadDirectory, Path tempDirectory,
+                                         boolean saveDownloadedFiles) {
         logger.trace("Check for launcher updates...");
         updateMessage(BundleUtils.getLabel("splash_launcherUpdateCheck"));
-        final LauncherUpdater updater = new LauncherUpdater(LauncherVersion.getInstance());
+        final LauncherUpdater updater = new LauncherUpdater(LauncherVersion.getInstance(), client);
         final GHRelease release = updater.updateAvailable();
         if (release != null) {
             logger.info("Launcher update available: {}", release.getTagName());
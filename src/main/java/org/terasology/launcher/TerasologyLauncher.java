@@ -33,11 +33,15 @@ import org.terasology.launcher.util.HostServices;
 import org.terasology.launcher.util.Languages;
 import org.terasology.launcher.util.LauncherStartFailedException;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.stream.Collectors;
 
 public final class TerasologyLauncher extends Application {
 
@@ -46,6 +50,12 @@ public final class TerasologyLauncher extends Application {
     private static final int SPLASH_WIDTH = 800;
     private static final int SPLASH_HEIGHT = 223;
 
+    /**
+     * The named parameter listing game packages, or directories of them, to import into the cache on start, separated
+     * by the platform's path separator, e.g. {@code --import-releases=/media/usb/terasology}.
+     */
+    private static final String IMPORT_RELEASES_PARAMETER = "import-releases";
+
     private Pane splashLayout;
     private ProgressBar loadProgress;
     private Label progressText;
@@ -78,7 +88,8 @@ public final class TerasologyLauncher extends Application {
         initProxy();
         initLanguage();
 
-        final Task<LauncherConfiguration> launcherInitTask = new LauncherInitTask(initialStage, hostServices);
+        final Task<LauncherConfiguration> launcherInitTask = new LauncherInitTask(initialStage, hostServices,
+                getImportSources());
 
         showSplashStage(initialStage, launcherInitTask);
         Thread initThread = new Thread(launcherInitTask);
@@ -118,6 +129,20 @@ public final class TerasologyLauncher extends Application {
         System.setProperty("java.net.useSystemProxies", "true");
     }
 
+    /**
+     * The package files and directories to import releases from, as given on the command line.
+     */
+    private List<Path> getImportSources() {
+        final String sources = getParameters().getNamed().get(IMPORT_RELEASES_PARAMETER);
+        if (sources == null || sources.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(sources.split(File.pathSeparator))
+                .filter(source -> !source.isBlank())
+                .map(Paths::get)
+                .collect(Collectors.toList());
+    }
+
     private void showMainStage(final LauncherConfiguration launcherConfiguration) throws IOException {
         mainStage = new Stage(StageStyle.DECORATED);
 
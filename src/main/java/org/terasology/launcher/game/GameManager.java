@@ -3,61 +3,261 @@
 
 package org.terasology.launcher.game;
 
+import com.google.common.base.Suppliers;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.Checksum;
 import org.terasology.launcher.model.GameIdentifier;
 import org.terasology.launcher.model.GameRelease;
 import org.terasology.launcher.model.Profile;
+import org.terasology.launcher.peers.PeerCache;
+import org.terasology.launcher.settings.Settings;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressAggregator;
 import org.terasology.launcher.tasks.ProgressListener;
+import org.terasology.launcher.util.BandwidthLimiter;
+import org.terasology.launcher.util.DeltaPatch;
+import org.terasology.launcher.util.DiskSpaceLedger;
 import org.terasology.launcher.util.DownloadException;
+import org.terasology.launcher.util.DownloadSources;
 import org.terasology.launcher.util.DownloadUtils;
+import org.terasology.launcher.util.FileDigest;
 import org.terasology.launcher.util.FileUtils;
+import org.terasology.launcher.util.HostStatistics;
+import org.terasology.launcher.util.PackageCache;
+import org.terasology.launcher.util.RemoteResource;
+import org.terasology.launcher.util.RemoteZip;
+import org.terasology.launcher.util.ZipExtractor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class GameManager {
 
     private static final Logger logger = LoggerFactory.getLogger(GameManager.class);
 
+    /**
+     * The file in the cache directory in which the throughput observed per download host is kept.
+     */
+    private static final String HOST_STATISTICS_FILE = "mirror-statistics.properties";
+
+    /**
+     * The maximum number of installed releases for which a patch to a new release is looked for.
+     */
+    private static final int MAX_INSTALL_BASES = 3;
+
+    /**
+     * A release is only assembled from an installed release and parts of its package if that saves at least half of
+     * the download. Otherwise, the whole package is downloaded and kept in the cache.
+     */
+    private static final double MAX_PARTIAL_FETCH_RATIO = 0.5;
+
+    /**
+     * The extracted files of a package are assumed to take this many times the size of the package if its central
+     * directory cannot be read before the download.
+     */
+    private static final double EXTRACTED_SIZE_ESTIMATE = 2.0;
+
     private final Path cacheDirectory;
     private final Path installDirectory;
+    private final Settings settings;
+    private final OkHttpClient httpClient;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final HostStatistics hostStatistics;
+    private final DiskSpaceLedger diskSpace = new DiskSpaceLedger();
+    private final PeerCache peerCache;
+    private final PackageCache packageCache;
+    private final ZipExtractor zipExtractor = new ZipExtractor();
+    private final StagingArea stagingArea;
+    private final JarOptimizer jarOptimizer = new JarOptimizer(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The disk space reserved for the installations which are in progress.
+     */
+    private final Map<GameIdentifier, DiskSpaceLedger.Reservation> reservations = new ConcurrentHashMap<>();
+
+    /**
+     * The actions which release the resources of the installations in progress if they are cancelled.
+     */
+    private final Map<GameIdentifier, ProgressListener.Registration> cancelActions = new ConcurrentHashMap<>();
+
+    /**
+     * The cached packages of the installations which are in progress.
+     */
+    private final Map<GameIdentifier, Path> inUse = new ConcurrentHashMap<>();
+
+    /**
+     * Held while an installation is changed: committed, repaired, removed, or its jars repacked.
+     */
+    private final Map<GameIdentifier, Lock> installationLocks = new ConcurrentHashMap<>();
 
     //TODO: should this be a map to installation metadata (install date, path, ...)?
     private final ObservableSet<GameIdentifier> installedGames;
 
-    public GameManager(Path cacheDirectory, Path installDirectory) {
+    public GameManager(Path cacheDirectory, Path installDirectory, Settings settings, OkHttpClient httpClient) {
+        this(cacheDirectory, installDirectory, settings, httpClient, PeerCache.disabled());
+    }
+
+    /**
+     * @param peerCache the other launchers in the local network to fetch packages from before downloading them
+     */
+    public GameManager(Path cacheDirectory, Path installDirectory, Settings settings, OkHttpClient httpClient,
+                       PeerCache peerCache) {
+        this(cacheDirectory, installDirectory, null, settings, httpClient, peerCache);
+    }
+
+    /**
+     * @param tempDirectory the directory to stage installations in before they are moved to their installation
+     *                      directory, or {@code null} to stage them next to the installations
+     * @param peerCache     the other launchers in the local network to fetch packages from before downloading them
+     */
+    public GameManager(Path cacheDirectory, Path installDirectory, Path tempDirectory, Settings settings,
+                       OkHttpClient httpClient, PeerCache peerCache) {
         this.cacheDirectory = cacheDirectory;
         this.installDirectory = installDirectory;
+        this.stagingArea = new StagingArea(tempDirectory, installDirectory);
+        this.settings = settings;
+        this.httpClient = httpClient;
+        this.bandwidthLimiter = new BandwidthLimiter(toBytesPerSecond(settings.downloadBandwidthLimit.get()));
+        settings.downloadBandwidthLimit.addListener((observable, oldValue, newValue) ->
+                bandwidthLimiter.setBytesPerSecond(toBytesPerSecond(newValue.intValue())));
+        this.hostStatistics = HostStatistics.load(getHostStatisticsFile());
+        this.peerCache = peerCache;
+        this.packageCache = new PackageCache(cacheDirectory, () -> settings.packageCacheLimit.get() * 1024L * 1024L,
+                settings.keepDownloadedFiles::get, this::getInstalledPackages);
         installedGames = FXCollections.observableSet();
         scanInstallationDir();
+        settings.optimizeJars.addListener((observable, oldValue, enabled) -> {
+            for (GameIdentifier id : List.copyOf(installedGames)) {
+                if (enabled) {
+                    jarOptimizer.optimizeLater(getInstallDirectory(id), getInstallationLock(id));
+                } else {
+                    jarOptimizer.restoreLater(getInstallDirectory(id), getInstallationLock(id));
+                }
+            }
+        });
+        packageCache.start();
+        stagingArea.cleanUpLater();
+    }
+
+    private Path getCachedPackage(GameRelease release) {
+        return cacheDirectory.resolve(getFileNameFor(release));
     }
 
     /**
      * Derive the file name for the downloaded ZIP package from the game release.
      */
-    private String getFileNameFor(GameRelease release) {
-        GameIdentifier id = release.getId();
+    private static String getFileNameFor(GameRelease release) {
+        return getFileNameFor(release.getId());
+    }
+
+    /**
+     * Derive the file name for the downloaded ZIP package from the game identifier.
+     */
+    public static String getFileNameFor(GameIdentifier id) {
         String profileString = id.getProfile().toString().toLowerCase();
         String versionString = id.getDisplayVersion();
         String buildString = id.getBuild().toString().toLowerCase();
         return "terasology-" + profileString + "-" + versionString + "-" + buildString + ".zip";
     }
 
+    public PeerCache getPeerCache() {
+        return peerCache;
+    }
+
+    public PackageCache.Statistics getPackageCacheStatistics() {
+        return packageCache.getStatistics();
+    }
+
+    /**
+     * The file names of the packages of the releases which are installed, as found on disk.
+     */
+    private Set<String> getInstalledPackages() {
+        return findInstalledGames().stream().map(GameManager::getFileNameFor).collect(Collectors.toSet());
+    }
+
+    private Path getHostStatisticsFile() {
+        return cacheDirectory.resolve(HOST_STATISTICS_FILE);
+    }
+
+    /**
+     * The URLs the package of the given release can be downloaded from: the URL published by the repository, and the
+     * same file on each of the configured mirrors.
+     *
+     * @throws IllegalArgumentException if there are no such URLs, e.g. for an imported release without mirrors
+     */
+    private DownloadSources getDownloadSources(GameRelease release) {
+        final List<URL> urls = new ArrayList<>();
+        // releases imported from local files have no URL to download them from again
+        if (release.getUrl().getProtocol().startsWith("http")) {
+            urls.add(release.getUrl());
+        }
+        urls.addAll(getMirrorUrls(getFileNameFor(release)));
+        return new DownloadSources(urls, hostStatistics);
+    }
+
+    /**
+     * The URLs of the given file on each of the configured mirrors.
+     */
+    private List<URL> getMirrorUrls(String fileName) {
+        final List<URL> urls = new ArrayList<>();
+        for (String mirror : settings.downloadMirrors) {
+            final String base = mirror.endsWith("/") ? mirror : mirror + "/";
+            try {
+                urls.add(new URL(base + fileName));
+            } catch (MalformedURLException e) {
+                logger.warn("Ignoring invalid download mirror '{}'", mirror, e);
+            }
+        }
+        return urls;
+    }
+
+    private void storeHostStatistics() {
+        try {
+            hostStatistics.store(getHostStatisticsFile());
+        } catch (IOException e) {
+            logger.warn("Could not store download host statistics", e);
+        }
+    }
+
+    /**
+     * Create a bandwidth limit for a single installation, which is bound by the launcher-wide limit as well.
+     * <p>
+     * The limit can be changed while the installation is running.
+     *
+     * @param bytesPerSecond the maximum download rate of the installation, {@code 0} for no limit of its own
+     */
+    public BandwidthLimiter newBandwidthLimiter(long bytesPerSecond) {
+        return bandwidthLimiter.newChild(bytesPerSecond);
+    }
+
     /**
      * Installs the given release to the local file system.
      *
@@ -65,57 +265,670 @@ public class GameManager {
      * @param listener the object which is to be informed about task progress
      */
     public void install(GameRelease release, ProgressListener listener) throws IOException, DownloadException, InterruptedException {
-        final Path cachedZip = cacheDirectory.resolve(getFileNameFor(release));
+        install(release, listener, newBandwidthLimiter(0));
+    }
 
-        // TODO: Properly validate cache and handle exceptions
-        if (Files.notExists(cachedZip)) {
-            download(release, cachedZip, listener);
+    /**
+     * Installs the given release to the local file system, downloading it at most at the rate granted by
+     * {@code limiter}.
+     *
+     * @param release  the game release to be installed
+     * @param listener the object which is to be informed about task progress
+     * @param limiter  the bandwidth limit of this installation, see {@link #newBandwidthLimiter(long)}
+     */
+    public void install(GameRelease release, ProgressListener listener, BandwidthLimiter limiter)
+            throws IOException, DownloadException, InterruptedException {
+        if (!fetch(release, listener, limiter) && !listener.isCancelled()) {
+            extract(release, listener);
+        }
+    }
+
+    /**
+     * The first stage of an installation: make sure the package of the given release is in the cache.
+     * <p>
+     * If the package is not cached yet, the release may be installed completely in this stage: from an installed
+     * release of the same line and a delta patch or the changed parts of the package, or by extracting the package
+     * while it is downloaded (if the launcher is set to do so). Then {@link #extract(GameRelease, ProgressListener)}
+     * must not be called afterwards.
+     * <p>
+     * Before anything is written, the disk space needed for the package and its extracted files is reserved. If other
+     * installations have reserved the space, this waits until they are done; if there is not enough space at all, the
+     * installation fails right away.
+     *
+     * @param release  the game release to be installed
+     * @param listener the object which is to be informed about task progress
+     * @param limiter  the bandwidth limit of this installation, see {@link #newBandwidthLimiter(long)}
+     * @return whether the release was installed already
+     */
+    public boolean fetch(GameRelease release, ProgressListener listener, BandwidthLimiter limiter)
+            throws IOException, DownloadException, InterruptedException {
+        return fetch(release, listener, limiter, true);
+    }
+
+    /**
+     * Make sure the package of the given release is in the cache, see
+     * {@link #fetch(GameRelease, ProgressListener, BandwidthLimiter)}.
+     *
+     * @param release  the game release to be fetched
+     * @param listener the object which is to be informed about task progress
+     * @param limiter  the bandwidth limit of this download, see {@link #newBandwidthLimiter(long)}
+     * @param install  whether the release is being installed; if not, the complete package is downloaded into the cache
+     *                 so that it can be installed later without waiting for the download, and nothing else is written
+     * @return whether the release was installed already, which is never the case if {@code install} is not set
+     */
+    public boolean fetch(GameRelease release, ProgressListener listener, BandwidthLimiter limiter, boolean install)
+            throws IOException, DownloadException, InterruptedException {
+        final Path cachedZip = getCachedPackage(release);
+        final Path extractDir = install ? stagingArea.newDirectory(release.getId()) : null;
+        final ProgressAggregator progress = new ProgressAggregator(listener);
+        final Set<String> algorithms = getDigestAlgorithmsFor(release);
+        // only needed if the package has to be downloaded, which releases imported from local files cannot be
+        final Supplier<DownloadSources> sources = Suppliers.memoize(() -> getDownloadSources(release));
+
+        // the package must not be evicted from the cache while it is checked and used
+        if (inUse.putIfAbsent(release.getId(), cachedZip) == null) {
+            packageCache.pin(cachedZip);
+        }
+        boolean extractionPending = false;
+        try {
+            if (Files.exists(cachedZip) && !isValidCache(release, cachedZip, algorithms, progress)) {
+                logger.warn("Discarding invalid cached package '{}'", cachedZip);
+                Files.delete(cachedZip);
+                FileDigest.delete(cachedZip);
+            }
+            if (Files.exists(cachedZip)) {
+                packageCache.hit(cachedZip);
+            } else {
+                packageCache.miss(cachedZip);
+            }
+
+            if (!reserveSpace(release, sources, cachedZip, install, listener)) {
+                return false;
+            }
+            final Path cacheZipPart = getPartFileFor(cachedZip);
+            if (Files.notExists(cachedZip) && Files.notExists(DownloadUtils.getStateFileFor(cacheZipPart))) {
+                fetchFromPeers(release, cachedZip, algorithms, limiter, progress);
+            }
+            final boolean installed = install
+                    ? fetchPackage(release, listener, limiter, cachedZip, extractDir, progress, algorithms, sources)
+                    : downloadPackage(release, sources, cachedZip, algorithms, limiter, progress);
+            extractionPending = install && !installed && !listener.isCancelled();
+            if (extractionPending) {
+                // the package is in the cache, only the space for its extracted files is still needed
+                Optional.ofNullable(reservations.get(release.getId()))
+                        .ifPresent(reservation -> reservation.release(cacheDirectory));
+            }
+            return installed;
+        } finally {
+            if (extractDir != null) {
+                stagingArea.release(extractDir);
+            }
+            if (!extractionPending) {
+                releaseResources(release.getId());
+            }
+        }
+    }
+
+    /**
+     * The part of {@link #fetch(GameRelease, ProgressListener, BandwidthLimiter, boolean)} which runs once the disk
+     * space is reserved.
+     */
+    private boolean fetchPackage(GameRelease release, ProgressListener listener, BandwidthLimiter limiter,
+                                 Path cachedZip, Path extractDir, ProgressAggregator progress, Set<String> algorithms,
+                                 Supplier<DownloadSources> sources)
+            throws IOException, DownloadException, InterruptedException {
+        final Path cacheZipPart = getPartFileFor(cachedZip);
+        if (Files.notExists(cachedZip) && Files.notExists(DownloadUtils.getStateFileFor(cacheZipPart))
+                && installFromPatch(release, extractDir, limiter, progress)) {
+            return finishInstallation(release, extractDir, listener);
+        }
+
+        if (Files.notExists(cachedZip) && Files.notExists(DownloadUtils.getStateFileFor(cacheZipPart))
+                && !settings.keepDownloadedFiles.get() && release.getChecksum().isEmpty()
+                && installFromRemoteZip(release, sources.get(), extractDir, limiter, progress)) {
+            return finishInstallation(release, extractDir, listener);
+        }
+
+        // a partial download is continued rather than started over as a stream
+        if (settings.streamingInstall.get() && Files.notExists(cachedZip)
+                && Files.notExists(DownloadUtils.getStateFileFor(cacheZipPart))) {
+            try {
+                installStreaming(release, sources.get(), cachedZip, extractDir, algorithms, limiter, progress);
+                return finishInstallation(release, extractDir, listener);
+            } catch (IOException | DownloadException e) {
+                logger.warn("Streaming installation of '{}' failed, downloading the package first", release.getId(), e);
+                deleteQuietly(extractDir);
+            } finally {
+                storeHostStatistics();
+            }
         }
 
         if (!listener.isCancelled()) {
-            final Path extractDir = getInstallDirectory(release.getId());
-            FileUtils.extractZipTo(cachedZip, extractDir);
-            Platform.runLater(() -> installedGames.add(release.getId()));
-            logger.info("Finished installing package: {}", release.getId());
+            downloadPackage(release, sources, cachedZip, algorithms, limiter, progress);
         }
+        return false;
     }
 
-    private void download(GameRelease release, Path targetLocation, ProgressListener listener) throws DownloadException, IOException, InterruptedException {
-        final URL downloadUrl = release.getUrl();
+    /**
+     * Download the package of the given release into the cache, unless it is cached already.
+     *
+     * @return {@code false}, as the release is not installed yet
+     */
+    private boolean downloadPackage(GameRelease release, Supplier<DownloadSources> sources, Path cachedZip,
+                                    Set<String> algorithms, BandwidthLimiter limiter, ProgressAggregator progress)
+            throws IOException, DownloadException, InterruptedException {
+        if (Files.notExists(cachedZip)) {
+            try {
+                download(release, sources.get(), cachedZip, algorithms, limiter, progress);
+            } finally {
+                storeHostStatistics();
+            }
+        }
+        return false;
+    }
 
-        final long contentLength = DownloadUtils.getContentLength(downloadUrl);
-        final long availableSpace = targetLocation.getParent().toFile().getUsableSpace();
+    /**
+     * Download the package of the given release into the cache from other launchers in the local network, if any of
+     * them has it.
+     * <p>
+     * Only releases with a published checksum are fetched from peers, as a package from a peer can only be trusted if
+     * it matches that checksum. If the download fails, the partial package is discarded, so that it is downloaded from
+     * the upstream sources afterwards.
+     */
+    private void fetchFromPeers(GameRelease release, Path cachedZip, Set<String> algorithms,
+                                BandwidthLimiter limiter, ProgressAggregator progress) throws InterruptedException {
+        if (release.getChecksum().isEmpty()) {
+            return;
+        }
+        final List<URL> urls = peerCache.locate(httpClient, getFileNameFor(release));
+        if (urls.isEmpty() || progress.isCancelled()) {
+            return;
+        }
+        logger.info("Fetching '{}' from peers {}", release.getId(), urls);
+        try {
+            download(release, new DownloadSources(urls, hostStatistics), cachedZip, algorithms, limiter, progress);
+        } catch (IOException | DownloadException e) {
+            logger.warn("Could not fetch '{}' from peers, downloading it from upstream", release.getId(), e);
+            final Path cacheZipPart = getPartFileFor(cachedZip);
+            try {
+                Files.deleteIfExists(cacheZipPart);
+                Files.deleteIfExists(DownloadUtils.getStateFileFor(cacheZipPart));
+            } catch (IOException deleteFailure) {
+                logger.warn("Could not remove partial download '{}'", cacheZipPart, deleteFailure);
+            }
+        }
+    }
 
-        if (availableSpace >= contentLength) {
-            final Path cacheZipPart = targetLocation.resolveSibling(targetLocation.getFileName().toString() + ".part");
-            Files.deleteIfExists(cacheZipPart);
+    /**
+     * The second stage of an installation: extract the cached package of the given release into its installation
+     * directory.
+     * <p>
+     * If the installation directory exists already, e.g. because the release is reinstalled, it is repaired in place
+     * instead: only the files which differ from the package are rewritten (see {@link ZipExtractor#repair}).
+     *
+     * @param release  the game release to be installed
+     * @param listener the object which is to be informed about task progress
+     */
+    public void extract(GameRelease release, ProgressListener listener) throws IOException {
+        final Path installation = getInstallDirectory(release.getId());
+        if (Files.isDirectory(installation)) {
             try {
-                DownloadUtils.downloadToFile(downloadUrl, cacheZipPart, listener).get();
-            } catch (ExecutionException e) {
-                throw new DownloadException("Exception while downloading " + downloadUrl, e.getCause());
+                repair(release, installation, listener);
+            } finally {
+                releaseResources(release.getId());
+            }
+            return;
+        }
+        Path staging = null;
+        try {
+            staging = stagingArea.newDirectory(release.getId());
+            zipExtractor.extract(getCachedPackage(release), staging, listener);
+            finishInstallation(release, staging, listener);
+        } finally {
+            if (staging != null) {
+                stagingArea.release(staging);
             }
+            releaseResources(release.getId());
+        }
+    }
 
-            if (!listener.isCancelled()) {
-                Files.move(cacheZipPart, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+    private void repair(GameRelease release, Path installation, ProgressListener listener) throws IOException {
+        final Lock lock = getInstallationLock(release.getId());
+        lock.lock();
+        try {
+            // the installation is incomplete until the repair is done
+            Files.deleteIfExists(installation.resolve(StagingArea.INSTALLED_MARKER));
+            // the jars which are rewritten drop out of the record of the repacked jars by themselves
+            if (!zipExtractor.repair(getCachedPackage(release), installation, listener,
+                    Set.of(StagingArea.INSTALLED_MARKER, JarOptimizer.RECORD_FILE))) {
+                return;
             }
+            StagingArea.markInstalled(installation);
+        } finally {
+            lock.unlock();
+        }
+        Platform.runLater(() -> installedGames.add(release.getId()));
+        optimizeLater(release.getId());
+        logger.info("Finished repairing package: {}", release.getId());
+    }
+
+    /**
+     * Reserve the disk space needed to install the given release: for the package in the cache, unless it is cached
+     * already, and for the extracted files if the release is being installed. The size of the extracted files is read
+     * from the central directory of the package, remotely by range requests if the package is not cached.
+     * <p>
+     * The reservation is released when the installation is done, fails, or is cancelled.
+     *
+     * @return whether the space was reserved, i.e. {@code false} if cancelled while waiting for other installations
+     */
+    private boolean reserveSpace(GameRelease release, Supplier<DownloadSources> sources, Path cachedZip,
+                                 boolean install, ProgressListener listener) throws IOException, InterruptedException {
+        final long packageSize;
+        final long extractedSize;
+        if (Files.exists(cachedZip)) {
+            packageSize = 0;
+            extractedSize = install ? FileUtils.getUncompressedSize(cachedZip) : 0;
         } else {
-            throw new DownloadException("Insufficient space for downloading package");
+            final RemoteResource resource = DownloadUtils.probeAny(httpClient, sources.get());
+            final long contentLength = Math.max(0, resource.getContentLength());
+            final Path cacheZipPart = getPartFileFor(cachedZip);
+            // a partial download has been preallocated, so its space is taken already
+            packageSize = Files.exists(cacheZipPart)
+                    ? Math.max(0, contentLength - Files.size(cacheZipPart)) : contentLength;
+            extractedSize = install ? getExtractedSize(resource) : 0;
+        }
+        final Map<Path, Long> needs = new HashMap<>();
+        needs.put(cacheDirectory, packageSize);
+        needs.merge(installDirectory, extractedSize, Long::sum);
+
+        final DiskSpaceLedger.Reservation reservation = diskSpace.reserve(needs, listener::isCancelled);
+        if (reservation == null) {
+            return false;
+        }
+        reservations.put(release.getId(), reservation);
+        cancelActions.put(release.getId(), listener.onCancel(() -> releaseResources(release.getId())));
+        logger.debug("Reserved {} for the package and {} for the files of {}", Progress.formatBytes(packageSize),
+                Progress.formatBytes(extractedSize), release.getId());
+        return true;
+    }
+
+    private long getExtractedSize(RemoteResource resource) {
+        if (resource.acceptsRanges()) {
+            try {
+                return RemoteZip.open(httpClient, resource).getUncompressedSize();
+            } catch (IOException e) {
+                logger.debug("Could not read the central directory of {}", resource.getUrl(), e);
+            }
+        }
+        return (long) (EXTRACTED_SIZE_ESTIMATE * Math.max(0, resource.getContentLength()));
+    }
+
+    /**
+     * Release the disk space reserved for an installation, and allow its package to be evicted from the cache.
+     */
+    private void releaseResources(GameIdentifier id) {
+        final ProgressListener.Registration cancelAction = cancelActions.remove(id);
+        if (cancelAction != null) {
+            cancelAction.close();
+        }
+        final DiskSpaceLedger.Reservation reservation = reservations.remove(id);
+        if (reservation != null) {
+            reservation.close();
+        }
+        final Path cachedZip = inUse.remove(id);
+        if (cachedZip != null) {
+            packageCache.unpin(cachedZip);
+        }
+    }
+
+    /**
+     * Move the staged installation of the release to its installation directory and record the release as installed,
+     * unless the installation was cancelled.
+     *
+     * @return whether the release was installed
+     */
+    private boolean finishInstallation(GameRelease release, Path staging, ProgressListener listener)
+            throws IOException {
+        if (listener.isCancelled()) {
+            return false;
         }
+        final Lock lock = getInstallationLock(release.getId());
+        lock.lock();
+        try {
+            stagingArea.commit(staging, getInstallDirectory(release.getId()));
+        } finally {
+            lock.unlock();
+        }
+        Platform.runLater(() -> installedGames.add(release.getId()));
+        logger.info("Finished installing package: {}", release.getId());
+        optimizeLater(release.getId());
+        return true;
+    }
+
+    /**
+     * Extract the game package into the installation directory while it is being downloaded.
+     * <p>
+     * If the launcher is set to keep downloaded files, the package is written to the cache at the same time. The
+     * package is streamed from the fastest source; as a stream cannot switch sources midway, a failure falls back to
+     * the segmented download.
+     */
+    private void installStreaming(GameRelease release, DownloadSources sources, Path cachedZip, Path extractDir,
+                                  Set<String> algorithms, BandwidthLimiter limiter, ProgressAggregator progress)
+            throws IOException, DownloadException {
+        final Path cacheZipPart = getPartFileFor(cachedZip);
+        final Path teeFile = settings.keepDownloadedFiles.get() ? cacheZipPart : null;
+        final URL source = DownloadUtils.selectSource(httpClient, sources);
+        try {
+            final Map<String, String> digests = DownloadUtils.downloadToConsumer(httpClient, source, teeFile,
+                    progress, algorithms, limiter, in -> FileUtils.extractZipStreamTo(in, extractDir));
+            if (progress.isCancelled()) {
+                return;
+            }
+            verifyChecksum(release, digests);
+            if (teeFile != null) {
+                Files.move(cacheZipPart, cachedZip, StandardCopyOption.ATOMIC_MOVE);
+                FileDigest.of(cachedZip, digests).store(cachedZip);
+            }
+        } finally {
+            Files.deleteIfExists(cacheZipPart);
+        }
+        logger.info("Finished streaming installation of package: {}", release.getId());
+    }
+
+    /**
+     * Install the given release from an installed release of the same profile and build and a delta patch between the
+     * two, if a mirror provides one.
+     * <p>
+     * The installed releases closest to the target version are tried first. The patches are expected next to the
+     * packages on the mirrors, see {@link #getPatchFileName(GameRelease, GameIdentifier)}. Every file created from a
+     * patch is verified against the patch's manifest. That manifest comes from the same mirror as the patch, and there
+     * is no package to check the release's checksum against, so patches are only used for releases which publish no
+     * checksum.
+     *
+     * @return whether the installation is done, i.e. it succeeded or was cancelled; if not, the full package is needed
+     */
+    private boolean installFromPatch(GameRelease release, Path extractDir, BandwidthLimiter limiter,
+                                     ProgressAggregator progress) throws InterruptedException {
+        if (settings.downloadMirrors.isEmpty() || release.getChecksum().isPresent()) {
+            return false;
+        }
+        for (GameIdentifier base : findInstallBases(release.getId())) {
+            if (JarOptimizer.isOptimized(getInstallDirectory(base))) {
+                // the patches are made against the jars as they are in the packages
+                continue;
+            }
+            final List<URL> urls = findPatches(release, base);
+            if (urls.isEmpty()) {
+                continue;
+            }
+            final Path patchFile = cacheDirectory.resolve(getPatchFileName(release, base));
+            try {
+                DownloadUtils.downloadToFile(httpClient, new DownloadSources(urls, hostStatistics), patchFile, progress,
+                        settings.downloadSegments.get(), Set.of(), limiter).get();
+                if (progress.isCancelled()) {
+                    return true;
+                }
+                progress.startPhase(Progress.Phase.EXTRACT, -1);
+                DeltaPatch.apply(patchFile, getInstallDirectory(base), extractDir, progress::isCancelled);
+                progress.finishPhase();
+                logger.info("Installed {} from a patch against {}", release.getId(), base);
+                return true;
+            } catch (IOException | DownloadException | ExecutionException e) {
+                logger.warn("Could not install {} from a patch against {}", release.getId(), base, e);
+                deleteQuietly(extractDir);
+            } finally {
+                storeHostStatistics();
+                try {
+                    Files.deleteIfExists(patchFile);
+                    Files.deleteIfExists(DownloadUtils.getStateFileFor(patchFile));
+                } catch (IOException e) {
+                    logger.warn("Could not remove patch '{}'", patchFile, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Install the given release from the closest installed release of the same profile and build, fetching only the
+     * entries of the package which changed.
+     * <p>
+     * This reads the central directory of the remote package with range requests and compares the CRC-32 of each entry
+     * to the installed files. Unchanged files are copied, the changed entries are fetched by range and verified
+     * against their CRC-32. The CRC-32 values come from the same server as the entries, and there is no complete
+     * package to check the release's checksum against, so this is only used for releases which publish no checksum,
+     * and not if the launcher is set to keep downloaded files.
+     *
+     * @return whether the installation is done, i.e. it succeeded or was cancelled; if not, the full package is needed
+     */
+    private boolean installFromRemoteZip(GameRelease release, DownloadSources sources, Path extractDir,
+                                         BandwidthLimiter limiter, ProgressAggregator progress) {
+        final List<GameIdentifier> bases = findInstallBases(release.getId());
+        if (bases.isEmpty()) {
+            return false;
+        }
+        final GameIdentifier base = bases.get(0);
+        try {
+            final URL source = DownloadUtils.selectSource(httpClient, sources);
+            final RemoteResource resource = DownloadUtils.probe(httpClient, source);
+            if (!resource.acceptsRanges() || resource.getContentLength() <= 0) {
+                return false;
+            }
+            final RemoteZip.Plan plan = RemoteZip.open(httpClient, resource).plan(getInstallDirectory(base));
+            final long fetchBytes = plan.getFetchBytes();
+            if (fetchBytes > MAX_PARTIAL_FETCH_RATIO * resource.getContentLength()) {
+                logger.debug("{} differs too much from {} for a partial download", release.getId(), base);
+                return false;
+            }
+            plan.extractTo(extractDir, progress, limiter);
+            logger.info("Installed {} from {}, fetched {} of {} ({} of {} files)", release.getId(), base,
+                    Progress.formatBytes(fetchBytes), Progress.formatBytes(resource.getContentLength()),
+                    plan.getFetched().size(), plan.getFetched().size() + plan.getReused().size());
+            return true;
+        } catch (IOException | DownloadException e) {
+            if (progress.isCancelled()) {
+                return true;
+            }
+            logger.warn("Could not install {} from parts of its package, downloading all of it", release.getId(), e);
+            deleteQuietly(extractDir);
+            return false;
+        } finally {
+            storeHostStatistics();
+        }
+    }
+
+    /**
+     * The installed releases an installation of {@code target} could be based on, closest version first: older
+     * versions before newer ones, as updates usually go from one release to the next.
+     */
+    private List<GameIdentifier> findInstallBases(GameIdentifier target) {
+        final Path lineDirectory = getInstallDirectory(target).getParent();
+        final List<GameIdentifier> older = new ArrayList<>();
+        final List<GameIdentifier> newer = new ArrayList<>();
+        try (var directories = Files.list(lineDirectory)) {
+            directories.filter(Files::isDirectory)
+                    .filter(StagingArea::isInstalled)
+                    .map(d -> new GameIdentifier(d.getFileName().toString(), target.getBuild(), target.getProfile()))
+                    .filter(id -> !id.equals(target))
+                    .forEach(id -> (compareVersions(id.getDisplayVersion(), target.getDisplayVersion()) < 0
+                            ? older : newer).add(id));
+        } catch (IOException e) {
+            logger.debug("No installed releases to patch from in {}", lineDirectory, e);
+            return List.of();
+        }
+        older.sort((a, b) -> compareVersions(b.getDisplayVersion(), a.getDisplayVersion()));
+        newer.sort((a, b) -> compareVersions(a.getDisplayVersion(), b.getDisplayVersion()));
+        older.addAll(newer);
+        return older.subList(0, Math.min(MAX_INSTALL_BASES, older.size()));
+    }
+
+    /**
+     * The mirror URLs which provide a patch from {@code base} to {@code release}.
+     */
+    private List<URL> findPatches(GameRelease release, GameIdentifier base) {
+        final List<URL> urls = new ArrayList<>();
+        for (URL url : getMirrorUrls(getPatchFileName(release, base))) {
+            try {
+                DownloadUtils.probe(httpClient, url);
+                urls.add(url);
+            } catch (DownloadException e) {
+                logger.debug("No patch at {}: {}", url, e.getMessage());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * The name under which mirrors provide the patch from {@code base} to {@code release}, e.g.
+     * {@code terasology-omega-5.2.0+1234-nightly.from-5.2.0+1233.patch}.
+     */
+    private String getPatchFileName(GameRelease release, GameIdentifier base) {
+        final String packageName = getFileNameFor(release);
+        return packageName.substring(0, packageName.length() - ".zip".length())
+                + ".from-" + base.getDisplayVersion() + ".patch";
+    }
+
+    /**
+     * Compare version strings by their numeric and non-numeric parts, so that e.g. {@code 5.10.0} is newer than
+     * {@code 5.9.0} and {@code +1234} is newer than {@code +998}.
+     */
+    private static int compareVersions(String a, String b) {
+        final String[] partsA = a.split("(?<=\\d)(?=\\D)|(?<=\\D)(?=\\d)");
+        final String[] partsB = b.split("(?<=\\d)(?=\\D)|(?<=\\D)(?=\\d)");
+        for (int i = 0; i < Math.min(partsA.length, partsB.length); i++) {
+            final boolean numeric = Character.isDigit(partsA[i].charAt(0)) && Character.isDigit(partsB[i].charAt(0));
+            final int result = numeric
+                    ? new BigInteger(partsA[i]).compareTo(new BigInteger(partsB[i]))
+                    : partsA[i].compareTo(partsB[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(partsA.length, partsB.length);
+    }
+
+    private void download(GameRelease release, DownloadSources sources, Path targetLocation, Set<String> algorithms,
+                          BandwidthLimiter limiter, ProgressAggregator progress)
+            throws DownloadException, IOException, InterruptedException {
+        // the disk space has been reserved by fetch(), and a previous partial download is continued if possible
+        final Path cacheZipPart = getPartFileFor(targetLocation);
+        final Map<String, String> digests;
+        try {
+            digests = DownloadUtils.downloadToFile(httpClient, sources, cacheZipPart, progress,
+                    settings.downloadSegments.get(), algorithms, limiter).get();
+        } catch (ExecutionException e) {
+            throw new DownloadException("Exception while downloading " + release.getUrl(), e.getCause());
+        }
+
+        if (progress.isCancelled()) {
+            // the partial download is kept, to be resumed the next time
+            return;
+        }
+        try {
+            verifyChecksum(release, digests);
+        } catch (DownloadException e) {
+            // the content is wrong, so there is nothing worth resuming
+            Files.deleteIfExists(cacheZipPart);
+            Files.deleteIfExists(DownloadUtils.getStateFileFor(cacheZipPart));
+            throw e;
+        }
+        Files.move(cacheZipPart, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+        FileDigest.of(targetLocation, digests).store(targetLocation);
 
         logger.info("Finished downloading package: {}", release.getId());
     }
 
+    /**
+     * The digests to compute for the package of the given release: SHA-256 for the cache, plus whatever the repository
+     * publishes a checksum with.
+     */
+    private static Set<String> getDigestAlgorithmsFor(GameRelease release) {
+        final Set<String> algorithms = new LinkedHashSet<>();
+        algorithms.add(FileDigest.SHA_256);
+        release.getChecksum().ifPresent(checksum -> algorithms.add(checksum.getAlgorithm()));
+        return algorithms;
+    }
+
+    /**
+     * Check whether the cached package of a release is intact.
+     * <p>
+     * The digests recorded when the package was downloaded are trusted as long as the file's size and modification time
+     * are unchanged. Otherwise, the file is hashed again, which fails the check if its content changed in the meantime.
+     */
+    private boolean isValidCache(GameRelease release, Path cachedZip, Set<String> algorithms,
+                                 ProgressAggregator progress) throws IOException {
+        final Optional<FileDigest> recorded = FileDigest.load(cachedZip);
+        FileDigest digest = recorded.filter(d -> d.isCurrent(cachedZip) && d.hasAll(algorithms)).orElse(null);
+        if (digest == null) {
+            logger.debug("Verifying cached package '{}'", cachedZip);
+            digest = FileDigest.compute(cachedZip, algorithms, progress);
+            if (progress.isCancelled()) {
+                return true;
+            }
+            final Optional<String> previous = recorded.flatMap(d -> d.get(FileDigest.SHA_256));
+            if (previous.isPresent() && !previous.get().equals(digest.get(FileDigest.SHA_256).orElse(null))) {
+                logger.warn("Cached package '{}' has changed since it was downloaded", cachedZip);
+                return false;
+            }
+            digest.store(cachedZip);
+        }
+        final Optional<Checksum> expected = release.getChecksum();
+        if (expected.isPresent() && !expected.get().matches(digest.get(expected.get().getAlgorithm()).orElse(null))) {
+            logger.warn("Cached package '{}' does not match the published checksum {}", cachedZip, expected.get());
+            return false;
+        }
+        return true;
+    }
+
+    private static void verifyChecksum(GameRelease release, Map<String, String> digests) throws DownloadException {
+        final Optional<Checksum> expected = release.getChecksum();
+        if (expected.isPresent()) {
+            final String actual = digests.get(expected.get().getAlgorithm());
+            if (!expected.get().matches(actual)) {
+                throw new DownloadException("Checksum mismatch for " + release.getUrl() + ": expected "
+                        + expected.get() + ", got " + actual);
+            }
+            logger.debug("Verified {} of {}", expected.get(), release.getId());
+        }
+    }
+
+    private static long toBytesPerSecond(int kibPerSecond) {
+        return Math.max(0, kibPerSecond) * 1024L;
+    }
+
+    private static Path getPartFileFor(Path cachedZip) {
+        return cachedZip.resolveSibling(cachedZip.getFileName().toString() + ".part");
+    }
+
+    private static void deleteQuietly(Path directory) {
+        if (Files.exists(directory)) {
+            try {
+                FileUtils.delete(directory);
+            } catch (IOException e) {
+                logger.warn("Could not remove incomplete installation '{}'", directory, e);
+            }
+        }
+    }
+
     /**
      * Removes the given release from the local file system.
      *
      * @param game the game release to be removed
      */
     public void remove(GameIdentifier game) throws IOException {
-        // Recursively delete all files
-        Files.walk(getInstallDirectory(game))
-                .sorted(Comparator.reverseOrder())
-                .map(Path::toFile)
-                .forEach(File::delete);
+        final Lock lock = getInstallationLock(game);
+        lock.lock();
+        try {
+            // the installation is incomplete as soon as any file is gone
+            Files.deleteIfExists(getInstallDirectory(game).resolve(StagingArea.INSTALLED_MARKER));
+            // Recursively delete all files
+            Files.walk(getInstallDirectory(game))
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } finally {
+            lock.unlock();
+        }
 
         Platform.runLater(() -> installedGames.remove(game));
         logger.info("Finished removing package: {}", game);
@@ -130,6 +943,13 @@ public class GameManager {
         return installedGames;
     }
 
+    /**
+     * Whether the package of the given release is in the cache, so that it can be installed without a download.
+     */
+    public boolean isCached(GameRelease release) {
+        return Files.exists(getCachedPackage(release));
+    }
+
     public Path getInstallDirectory(GameIdentifier id) {
         return installDirectory.resolve(id.getProfile().name()).resolve(id.getBuild().name()).resolve(id.getDisplayVersion());
     }
@@ -142,21 +962,48 @@ public class GameManager {
      * Scans the installation directory and collects the installed games.
      */
     private void scanInstallationDir() {
-        Set<GameIdentifier> localGames;
+        final Set<GameIdentifier> localGames = findInstalledGames();
+        Platform.runLater(() -> installedGames.addAll(localGames));
+        // releases installed before the launcher was set to optimize them, or whose optimization was interrupted
+        localGames.forEach(this::optimizeLater);
+    }
+
+    /**
+     * Repack the jars of the given installation in the background if the launcher is set to, see
+     * {@link JarOptimizer}.
+     */
+    private void optimizeLater(GameIdentifier id) {
+        if (settings.optimizeJars.get()) {
+            jarOptimizer.optimizeLater(getInstallDirectory(id), getInstallationLock(id));
+        }
+    }
+
+    private Lock getInstallationLock(GameIdentifier id) {
+        return installationLocks.computeIfAbsent(id, key -> new ReentrantLock());
+    }
+
+    private Set<GameIdentifier> findInstalledGames() {
         try (var directories = Files.walk(installDirectory, 3)) {
             var gameDirectories = directories
                     .filter(Files::isDirectory)
                     // Skip the intermediate directories.
-                    .filter(d -> installDirectory.relativize(d).getNameCount() == 3);
-            localGames = gameDirectories
+                    .filter(d -> installDirectory.relativize(d).getNameCount() == 3)
+                    .filter(d -> !installDirectory.relativize(d).startsWith(StagingArea.STAGING_DIRECTORY))
+                    .filter(d -> {
+                        if (StagingArea.isInstalled(d)) {
+                            return true;
+                        }
+                        logger.info("Ignoring incomplete installation '{}', installing it again repairs it", d);
+                        return false;
+                    });
+            return gameDirectories
                     .map(GameManager::getInstalledVersion)
                     .filter(Objects::nonNull)
                     .collect(Collectors.toUnmodifiableSet());
         } catch (IOException e) {
             logger.warn("Error while scanning installation directory {}:", installDirectory, e);
-            return;
+            return Set.of();
         }
-        Platform.runLater(() -> installedGames.addAll(localGames));
     }
 
     private static GameIdentifier getInstalledVersion(Path versionDirectory) {
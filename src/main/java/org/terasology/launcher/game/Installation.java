@@ -5,6 +5,7 @@ package org.terasology.launcher.game;
 
 import com.google.common.base.MoreObjects;
 import com.vdurmont.semver4j.Semver;
+import org.terasology.launcher.util.MappedZip;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -16,7 +17,6 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
-import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -175,15 +175,14 @@ public class Installation {
      * @throws FileNotFoundException if the version info file could not be found in the JAR file
      */
     static Properties getVersionPropertiesFromJar(Path jarLocation) throws IOException {
-        try (var jar = new JarFile(jarLocation.toFile())) {
-            var versionEntry = jar.stream().filter(entry ->
-                    entry.getName().endsWith("versionInfo.properties")  // FIXME: use const
-            ).findAny();
-            if (versionEntry.isEmpty()) {
+        // only the central directory and the one entry are read, see MappedZip
+        try (var jar = MappedZip.open(jarLocation)) {
+            var versionEntry = jar.findEndingWith("versionInfo.properties");  // FIXME: use const
+            if (versionEntry < 0) {
                 throw new FileNotFoundException("Found no versionInfo.properties in " + jarLocation);
             }
             var properties = new Properties();
-            try (var input = jar.getInputStream(versionEntry.get())) {
+            try (var input = jar.getInputStream(versionEntry)) {
                 properties.load(input);
             }
             return properties;
@@ -0,0 +1,341 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.game;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.util.MappedZip;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Repacks the jars of installations so that the game starts faster.
+ * <p>
+ * The jars of the game packages are deflated, so every class the game loads has to be inflated first. Repacking stores
+ * the entries uncompressed instead. Only large resources which compress well are still deflated, at the fastest
+ * level, so that the installation does not grow too much. The entries are ordered for locality: the manifest first, as
+ * {@link java.util.jar.JarInputStream} expects it there, then the classes, package by package, then the other
+ * resources. The content of the entries does not change, so signed jars stay valid.
+ * <p>
+ * The jars under {@code lib} or {@code libs} are repacked, found the way {@link Installation#findJar} finds the game's
+ * jars, several at a time. The jars which were repacked are listed in the installation ({@value #RECORD_FILE}) with
+ * their size and modification time, so that {@link #restore(Path)} can deflate them again. A listed jar which was
+ * replaced since, e.g. by repairing the installation from its package, no longer counts as repacked.
+ * <p>
+ * The background requests change an installation while holding the lock they are given, which the launcher also holds
+ * while it installs, repairs or removes the installation.
+ */
+final class JarOptimizer {
+
+    /**
+     * The file in an installation which lists the repacked jars, relative to the installation.
+     */
+    static final String RECORD_FILE = ".optimized-jars";
+
+    private static final Logger logger = LoggerFactory.getLogger(JarOptimizer.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Resources from this size on stay deflated if that saves at least half of their size.
+     */
+    private static final long LARGE_RESOURCE = 64 * 1024;
+    private static final double COMPRESSIBLE_RATIO = 0.5;
+
+    /**
+     * Repacks the jars, at a low priority so as not to slow down the launcher or a running game.
+     */
+    private final ExecutorService repackers;
+
+    /**
+     * Runs the requests to optimize or restore installations one after the other, in the order they were made.
+     */
+    private final ExecutorService requests = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("jar-optimizer")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * @param threads the maximum number of jars repacked at the same time
+     */
+    JarOptimizer(int threads) {
+        repackers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("repack-%d")
+                .setDaemon(true)
+                .setPriority(Thread.MIN_PRIORITY)
+                .build());
+    }
+
+    /**
+     * Repack the jars of the given installation in the background.
+     *
+     * @param lock held while the installation is changed; the installation is skipped if it is gone by then
+     */
+    void optimizeLater(Path installation, Lock lock) {
+        requests.execute(() -> {
+            lock.lock();
+            try {
+                if (Files.isDirectory(installation)) {
+                    optimize(installation);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not optimize the jars of '{}'", installation, e);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Restore the jars of the given installation in the background.
+     *
+     * @param lock held while the installation is changed; the installation is skipped if it is gone by then
+     */
+    void restoreLater(Path installation, Lock lock) {
+        requests.execute(() -> {
+            lock.lock();
+            try {
+                if (Files.isDirectory(installation)) {
+                    restore(installation);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not restore the jars of '{}'", installation, e);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Repack the jars of the given installation which are not repacked yet.
+     *
+     * @throws IOException if the jars cannot be found or the list of repacked jars cannot be written; jars which
+     *                     cannot be repacked are skipped
+     */
+    void optimize(Path installation) throws IOException {
+        final Set<String> repacked = readRecord(installation);
+        final List<String> jars;
+        try (var matches = Files.find(installation, 3, Installation.matchJar(name -> name.endsWith(".jar")))) {
+            jars = matches.map(jar -> toName(installation, jar))
+                    .filter(name -> !repacked.contains(name))
+                    .collect(Collectors.toList());
+        }
+        if (jars.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final List<String> done = repackAll(installation, jars, true);
+        if (!done.isEmpty()) {
+            repacked.addAll(done);
+            writeRecord(installation, repacked);
+        }
+        logger.info("Optimized {} of {} jars of '{}' in {} ms", done.size(), jars.size(), installation,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Deflate the repacked jars of the given installation again.
+     *
+     * @throws IOException if the list of repacked jars cannot be updated; jars which cannot be restored stay listed
+     */
+    void restore(Path installation) throws IOException {
+        final Set<String> repacked = readRecord(installation);
+        if (repacked.isEmpty()) {
+            Files.deleteIfExists(installation.resolve(RECORD_FILE));
+            return;
+        }
+        final List<String> jars = new ArrayList<>(repacked);
+        final List<String> done = repackAll(installation, jars, false);
+        repacked.removeAll(done);
+        if (repacked.isEmpty()) {
+            Files.deleteIfExists(installation.resolve(RECORD_FILE));
+        } else {
+            writeRecord(installation, repacked);
+        }
+        logger.info("Restored {} of {} jars of '{}'", done.size(), jars.size(), installation);
+    }
+
+    /**
+     * Whether any jars of the given installation are repacked, i.e. its files differ from those in its package.
+     */
+    static boolean isOptimized(Path installation) {
+        try {
+            return !readRecord(installation).isEmpty();
+        } catch (IOException e) {
+            logger.debug("Could not read the repacked jars of '{}'", installation, e);
+            return Files.exists(installation.resolve(RECORD_FILE));
+        }
+    }
+
+    /**
+     * Repack the given jars in parallel.
+     *
+     * @return the jars which were repacked
+     */
+    private List<String> repackAll(Path installation, List<String> jars, boolean optimize) {
+        final List<Future<?>> results = new ArrayList<>();
+        for (String jar : jars) {
+            results.add(repackers.submit(() -> {
+                repack(installation.resolve(jar), optimize);
+                return null;
+            }));
+        }
+        final List<String> done = new ArrayList<>();
+        for (int i = 0; i < jars.size(); i++) {
+            try {
+                results.get(i).get();
+                done.add(jars.get(i));
+            } catch (ExecutionException e) {
+                // e.g. a jar which is in use by a running game on Windows
+                logger.warn("Could not repack '{}'", installation.resolve(jars.get(i)), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.forEach(result -> result.cancel(false));
+                break;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Rewrite the given jar, either optimized for loading classes or deflated as in the game package.
+     */
+    static void repack(Path jar, boolean optimize) throws IOException {
+        final Path repacked = jar.resolveSibling(jar.getFileName() + ".tmp");
+        // the jar is closed before it is replaced, as some platforms do not allow to replace a file which is mapped
+        try (MappedZip zip = MappedZip.open(jar);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(repacked),
+                     BUFFER_SIZE))) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int entry : optimize ? getLoadOrder(zip) : IntStream.range(0, zip.getEntryCount()).toArray()) {
+                final ZipEntry zipEntry = new ZipEntry(zip.getName(entry));
+                final LocalDateTime time = zip.getTimeLocal(entry);
+                if (time != null) {
+                    zipEntry.setTimeLocal(time);
+                }
+                if (optimize && !isCompressibleResource(zip, entry)) {
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(zip.getSize(entry));
+                    zipEntry.setCompressedSize(zip.getSize(entry));
+                    zipEntry.setCrc(zip.getCrc(entry));
+                } else {
+                    zipEntry.setMethod(ZipEntry.DEFLATED);
+                    out.setLevel(optimize ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION);
+                }
+                out.putNextEntry(zipEntry);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+                out.closeEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(repacked);
+            throw e;
+        }
+        Files.move(repacked, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The entries of the jar in the order they are repacked in: the manifest, the rest of {@code META-INF}, the classes
+     * and then the other resources, each by name, which keeps the classes of a package together.
+     */
+    private static int[] getLoadOrder(MappedZip zip) {
+        final String[] names = new String[zip.getEntryCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = zip.getName(i);
+        }
+        return IntStream.range(0, names.length).boxed()
+                .sorted(Comparator.comparingInt((Integer i) -> getLoadRank(names[i])).thenComparing(i -> names[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static int getLoadRank(String name) {
+        if (name.equals("META-INF/") || name.equalsIgnoreCase("META-INF/MANIFEST.MF")) {
+            return 0;
+        }
+        if (name.startsWith("META-INF/")) {
+            return 1;
+        }
+        return name.endsWith(".class") ? 2 : 3;
+    }
+
+    private static boolean isCompressibleResource(MappedZip zip, int entry) {
+        final long size = zip.getSize(entry);
+        return size >= LARGE_RESOURCE && zip.getCompressedSize(entry) < size * COMPRESSIBLE_RATIO
+                && !zip.getName(entry).endsWith(".class");
+    }
+
+    /**
+     * The listed jars which are still as they were when they were repacked.
+     */
+    private static Set<String> readRecord(Path installation) throws IOException {
+        final Path record = installation.resolve(RECORD_FILE);
+        final Set<String> repacked = new TreeSet<>();
+        if (Files.notExists(record)) {
+            return repacked;
+        }
+        for (String line : Files.readAllLines(record, StandardCharsets.UTF_8)) {
+            final int separator = line.indexOf('\t');
+            if (separator < 0) {
+                continue;
+            }
+            final String name = line.substring(0, separator);
+            final Optional<String> current = describe(installation.resolve(name));
+            if (current.isPresent() && current.get().equals(line.substring(separator + 1))) {
+                repacked.add(name);
+            }
+        }
+        return repacked;
+    }
+
+    private static void writeRecord(Path installation, Set<String> repacked) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (String name : repacked) {
+            describe(installation.resolve(name)).ifPresent(description -> lines.add(name + "\t" + description));
+        }
+        Files.write(installation.resolve(RECORD_FILE), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The size and modification time of the given jar, which change if the jar is replaced.
+     */
+    private static Optional<String> describe(Path jar) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            return Optional.empty();
+        }
+        return Optional.of(Files.size(jar) + "\t" + Files.getLastModifiedTime(jar).toMillis());
+    }
+
+    private static String toName(Path installation, Path jar) {
+        return installation.relativize(jar).toString().replace('\\', '/');
+    }
+}
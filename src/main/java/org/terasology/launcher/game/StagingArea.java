@@ -0,0 +1,270 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.game;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Where releases are installed before they are moved into their installation directory.
+ * <p>
+ * An installation is written to a staging directory of its own, flushed to disk, marked as complete, and then moved to
+ * its installation directory with a single rename. An installation directory thus either does not exist or holds a
+ * complete installation, even if the launcher crashes or the installation is cancelled, and only needs to be checked
+ * for its marker file (see {@link #isInstalled(Path)}).
+ * <p>
+ * The staging directories are kept in the launcher's temporary directory if that is on the same file system as the
+ * installations, and next to the installations otherwise, as a rename cannot cross file systems.
+ */
+final class StagingArea {
+
+    /**
+     * The file in an installation directory which marks the installation as complete.
+     */
+    static final String INSTALLED_MARKER = ".installed";
+
+    /**
+     * The directory next to the installations, in the installation directory, to stage installations in if the
+     * temporary directory cannot be used.
+     */
+    static final String STAGING_DIRECTORY = ".staging";
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingArea.class);
+
+    private final Path installDirectory;
+    private final List<Path> roots = new ArrayList<>();
+    private final Path root;
+
+    /**
+     * The staging directories of the installations which are in progress.
+     */
+    private final Set<Path> active = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param tempDirectory    the launcher's temporary directory, or {@code null} to stage next to the installations
+     * @param installDirectory the directory the releases are installed in
+     */
+    StagingArea(Path tempDirectory, Path installDirectory) {
+        this.installDirectory = installDirectory;
+        final Path besideInstallations = installDirectory.resolve(STAGING_DIRECTORY);
+        if (tempDirectory != null) {
+            roots.add(tempDirectory.resolve(STAGING_DIRECTORY));
+        }
+        roots.add(besideInstallations);
+        root = tempDirectory != null && isSameFileStore(tempDirectory, installDirectory)
+                ? tempDirectory.resolve(STAGING_DIRECTORY) : besideInstallations;
+    }
+
+    /**
+     * A new staging directory for an installation of the given release. The directory itself is not created yet.
+     * <p>
+     * The directory has to be {@linkplain #release(Path) released} once the installation is done.
+     */
+    Path newDirectory(GameIdentifier id) throws IOException {
+        Files.createDirectories(root);
+        final Path staging = root.resolve(id.getProfile() + "-" + id.getBuild() + "-" + id.getDisplayVersion()
+                + "-" + UUID.randomUUID());
+        active.add(staging);
+        return staging;
+    }
+
+    /**
+     * Remove what is left of the given staging directory, i.e. everything unless it was committed.
+     */
+    void release(Path staging) {
+        try {
+            if (Files.exists(staging)) {
+                FileUtils.delete(staging);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not remove staging directory '{}'", staging, e);
+        } finally {
+            active.remove(staging);
+        }
+    }
+
+    /**
+     * Move the installation in the given staging directory to {@code target}, replacing whatever is there.
+     * <p>
+     * The staged files are flushed to disk and the marker file is written before the rename, so that a crash leaves
+     * either no installation or a complete one. If the staging directory cannot be renamed to {@code target} after all,
+     * it is copied next to the installations first.
+     * <p>
+     * What is at {@code target} is renamed aside next to the installations, and only deleted once the new installation
+     * is in place. It is put back if the new installation cannot be moved in; if the launcher crashes in between,
+     * {@link #cleanUp()} removes it.
+     */
+    void commit(Path staging, Path target) throws IOException {
+        markInstalled(staging);
+        flush(staging);
+        Files.createDirectories(target.getParent());
+        Path replaced = null;
+        if (Files.exists(target)) {
+            // an incomplete installation from before installations were staged, or a broken one being replaced
+            replaced = installDirectory.resolve(STAGING_DIRECTORY).resolve(target.getFileName() + "-replaced-"
+                    + UUID.randomUUID());
+            Files.createDirectories(replaced.getParent());
+            active.add(replaced);
+            try {
+                Files.move(target, replaced, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                active.remove(replaced);
+                throw e;
+            }
+        }
+        try {
+            moveInto(staging, target);
+        } catch (IOException | RuntimeException e) {
+            if (replaced != null) {
+                try {
+                    Files.move(replaced, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+                release(replaced);
+            }
+            throw e;
+        }
+        syncDirectory(target.getParent());
+        if (replaced != null) {
+            release(replaced);
+        }
+    }
+
+    private void moveInto(Path staging, Path target) throws IOException {
+        try {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.debug("Cannot rename '{}' to '{}', copying it next to the installations first", staging, target);
+            final Path besideInstallations = installDirectory.resolve(STAGING_DIRECTORY).resolve(staging.getFileName());
+            active.add(besideInstallations);
+            try {
+                FileUtils.copyFolder(staging, besideInstallations);
+                flush(besideInstallations);
+                Files.move(besideInstallations, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                release(besideInstallations);
+            }
+        }
+    }
+
+    /**
+     * Remove the staging directories of installations which were interrupted, e.g. by a crash, and the installations
+     * which were renamed aside to be replaced, in the background.
+     */
+    void cleanUpLater() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("staging-cleanup-%d")
+                .setDaemon(true)
+                .build());
+        executor.execute(this::cleanUp);
+        executor.shutdown();
+    }
+
+    void cleanUp() {
+        for (Path stagingRoot : roots) {
+            if (Files.notExists(stagingRoot)) {
+                continue;
+            }
+            try (Stream<Path> directories = Files.list(stagingRoot)) {
+                directories.filter(directory -> !active.contains(directory)).forEach(directory -> {
+                    logger.info("Removing interrupted installation '{}'", directory);
+                    try {
+                        FileUtils.delete(directory);
+                    } catch (IOException e) {
+                        logger.warn("Could not remove interrupted installation '{}'", directory, e);
+                    }
+                });
+            } catch (IOException e) {
+                logger.warn("Could not clean up staging directory '{}'", stagingRoot, e);
+            }
+        }
+    }
+
+    /**
+     * Whether the given directory holds a complete installation, i.e. has the marker file.
+     * <p>
+     * Installations from before installations were staged have no marker, and cannot be told apart from interrupted
+     * ones. They do not count as installed; installing their release again repairs them and marks them as complete.
+     */
+    static boolean isInstalled(Path directory) {
+        return Files.exists(directory.resolve(INSTALLED_MARKER));
+    }
+
+    /**
+     * Mark the installation in the given directory as complete.
+     */
+    static void markInstalled(Path directory) throws IOException {
+        Files.writeString(directory.resolve(INSTALLED_MARKER), Instant.now().toString());
+    }
+
+    private static void flush(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    flushFile(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush a file to disk. Some platforms only allow that for files opened for writing, which read-only files cannot
+     * be; they are opened for reading then, and skipped if that does not work either.
+     */
+    private static void flushFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return;
+        } catch (IOException e) {
+            logger.trace("Could not open '{}' for writing to flush it", file, e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not flush '{}'", file, e);
+        }
+    }
+
+    /**
+     * Flush the entries of a directory to disk, so that a rename within it survives a crash. Not all platforms allow
+     * to open a directory for that; it is skipped there.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.trace("Could not flush directory '{}'", directory, e);
+        }
+    }
+
+    private static boolean isSameFileStore(Path a, Path b) {
+        try {
+            return Objects.equals(Files.getFileStore(a), Files.getFileStore(b));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
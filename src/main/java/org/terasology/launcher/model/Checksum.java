@@ -0,0 +1,61 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.model;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The digest of a game artifact as published by the repository it is hosted in.
+ */
+public final class Checksum {
+    private final String algorithm;
+    private final String value;
+
+    /**
+     * @param algorithm the name of the {@link java.security.MessageDigest} algorithm, e.g. {@code SHA-256}
+     * @param value     the digest as hex string
+     */
+    public Checksum(String algorithm, String value) {
+        this.algorithm = Objects.requireNonNull(algorithm);
+        this.value = value.toLowerCase(Locale.ROOT);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * The digest as lower case hex string.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public boolean matches(String hexDigest) {
+        return value.equalsIgnoreCase(hexDigest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Checksum checksum = (Checksum) o;
+        return algorithm.equals(checksum.algorithm) && value.equals(checksum.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, value);
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + ":" + value;
+    }
+}
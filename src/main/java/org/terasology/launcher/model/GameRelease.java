@@ -5,6 +5,7 @@ package org.terasology.launcher.model;
 
 import java.net.URL;
 import java.util.Date;
+import java.util.Optional;
 
 /**
  * A game release describes a (remote) game artifact (asset) that can be downloaded and installed by the launcher.
@@ -20,11 +21,17 @@ public class GameRelease {
     final GameIdentifier id;
     final ReleaseMetadata releaseMetadata;
     final URL url;
+    final Checksum checksum;
 
     public GameRelease(GameIdentifier id, URL url, ReleaseMetadata releaseMetadata) {
+        this(id, url, releaseMetadata, null);
+    }
+
+    public GameRelease(GameIdentifier id, URL url, ReleaseMetadata releaseMetadata, Checksum checksum) {
         this.id = id;
         this.url = url;
         this.releaseMetadata = releaseMetadata;
+        this.checksum = checksum;
     }
 
     public GameIdentifier getId() {
@@ -35,6 +42,13 @@ public class GameRelease {
         return url;
     }
 
+    /**
+     * The digest of the artifact as published by the repository, if the repository provides one.
+     */
+    public Optional<Checksum> getChecksum() {
+        return Optional.ofNullable(checksum);
+    }
+
     /**
      * The changelog associated with the game release
      */
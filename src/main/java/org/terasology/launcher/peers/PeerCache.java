@@ -0,0 +1,194 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.peers;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shares the game packages in the launcher's cache with other launchers in the local network.
+ * <p>
+ * The launcher serves its complete cached packages over HTTP (see {@link PeerCacheServer}), and looks for a package on
+ * its peers before downloading it from the upstream sources. The peers are found by multicast announcements (see
+ * {@link PeerDiscovery}) and taken from a configured list of {@code host:port} entries, for networks which do not
+ * forward multicast traffic.
+ * <p>
+ * Peers are not trusted: a package downloaded from a peer must match the checksum published by the repository.
+ */
+public final class PeerCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerCache.class);
+
+    /**
+     * How long to wait for the peers to answer whether they have a package. Peers are in the local network, so a peer
+     * which takes longer is not worth downloading from.
+     */
+    private static final Duration LOCATE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final PeerCacheServer server;
+    private final PeerDiscovery discovery;
+    private final List<String> configuredPeers;
+
+    private PeerCache(PeerCacheServer server, PeerDiscovery discovery, List<String> configuredPeers) {
+        this.server = server;
+        this.discovery = discovery;
+        this.configuredPeers = configuredPeers;
+    }
+
+    /**
+     * A peer cache which neither serves nor finds any packages, for when sharing is disabled.
+     */
+    public static PeerCache disabled() {
+        return new PeerCache(null, null, List.of());
+    }
+
+    /**
+     * Start serving the packages in the cache directory, and looking for peers.
+     *
+     * @param cacheDirectory  the directory the cached packages are kept in
+     * @param port            the port to serve the packages on, or {@code 0} for any free port
+     * @param configuredPeers the {@code host:port} of peers to use in addition to the discovered ones
+     * @param discover        whether to announce this launcher to, and discover peers in, the local network
+     * @throws IOException if the port cannot be bound
+     */
+    public static PeerCache start(Path cacheDirectory, int port, List<String> configuredPeers, boolean discover)
+            throws IOException {
+        final PeerCacheServer server = new PeerCacheServer(cacheDirectory, port);
+        server.start();
+        PeerDiscovery discovery = null;
+        if (discover) {
+            try {
+                discovery = new PeerDiscovery(server.getPort());
+                discovery.start();
+            } catch (IOException e) {
+                logger.warn("Could not join the multicast group to discover peers, using configured peers only", e);
+            }
+        }
+        final List<String> peers = new ArrayList<>();
+        for (String peer : configuredPeers) {
+            peers.add("http://" + peer.trim() + "/");
+        }
+        return new PeerCache(server, discovery, peers);
+    }
+
+    /**
+     * The port the cached packages are served on, or {@code -1} if they are not served.
+     */
+    public int getPort() {
+        return server != null ? server.getPort() : -1;
+    }
+
+    /**
+     * The number of bytes served to peers so far.
+     */
+    public long getServedBytes() {
+        return server != null ? server.getServedBytes() : 0;
+    }
+
+    /**
+     * The base URLs of the configured and discovered peers.
+     */
+    List<String> getPeers() {
+        final Set<String> peers = new LinkedHashSet<>(configuredPeers);
+        if (discovery != null) {
+            peers.addAll(discovery.getPeers());
+        }
+        return new ArrayList<>(peers);
+    }
+
+    /**
+     * Ask all peers whether they have the given package.
+     *
+     * @param client   the launcher's shared HTTP client
+     * @param fileName the file name of the package in the cache
+     * @return the URLs of the package on the peers which have it
+     */
+    public List<URL> locate(OkHttpClient client, String fileName) {
+        final List<String> peers = getPeers();
+        if (peers.isEmpty()) {
+            return List.of();
+        }
+        final OkHttpClient peerClient = client.newBuilder()
+                .cache(null)
+                .callTimeout(LOCATE_TIMEOUT)
+                .build();
+        final List<CompletableFuture<Optional<URL>>> answers = new ArrayList<>();
+        for (String peer : peers) {
+            try {
+                answers.add(ask(peerClient, new URL(peer + fileName)));
+            } catch (MalformedURLException e) {
+                logger.warn("Ignoring invalid peer '{}'", peer, e);
+            }
+        }
+
+        final List<URL> urls = new ArrayList<>();
+        final long deadline = System.nanoTime() + LOCATE_TIMEOUT.toNanos();
+        for (CompletableFuture<Optional<URL>> answer : answers) {
+            try {
+                answer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).ifPresent(urls::add);
+            } catch (ExecutionException | TimeoutException e) {
+                answer.cancel(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.debug("Found '{}' on {} of {} peers", fileName, urls.size(), peers.size());
+        return urls;
+    }
+
+    private static CompletableFuture<Optional<URL>> ask(OkHttpClient client, URL url) {
+        final CompletableFuture<Optional<URL>> answer = new CompletableFuture<>();
+        final Call call = client.newCall(new Request.Builder().url(url).head().build());
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failedCall, IOException e) {
+                logger.debug("Peer {} did not answer", url, e);
+                answer.complete(Optional.empty());
+            }
+
+            @Override
+            public void onResponse(Call respondedCall, Response response) {
+                try (response) {
+                    answer.complete(response.isSuccessful() ? Optional.of(url) : Optional.empty());
+                }
+            }
+        });
+        answer.whenComplete((result, e) -> call.cancel());
+        return answer;
+    }
+
+    /**
+     * Stop serving packages and looking for peers.
+     */
+    @Override
+    public void close() {
+        if (discovery != null) {
+            discovery.stop();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.peers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the game packages in the launcher's cache directory to other launchers.
+ * <p>
+ * Only complete packages are served: partial downloads and the other files in the cache directory do not match
+ * {@link #PACKAGE_NAME}. Single byte ranges are supported, so that peers can download in segments and resume.
+ */
+final class PeerCacheServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerCacheServer.class);
+
+    private static final Pattern PACKAGE_NAME = Pattern.compile("/([A-Za-z0-9][A-Za-z0-9._+-]*\\.zip)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final int THREADS = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path cacheDirectory;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    /**
+     * @param cacheDirectory the directory the packages are served from
+     * @param port           the port to listen on, or {@code 0} for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    PeerCacheServer(Path cacheDirectory, int port) throws IOException {
+        this.cacheDirectory = cacheDirectory;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newFixedThreadPool(THREADS, new ThreadFactoryBuilder()
+                .setNameFormat("peer-cache-%d")
+                .setDaemon(true)
+                .build());
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+        logger.info("Serving cached game packages to peers on port {}", getPort());
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * The number of bytes served to peers so far.
+     */
+    long getServedBytes() {
+        return servedBytes.get();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            final String method = exchange.getRequestMethod();
+            final boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final Matcher name = PACKAGE_NAME.matcher(exchange.getRequestURI().getPath());
+            final Path file = name.matches() ? cacheDirectory.resolve(name.group(1)) : null;
+            if (file == null || !Files.isRegularFile(file)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            final long size = Files.size(file);
+            final Instant modified = Files.getLastModifiedTime(file).toInstant();
+            final String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified.toEpochMilli()) + "\"";
+            final Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/zip");
+            headers.set("Accept-Ranges", "bytes");
+            headers.set("ETag", etag);
+            headers.set("Last-Modified",
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(modified.atOffset(ZoneOffset.UTC)));
+
+            long start = 0;
+            long end = size - 1;
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            final Matcher bytes = range != null ? RANGE.matcher(range.trim()) : null;
+            final boolean partial = bytes != null && bytes.matches() && !(bytes.group(1) + bytes.group(2)).isEmpty()
+                    && (ifRange == null || ifRange.equals(etag));
+            if (partial) {
+                if (bytes.group(1).isEmpty()) {
+                    // a suffix range: the last n bytes
+                    start = Math.max(0, size - Long.parseLong(bytes.group(2)));
+                } else {
+                    start = Long.parseLong(bytes.group(1));
+                    end = bytes.group(2).isEmpty() ? end : Math.min(end, Long.parseLong(bytes.group(2)));
+                }
+                if (start > end) {
+                    headers.set("Content-Range", "bytes */" + size);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                headers.set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+
+            final long length = end - start + 1;
+            final int status = partial ? 206 : 200;
+            if (head) {
+                headers.set("Content-Length", Long.toString(length));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            // a length of 0 means chunked encoding to the HTTP server, an empty body is announced with -1
+            exchange.sendResponseHeaders(status, length > 0 ? length : -1);
+            send(file, start, length, exchange.getResponseBody());
+            logger.debug("Served {} bytes of '{}' to {}", length, file.getFileName(), exchange.getRemoteAddress());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not serve {} to {}", exchange.getRequestURI(), exchange.getRemoteAddress(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void send(Path file, long start, long length, OutputStream out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                final int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("'" + file + "' was truncated while being served");
+                }
+                out.write(buffer.array(), 0, n);
+                position += n;
+                remaining -= n;
+                servedBytes.addAndGet(n);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.peers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finds other launchers in the local network which serve their cache, see {@link PeerCacheServer}.
+ * <p>
+ * Each launcher announces the port of its server to a multicast group at a fixed interval, and remembers the
+ * announcements of the others until they have not been repeated for a while.
+ */
+final class PeerDiscovery {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerDiscovery.class);
+
+    static final InetSocketAddress GROUP = new InetSocketAddress("239.255.84.76", 25778);
+
+    private static final String MAGIC = "terasology-launcher-peer";
+    private static final Duration INTERVAL = Duration.ofSeconds(10);
+    private static final Duration EXPIRY = INTERVAL.multipliedBy(3).plusSeconds(5);
+    private static final int MAX_MESSAGE = 256;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final int httpPort;
+    private final MulticastSocket socket;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The base URLs of the peers, by the time of their last announcement in nanoseconds.
+     */
+    private final Map<String, Long> peers = new ConcurrentHashMap<>();
+
+    /**
+     * @param httpPort the port this launcher serves its cache on
+     * @throws IOException if the multicast group cannot be joined, e.g. because there is no network interface
+     */
+    PeerDiscovery(int httpPort) throws IOException {
+        this.httpPort = httpPort;
+        this.socket = new MulticastSocket(GROUP.getPort());
+        try {
+            socket.joinGroup(GROUP, null);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.executor = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("peer-discovery-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    void start() {
+        executor.execute(this::listen);
+        executor.scheduleAtFixedRate(this::announce, 0, INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The base URLs of the peers which announced themselves recently.
+     */
+    List<String> getPeers() {
+        final long now = System.nanoTime();
+        peers.values().removeIf(seen -> now - seen > EXPIRY.toNanos());
+        return peers.keySet().stream().sorted().collect(Collectors.toList());
+    }
+
+    void stop() {
+        executor.shutdownNow();
+        socket.close();
+    }
+
+    private void announce() {
+        final byte[] message = (MAGIC + " " + instanceId + " " + httpPort).getBytes(StandardCharsets.US_ASCII);
+        try {
+            socket.send(new DatagramPacket(message, message.length, GROUP));
+        } catch (IOException e) {
+            logger.debug("Could not announce the peer cache", e);
+        }
+    }
+
+    private void listen() {
+        final byte[] buffer = new byte[MAX_MESSAGE];
+        while (!socket.isClosed()) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    logger.debug("Could not receive peer announcements", e);
+                }
+                return;
+            }
+            final String[] message = new String(packet.getData(), packet.getOffset(), packet.getLength(),
+                    StandardCharsets.US_ASCII).split(" ");
+            if (message.length == 3 && MAGIC.equals(message[0]) && !instanceId.equals(message[1])) {
+                try {
+                    final String url = toBaseUrl(packet.getAddress(), Integer.parseInt(message[2]));
+                    if (peers.put(url, System.nanoTime()) == null) {
+                        logger.info("Discovered peer cache {}", url);
+                    }
+                } catch (NumberFormatException e) {
+                    logger.debug("Ignoring malformed peer announcement from {}", packet.getAddress());
+                }
+            }
+        }
+    }
+
+    private static String toBaseUrl(InetAddress address, int port) {
+        final String host = address.getHostAddress();
+        // IPv6 addresses are enclosed in brackets, and the zone is not part of a URL
+        return host.contains(":")
+                ? "http://[" + host.replaceFirst("%.*", "") + "]:" + port + "/"
+                : "http://" + host + ":" + port + "/";
+    }
+}
@@ -22,6 +22,7 @@ public final class Jenkins {
         public String url;
         public ChangeSet changeSet;
         public long timestamp;
+        public Fingerprint[] fingerprint;
 
         public enum Result {
             ABORTED, FAILURE, NOT_BUILT, SUCCESS, UNSTABLE
@@ -33,6 +34,15 @@ public final class Jenkins {
         public String relativePath;
     }
 
+    /**
+     * The fingerprint Jenkins records for an archived artifact, if fingerprinting is enabled for the job.
+     */
+    public static class Fingerprint {
+        public String fileName;
+        /** The MD5 digest of the file as hex string. */
+        public String hash;
+    }
+
     public static class ChangeSet {
         public Change[] items;
     }
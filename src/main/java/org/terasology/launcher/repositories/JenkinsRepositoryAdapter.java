@@ -6,6 +6,7 @@ package org.terasology.launcher.repositories;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.Checksum;
 import org.terasology.launcher.model.GameIdentifier;
 import org.terasology.launcher.model.GameRelease;
 import org.terasology.launcher.model.Profile;
@@ -42,6 +43,7 @@ class JenkinsRepositoryAdapter implements ReleaseRepository {
             + "timestamp,"
             + "result,"
             + "artifacts[fileName,relativePath],"
+            + "fingerprint[fileName,hash],"
             + "url]";
 
     private static final String TERASOLOGY_ZIP_PATTERN = "Terasology.*zip";
@@ -90,7 +92,8 @@ class JenkinsRepositoryAdapter implements ReleaseRepository {
             final Optional<GameIdentifier> id = computeIdentifierFrom(jenkinsBuildInfo);
 
             if (url != null && id.isPresent()) {
-                return Optional.of(new GameRelease(id.get(), url, metadata));
+                final Checksum checksum = computeChecksumFrom(jenkinsBuildInfo, url).orElse(null);
+                return Optional.of(new GameRelease(id.get(), url, metadata, checksum));
             } else {
                 logger.debug("Skipping build without game artifact or version identifier: '{}'", jenkinsBuildInfo.url);
             }
@@ -117,6 +120,21 @@ class JenkinsRepositoryAdapter implements ReleaseRepository {
                 });
     }
 
+    /**
+     * Jenkins records an MD5 fingerprint for archived artifacts if the job is configured to do so.
+     */
+    private Optional<Checksum> computeChecksumFrom(Jenkins.Build jenkinsBuildInfo, URL artifactUrl) {
+        if (jenkinsBuildInfo.fingerprint == null) {
+            return Optional.empty();
+        }
+        final String path = artifactUrl.getPath();
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        return Arrays.stream(jenkinsBuildInfo.fingerprint)
+                .filter(fingerprint -> fileName.equals(fingerprint.fileName) && fingerprint.hash != null)
+                .findFirst()
+                .map(fingerprint -> new Checksum("MD5", fingerprint.hash));
+    }
+
     private ReleaseMetadata computeReleaseMetadataFrom(Jenkins.Build jenkinsBuildInfo) {
         String changelog = computeChangelogFrom(jenkinsBuildInfo.changeSet);
         final Date timestamp = new Date(jenkinsBuildInfo.timestamp);
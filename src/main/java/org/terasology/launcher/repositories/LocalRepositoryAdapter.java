@@ -0,0 +1,269 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.repositories;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.Checksum;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.model.Profile;
+import org.terasology.launcher.model.ReleaseMetadata;
+import org.terasology.launcher.util.FileDigest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The releases whose packages were imported into the cache from local files, e.g. from a USB stick on a machine
+ * without network access.
+ * <p>
+ * The packages have to be named like the launcher names the packages it downloads (see
+ * {@link GameManager#getFileNameFor(GameIdentifier)}), as that is where their release is taken from. The imported
+ * releases are recorded in a registry file in the cache directory, and listed for as long as their package is in the
+ * cache.
+ */
+public class LocalRepositoryAdapter implements ReleaseRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRepositoryAdapter.class);
+
+    static final String REGISTRY_FILE = "imported-releases.properties";
+
+    /**
+     * The file listing the checksums of the packages in a directory, as written by {@code sha256sum}.
+     */
+    static final String CHECKSUMS_FILE = "SHA256SUMS";
+
+    private static final Pattern PACKAGE = Pattern.compile("terasology-(omega|engine)-(.+)-(stable|nightly)\\.zip");
+    private static final Pattern CHECKSUM_LINE = Pattern.compile("([0-9a-fA-F]{64}) [ *](.+)");
+
+    private static final String PROPERTY_SHA_256 = ".sha256";
+    private static final String PROPERTY_TIMESTAMP = ".timestamp";
+
+    private final Path cacheDirectory;
+
+    public LocalRepositoryAdapter(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    @Override
+    public List<GameRelease> fetchReleases() {
+        final Properties registry = loadRegistry();
+        final List<GameRelease> releases = new ArrayList<>();
+        for (String key : registry.stringPropertyNames()) {
+            if (!key.endsWith(PROPERTY_SHA_256)) {
+                continue;
+            }
+            final String name = key.substring(0, key.length() - PROPERTY_SHA_256.length());
+            final Path file = cacheDirectory.resolve(name);
+            final Optional<GameIdentifier> id = parseFileName(name);
+            if (id.isEmpty() || Files.notExists(file)) {
+                continue;
+            }
+            final long timestamp = Long.parseLong(registry.getProperty(name + PROPERTY_TIMESTAMP, "0"));
+            toRelease(id.get(), file, registry.getProperty(key), timestamp).ifPresent(releases::add);
+        }
+        return releases;
+    }
+
+    /**
+     * Copy the given packages into the cache, verifying their checksums, and register their releases.
+     * <p>
+     * The packages are hashed in parallel, one per processor core. A package is verified against the digest file
+     * next to it (see {@link FileDigest}), or the {@value #CHECKSUMS_FILE} file in its directory; packages without a
+     * checksum or which do not match their checksum are not imported.
+     *
+     * @param sources package files, or directories to import all packages in
+     * @return the releases of the imported packages
+     */
+    public List<GameRelease> importPackages(List<Path> sources) {
+        final List<Path> packages = new ArrayList<>();
+        for (Path source : sources) {
+            if (Files.isDirectory(source)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(source, "*.zip")) {
+                    files.forEach(packages::add);
+                } catch (IOException e) {
+                    logger.warn("Could not list the packages in '{}'", source, e);
+                }
+            } else {
+                packages.add(source);
+            }
+        }
+        if (packages.isEmpty()) {
+            return List.of();
+        }
+
+        final int threads = Math.min(packages.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("import-%d")
+                .setDaemon(true)
+                .build());
+        final List<Future<Optional<GameRelease>>> imports = new ArrayList<>();
+        try {
+            for (Path source : packages) {
+                imports.add(executor.submit(() -> importPackage(source)));
+            }
+            final List<GameRelease> releases = new ArrayList<>();
+            for (Future<Optional<GameRelease>> result : imports) {
+                result.get().ifPresent(releases::add);
+            }
+            register(releases);
+            logger.info("Imported {} of {} packages into the cache", releases.size(), packages.size());
+            return releases;
+        } catch (ExecutionException e) {
+            logger.warn("Could not import the packages", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return List.of();
+    }
+
+    private Optional<GameRelease> importPackage(Path source) {
+        final String name = source.getFileName().toString();
+        final Optional<GameIdentifier> id = parseFileName(name);
+        if (id.isEmpty()) {
+            logger.warn("Skipping '{}', which is not named like a game package", source);
+            return Optional.empty();
+        }
+        final Optional<String> expected = getExpectedChecksum(source);
+        if (expected.isEmpty()) {
+            // the checksum of an imported release is trusted like a published one, so it cannot come from the package
+            logger.warn("Not importing '{}', there is no checksum to verify it against", source);
+            return Optional.empty();
+        }
+        final Path target = cacheDirectory.resolve(name);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(cacheDirectory, name, ".import");
+            final FileDigest digest = FileDigest.copy(source, tempFile, Set.of(FileDigest.SHA_256));
+            final String actual = digest.get(FileDigest.SHA_256).orElseThrow();
+            if (!expected.get().equalsIgnoreCase(actual)) {
+                logger.warn("Not importing '{}', its checksum {} does not match the expected {}", source, actual,
+                        expected.get());
+                return Optional.empty();
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+            digest.store(target);
+            logger.info("Imported '{}' into the cache", source);
+            return toRelease(id.get(), target, actual, Files.getLastModifiedTime(source).toMillis());
+        } catch (IOException e) {
+            logger.warn("Could not import '{}'", source, e);
+            return Optional.empty();
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.debug("Could not remove '{}'", tempFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The SHA-256 checksum published next to the given package, if there is one.
+     */
+    private static Optional<String> getExpectedChecksum(Path source) {
+        final Optional<String> recorded = FileDigest.load(source).flatMap(digest -> digest.get(FileDigest.SHA_256));
+        if (recorded.isPresent()) {
+            return recorded;
+        }
+        final Path checksums = source.resolveSibling(CHECKSUMS_FILE);
+        if (Files.notExists(checksums)) {
+            return Optional.empty();
+        }
+        try {
+            for (String line : Files.readAllLines(checksums)) {
+                final Matcher matcher = CHECKSUM_LINE.matcher(line.trim());
+                if (matcher.matches() && matcher.group(2).equals(source.getFileName().toString())) {
+                    return Optional.of(matcher.group(1).toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read the checksums in '{}'", checksums, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Parse the game identifier from the name of a package, the inverse of
+     * {@link GameManager#getFileNameFor(GameIdentifier)}.
+     */
+    static Optional<GameIdentifier> parseFileName(String name) {
+        final Matcher matcher = PACKAGE.matcher(name);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        final Profile profile = Profile.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+        final Build build = Build.valueOf(matcher.group(3).toUpperCase(Locale.ROOT));
+        return Optional.of(new GameIdentifier(matcher.group(2), build, profile));
+    }
+
+    private static Optional<GameRelease> toRelease(GameIdentifier id, Path file, String sha256, long timestamp) {
+        try {
+            return Optional.of(new GameRelease(id, file.toUri().toURL(), new ReleaseMetadata("", new Date(timestamp)),
+                    new Checksum(FileDigest.SHA_256, sha256)));
+        } catch (MalformedURLException e) {
+            logger.warn("Could not refer to the imported package '{}'", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private synchronized void register(List<GameRelease> releases) {
+        final Properties registry = loadRegistry();
+        for (GameRelease release : releases) {
+            final String name = GameManager.getFileNameFor(release.getId());
+            registry.setProperty(name + PROPERTY_SHA_256, release.getChecksum().orElseThrow().getValue());
+            registry.setProperty(name + PROPERTY_TIMESTAMP, Long.toString(release.getTimestamp().getTime()));
+        }
+        final Path registryFile = cacheDirectory.resolve(REGISTRY_FILE);
+        final Path tempFile = registryFile.resolveSibling(REGISTRY_FILE + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                registry.store(out, "Terasology Launcher - Imported releases");
+            }
+            Files.move(tempFile, registryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not record the imported releases in '{}'", registryFile, e);
+        }
+    }
+
+    private Properties loadRegistry() {
+        final Properties registry = new Properties();
+        final Path registryFile = cacheDirectory.resolve(REGISTRY_FILE);
+        if (Files.exists(registryFile)) {
+            try (InputStream in = Files.newInputStream(registryFile)) {
+                registry.load(in);
+            } catch (IOException e) {
+                logger.warn("Could not read the imported releases from '{}'", registryFile, e);
+            }
+        }
+        return registry;
+    }
+}
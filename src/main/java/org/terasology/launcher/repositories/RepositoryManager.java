@@ -7,9 +7,11 @@ import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import okhttp3.OkHttpClient;
 import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.GameIdentifier;
 import org.terasology.launcher.model.GameRelease;
 import org.terasology.launcher.model.Profile;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -19,6 +21,15 @@ public class RepositoryManager {
     private final Set<GameRelease> releases;
 
     public RepositoryManager(OkHttpClient httpClient) {
+        this(httpClient, null);
+    }
+
+    /**
+     * @param httpClient the client to fetch the releases of the remote repositories with
+     * @param local      the releases imported from local files, or {@code null}; remote releases take precedence over
+     *                   local releases with the same identifier
+     */
+    public RepositoryManager(OkHttpClient httpClient, ReleaseRepository local) {
         JenkinsClient client = new JenkinsClient(httpClient, new Gson());
 
         ReleaseRepository omegaNightly = new JenkinsRepositoryAdapter(Profile.OMEGA, Build.NIGHTLY, client);
@@ -26,7 +37,18 @@ public class RepositoryManager {
 
         Set<ReleaseRepository> all = Sets.newHashSet(github, omegaNightly);
 
-        releases = fetchReleases(all);
+        final Set<GameRelease> remoteReleases = fetchReleases(all);
+        if (local == null) {
+            releases = remoteReleases;
+        } else {
+            final Set<GameIdentifier> remoteIds = remoteReleases.stream()
+                    .map(GameRelease::getId)
+                    .collect(Collectors.toSet());
+            releases = new HashSet<>(remoteReleases);
+            local.fetchReleases().stream()
+                    .filter(release -> !remoteIds.contains(release.getId()))
+                    .forEach(releases::add);
+        }
     }
 
     private Set<GameRelease> fetchReleases(final Set<ReleaseRepository> repositories) {
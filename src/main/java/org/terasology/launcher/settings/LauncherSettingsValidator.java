@@ -41,6 +41,46 @@ public final class LauncherSettingsValidator {
                     s -> s.userJavaParameters.get().stream().anyMatch(DEPRECATED_PARAMETERS::contains),
                     "Ensure unsupported JVM arguments are removed",
                     s -> s.userJavaParameters.setAll(removeUnsupportedJvmParameters(s.userJavaParameters.get()))
+            ),
+
+            // Rule for concurrent download segments
+            new SettingsValidationRule(
+                    s -> s.downloadSegments.get() >= 1 && s.downloadSegments.get() <= Settings.DOWNLOAD_SEGMENTS_MAX,
+                    "Download segments must be between 1 and " + Settings.DOWNLOAD_SEGMENTS_MAX,
+                    s -> s.downloadSegments.set(Settings.DOWNLOAD_SEGMENTS_DEFAULT)
+            ),
+
+            // Rule for the download bandwidth limit
+            new SettingsValidationRule(
+                    s -> s.downloadBandwidthLimit.get() >= 0,
+                    "Download bandwidth limit must not be negative",
+                    s -> s.downloadBandwidthLimit.set(0)
+            ),
+
+            // Rules for concurrent installations
+            new SettingsValidationRule(
+                    s -> s.concurrentDownloads.get() >= 1 && s.concurrentDownloads.get() <= Settings.CONCURRENT_INSTALLS_MAX,
+                    "Concurrent downloads must be between 1 and " + Settings.CONCURRENT_INSTALLS_MAX,
+                    s -> s.concurrentDownloads.set(Settings.CONCURRENT_DOWNLOADS_DEFAULT)
+            ),
+            new SettingsValidationRule(
+                    s -> s.concurrentExtractions.get() >= 1 && s.concurrentExtractions.get() <= Settings.CONCURRENT_INSTALLS_MAX,
+                    "Concurrent extractions must be between 1 and " + Settings.CONCURRENT_INSTALLS_MAX,
+                    s -> s.concurrentExtractions.set(Settings.CONCURRENT_EXTRACTIONS_DEFAULT)
+            ),
+
+            // Rule for the package cache limit
+            new SettingsValidationRule(
+                    s -> s.packageCacheLimit.get() >= 0,
+                    "Package cache limit must not be negative",
+                    s -> s.packageCacheLimit.set(Settings.PACKAGE_CACHE_LIMIT_DEFAULT)
+            ),
+
+            // Rule for the peer cache port
+            new SettingsValidationRule(
+                    s -> s.peerCachePort.get() >= 0 && s.peerCachePort.get() <= 0xffff,
+                    "Peer cache port must be between 0 and 65535",
+                    s -> s.peerCachePort.set(Settings.PEER_CACHE_PORT_DEFAULT)
             )
     );
 
@@ -11,9 +11,11 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
@@ -45,6 +47,14 @@ public final class Settings {
     private static final String LEGACY_FILE_NAME = "TerasologyLauncherSettings.properties";
     private static final String JSON_FILE_NAME = "settings.json";
 
+    static final int DOWNLOAD_SEGMENTS_DEFAULT = 4;
+    static final int DOWNLOAD_SEGMENTS_MAX = 16;
+    static final int CONCURRENT_DOWNLOADS_DEFAULT = 2;
+    static final int CONCURRENT_EXTRACTIONS_DEFAULT = 1;
+    static final int CONCURRENT_INSTALLS_MAX = 8;
+    static final int PEER_CACHE_PORT_DEFAULT = 25777;
+    static final int PACKAGE_CACHE_LIMIT_DEFAULT = 4096;
+
     @SuppressWarnings("checkstyle:ConstantName")
     private static final Gson gson = FxGson.coreBuilder()
             .registerTypeAdapter(Path.class, new PathConverter())
@@ -65,6 +75,80 @@ public final class Settings {
     public final BooleanProperty showPreReleases;
     public final BooleanProperty closeLauncherAfterGameStart;
 
+    /**
+     * The maximum number of concurrent range requests used to download a single game package.
+     */
+    public final IntegerProperty downloadSegments;
+
+    /**
+     * The maximum rate at which all game downloads together may transfer data, in KiB per second. {@code 0} means no
+     * limit. Changes take effect for running downloads as well.
+     */
+    public final IntegerProperty downloadBandwidthLimit;
+
+    /**
+     * The maximum number of game packages which are downloaded at the same time.
+     */
+    public final IntegerProperty concurrentDownloads;
+
+    /**
+     * The maximum number of game packages which are extracted at the same time.
+     */
+    public final IntegerProperty concurrentExtractions;
+
+    /**
+     * Whether game packages are extracted while they are being downloaded, rather than after the download is complete.
+     * A streamed download comes from a single source and cannot be resumed, so this is off by default.
+     */
+    public final BooleanProperty streamingInstall;
+
+    /**
+     * Base URLs of mirrors which serve the game packages under the same file names as the launcher's cache, e.g.
+     * {@code https://mirror.example.org/terasology}. The packages are downloaded from whichever source is fastest.
+     * Mirrors may also provide delta patches between releases, which are preferred over full packages.
+     */
+    public final ListProperty<String> downloadMirrors;
+
+    /**
+     * The maximum size of the game packages kept in the cache, in MiB, {@code 0} for no limit. Packages of installed
+     * releases are only kept if {@link #keepDownloadedFiles} is set.
+     */
+    public final IntegerProperty packageCacheLimit;
+
+    /**
+     * Whether the newest release of the profile and build last played is downloaded in the background while the
+     * launcher is idle, see {@link org.terasology.launcher.tasks.ReleasePrefetcher}.
+     */
+    public final BooleanProperty prefetchReleases;
+
+    /**
+     * Whether releases downloaded in the background are installed right away, rather than only kept in the cache.
+     */
+    public final BooleanProperty prefetchInstall;
+
+    /**
+     * Whether the cached game packages are shared with other launchers in the local network, see
+     * {@link org.terasology.launcher.peers.PeerCache}.
+     */
+    public final BooleanProperty peerCache;
+
+    /**
+     * The port the cached game packages are served to other launchers on.
+     */
+    public final IntegerProperty peerCachePort;
+
+    /**
+     * Other launchers to fetch game packages from, as {@code host:port}, in addition to the ones announcing themselves
+     * in the local network.
+     */
+    public final ListProperty<String> peerCacheHosts;
+
+    /**
+     * Whether the jars of installed releases are repacked for faster game starts, at the cost of some disk space, see
+     * {@code org.terasology.launcher.game.JarOptimizer}. Turning this off restores the jars.
+     */
+    public final BooleanProperty optimizeJars;
+
     public final ObjectProperty<GameIdentifier> lastPlayedGameVersion;
 
     public final ListProperty<String> userJavaParameters;
@@ -80,6 +164,19 @@ public final class Settings {
         keepDownloadedFiles = new SimpleBooleanProperty(false);
         showPreReleases = new SimpleBooleanProperty(false);
         closeLauncherAfterGameStart = new SimpleBooleanProperty(true);
+        downloadSegments = new SimpleIntegerProperty(DOWNLOAD_SEGMENTS_DEFAULT);
+        downloadBandwidthLimit = new SimpleIntegerProperty(0);
+        concurrentDownloads = new SimpleIntegerProperty(CONCURRENT_DOWNLOADS_DEFAULT);
+        concurrentExtractions = new SimpleIntegerProperty(CONCURRENT_EXTRACTIONS_DEFAULT);
+        streamingInstall = new SimpleBooleanProperty(false);
+        downloadMirrors = new SimpleListProperty<>(FXCollections.observableArrayList());
+        packageCacheLimit = new SimpleIntegerProperty(PACKAGE_CACHE_LIMIT_DEFAULT);
+        prefetchReleases = new SimpleBooleanProperty(false);
+        prefetchInstall = new SimpleBooleanProperty(false);
+        peerCache = new SimpleBooleanProperty(false);
+        peerCachePort = new SimpleIntegerProperty(PEER_CACHE_PORT_DEFAULT);
+        peerCacheHosts = new SimpleListProperty<>(FXCollections.observableArrayList());
+        optimizeJars = new SimpleBooleanProperty(false);
         lastPlayedGameVersion = new SimpleObjectProperty<>();
         userJavaParameters = new SimpleListProperty<>(FXCollections.observableArrayList("-XX:MaxGCPauseMillis=20"));
         userGameParameters = new SimpleListProperty<>(FXCollections.observableArrayList());
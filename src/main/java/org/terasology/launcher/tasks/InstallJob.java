@@ -0,0 +1,229 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.util.BandwidthLimiter;
+import org.terasology.launcher.util.BundleUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The installation of a single game release, as scheduled by the {@link InstallScheduler}.
+ * <p>
+ * The state, progress and message of the job are exposed as read-only properties. They are updated through the
+ * notification executor given to the scheduler (on the JavaFX application thread in the launcher), so that they can be
+ * bound to UI controls directly.
+ */
+public final class InstallJob implements ProgressListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstallJob.class);
+
+    public enum State {
+        QUEUED,
+        DOWNLOADING,
+        EXTRACTING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final GameRelease release;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final long sequenceNumber;
+    private final Executor notifier;
+    private final CompletableFuture<State> completion = new CompletableFuture<>();
+    private final Set<Runnable> cancelActions = ConcurrentHashMap.newKeySet();
+
+    private final ReadOnlyObjectWrapper<State> stateProperty = new ReadOnlyObjectWrapper<>(State.QUEUED);
+    private final ReadOnlyDoubleWrapper progressProperty = new ReadOnlyDoubleWrapper(-1);
+    private final ReadOnlyStringWrapper messageProperty =
+            new ReadOnlyStringWrapper(BundleUtils.getMessage("message_install_queued"));
+
+    private volatile State state = State.QUEUED;
+    private volatile int priority;
+    private volatile boolean fetchOnly;
+    private volatile boolean cancelled;
+    private volatile long cancelRequestedNanos;
+    private volatile long cancelLatencyNanos = -1;
+
+    InstallJob(GameRelease release, int priority, BandwidthLimiter bandwidthLimiter, long sequenceNumber,
+               Executor notifier) {
+        this.release = release;
+        this.priority = priority;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.sequenceNumber = sequenceNumber;
+        this.notifier = notifier;
+    }
+
+    public GameRelease getRelease() {
+        return release;
+    }
+
+    /**
+     * Jobs with a higher priority are started first; jobs of the same priority in the order they were submitted.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * The bandwidth limit of this job, which can be changed while the job is running.
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * A future which completes with the final state of the job.
+     */
+    public CompletableFuture<State> getCompletion() {
+        return completion;
+    }
+
+    public ReadOnlyObjectProperty<State> stateProperty() {
+        return stateProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * The progress of the current phase between {@code 0} and {@code 1}, or {@code -1} if it is unknown.
+     */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progressProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty messageProperty() {
+        return messageProperty.getReadOnlyProperty();
+    }
+
+    long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    void setPriority(int newPriority) {
+        priority = newPriority;
+    }
+
+    /**
+     * Whether the job only downloads the package of the release into the cache, without installing it.
+     */
+    public boolean isFetchOnly() {
+        return fetchOnly;
+    }
+
+    void setFetchOnly(boolean fetchOnly) {
+        this.fetchOnly = fetchOnly;
+    }
+
+    /**
+     * The time from the request to cancel the job until it released its threads, connections and files, if it was
+     * cancelled.
+     */
+    public Optional<Duration> getCancelLatency() {
+        final long nanos = cancelLatencyNanos;
+        return nanos >= 0 ? Optional.of(Duration.ofNanos(nanos)) : Optional.empty();
+    }
+
+    /**
+     * Mark the job as cancelled and run the registered cancellation actions, which abort its network calls.
+     */
+    void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelRequestedNanos = System.nanoTime();
+        cancelled = true;
+        for (Runnable action : cancelActions) {
+            // an action registered concurrently may be run by onCancel instead, but never twice
+            if (cancelActions.remove(action)) {
+                runCancelAction(action);
+            }
+        }
+    }
+
+    void setState(State newState) {
+        if (newState == State.CANCELLED && cancelled) {
+            cancelLatencyNanos = System.nanoTime() - cancelRequestedNanos;
+        }
+        state = newState;
+        notifier.execute(() -> stateProperty.set(newState));
+        if (newState == State.QUEUED) {
+            notifier.execute(() -> messageProperty.set(BundleUtils.getMessage("message_install_queued")));
+        }
+        if (newState.isDone()) {
+            completion.complete(newState);
+        }
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public void update(int progress) {
+        notifier.execute(() -> progressProperty.set(progress / 100d));
+    }
+
+    @Override
+    public void update(Progress progress) {
+        final double fraction = progress.getFraction();
+        final String message = BundleUtils.getMessage("message_progress_" + progress.getPhase().name().toLowerCase(),
+                Progress.formatBytes(progress.getDone()),
+                progress.getTotal() > 0 ? Progress.formatBytes(progress.getTotal()) : "?",
+                Progress.formatBytes(progress.getBytesPerSecond()),
+                progress.getRemaining().map(Progress::formatDuration).orElse("-"));
+        notifier.execute(() -> {
+            progressProperty.set(fraction);
+            messageProperty.set(message);
+        });
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public Registration onCancel(Runnable action) {
+        cancelActions.add(action);
+        if (cancelled && cancelActions.remove(action)) {
+            runCancelAction(action);
+        }
+        return () -> cancelActions.remove(action);
+    }
+
+    private static void runCancelAction(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.warn("Cancellation action failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return release.getId() + " (" + state + ", priority " + priority + ")";
+    }
+}
@@ -0,0 +1,276 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Installs game releases in the background, several at a time.
+ * <p>
+ * Each installation is split into two stages, which run in separate thread pools: fetching the game package into the
+ * cache (see {@link GameManager#fetch}), and extracting it (see {@link GameManager#extract}). Thus, a package can be
+ * extracted while the next ones are still downloading. Queued stages are started by priority, and in the order the
+ * jobs were submitted among jobs of the same priority.
+ */
+public final class InstallScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstallScheduler.class);
+
+    private static final Comparator<Stage> STAGE_ORDER = Comparator
+            .comparingInt((Stage stage) -> stage.job.getPriority()).reversed()
+            .thenComparingLong(stage -> stage.job.getSequenceNumber());
+
+    private final GameManager gameManager;
+    private final Executor notifier;
+    private final ThreadPoolExecutor downloads;
+    private final ThreadPoolExecutor extractions;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongSummaryStatistics cancelLatencies = new LongSummaryStatistics();
+
+    /**
+     * The jobs which are not done yet, and the stage each of them is queued for (if any).
+     */
+    private final Map<InstallJob, Stage> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param gameManager       the game manager which carries out the installations
+     * @param downloadThreads   the maximum number of packages to download at the same time
+     * @param extractionThreads the maximum number of packages to extract at the same time
+     * @param notifier          the executor used to update the properties of the jobs, e.g. {@code Platform::runLater}
+     */
+    public InstallScheduler(GameManager gameManager, int downloadThreads, int extractionThreads, Executor notifier) {
+        this.gameManager = gameManager;
+        this.notifier = notifier;
+        this.downloads = newPool("Install-download-%d", downloadThreads);
+        this.extractions = newPool("Install-extract-%d", extractionThreads);
+    }
+
+    private static ThreadPoolExecutor newPool(String nameFormat, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(11, (a, b) -> STAGE_ORDER.compare((Stage) a, (Stage) b)),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * Queue the installation of the given release.
+     * <p>
+     * If the release is already queued or being installed, the existing job is returned.
+     *
+     * @param release  the release to install
+     * @param priority jobs with a higher priority are started first
+     * @return the job of the installation
+     */
+    public synchronized InstallJob submit(GameRelease release, int priority) {
+        return submit(release, priority, false);
+    }
+
+    /**
+     * Queue the installation of the given release, or only the download of its package into the cache.
+     * <p>
+     * If the release is already queued or being installed, the existing job is returned. Its priority is raised to
+     * {@code priority} if that is higher, and a job which only downloads the package installs the release as well
+     * unless {@code fetchOnly} is set.
+     *
+     * @param release   the release to install
+     * @param priority  jobs with a higher priority are started first
+     * @param fetchOnly whether to only download the package, see {@link GameManager#fetch}
+     * @return the job of the installation
+     */
+    public synchronized InstallJob submit(GameRelease release, int priority, boolean fetchOnly) {
+        final Optional<InstallJob> existing = getJob(release.getId());
+        if (existing.isPresent()) {
+            final InstallJob job = existing.get();
+            if (!fetchOnly) {
+                job.setFetchOnly(false);
+            }
+            if (priority > job.getPriority()) {
+                reprioritize(job, priority);
+            }
+            return job;
+        }
+        final InstallJob job = new InstallJob(release, priority, gameManager.newBandwidthLimiter(0),
+                sequence.getAndIncrement(), notifier);
+        job.setFetchOnly(fetchOnly);
+        logger.info("Queued {} of {}", fetchOnly ? "download" : "installation", job);
+        enqueue(new Stage(job, false));
+        return job;
+    }
+
+    /**
+     * The job installing the given release, unless it is done.
+     */
+    public synchronized Optional<InstallJob> getJob(GameIdentifier id) {
+        return jobs.keySet().stream().filter(job -> job.getRelease().getId().equals(id)).findFirst();
+    }
+
+    /**
+     * All jobs which are not done yet, in the order they were submitted.
+     */
+    public synchronized List<InstallJob> getJobs() {
+        return new ArrayList<>(jobs.keySet());
+    }
+
+    public synchronized boolean hasActiveJobs() {
+        return !jobs.isEmpty();
+    }
+
+    /**
+     * How long cancelled jobs took from the request to cancel them until they released their resources, in
+     * milliseconds.
+     */
+    public synchronized LongSummaryStatistics getCancelLatencies() {
+        final LongSummaryStatistics copy = new LongSummaryStatistics();
+        copy.combine(cancelLatencies);
+        return copy;
+    }
+
+    /**
+     * Cancel the given job. A queued job is removed from the queue, a running job stops as soon as possible.
+     */
+    public synchronized void cancel(InstallJob job) {
+        job.cancel();
+        final Stage queued = jobs.get(job);
+        if (queued != null && queued.pool().remove(queued)) {
+            finish(job, InstallJob.State.CANCELLED);
+        }
+        logger.info("Cancelled installation of {}", job);
+    }
+
+    /**
+     * Change the priority of the given job. If the job is queued, its position in the queue changes accordingly.
+     */
+    public synchronized void reprioritize(InstallJob job, int priority) {
+        final Stage queued = jobs.get(job);
+        // the queue cannot handle priorities which change while an element is queued, so it is queued again
+        final boolean requeue = queued != null && queued.pool().remove(queued);
+        job.setPriority(priority);
+        if (requeue) {
+            queued.pool().execute(queued);
+        }
+        logger.debug("Changed priority of {}", job);
+    }
+
+    /**
+     * Change the number of packages which are downloaded and extracted at the same time.
+     */
+    public void setConcurrency(int downloadThreads, int extractionThreads) {
+        resize(downloads, downloadThreads);
+        resize(extractions, extractionThreads);
+    }
+
+    private static void resize(ThreadPoolExecutor pool, int threads) {
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        } else {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Cancel all jobs and stop the thread pools.
+     */
+    public synchronized void shutdownNow() {
+        new ArrayList<>(jobs.keySet()).forEach(this::cancel);
+        downloads.shutdownNow();
+        extractions.shutdownNow();
+    }
+
+    private synchronized void enqueue(Stage stage) {
+        jobs.put(stage.job, stage);
+        stage.job.setState(InstallJob.State.QUEUED);
+        stage.pool().execute(stage);
+    }
+
+    private synchronized boolean start(Stage stage) {
+        if (stage.job.isCancelled()) {
+            finish(stage.job, InstallJob.State.CANCELLED);
+            return false;
+        }
+        jobs.put(stage.job, null);
+        stage.job.setState(stage.extract ? InstallJob.State.EXTRACTING : InstallJob.State.DOWNLOADING);
+        return true;
+    }
+
+    private synchronized void finish(InstallJob job, InstallJob.State state) {
+        jobs.remove(job);
+        job.setState(state);
+        logger.info("Finished installation of {}", job);
+        job.getCancelLatency().ifPresent(latency -> {
+            cancelLatencies.accept(latency.toMillis());
+            logger.info("Installation of {} stopped {} ms after it was cancelled", job.getRelease().getId(),
+                    latency.toMillis());
+        });
+    }
+
+    private void run(Stage stage) {
+        if (!start(stage)) {
+            return;
+        }
+        final InstallJob job = stage.job;
+        final GameRelease release = job.getRelease();
+        try {
+            if (stage.extract) {
+                gameManager.extract(release, job);
+            } else if (!gameManager.fetch(release, job, job.getBandwidthLimiter(), !job.isFetchOnly())
+                    && !job.isCancelled() && !job.isFetchOnly()) {
+                enqueue(new Stage(job, true));
+                return;
+            }
+            finish(job, job.isCancelled() ? InstallJob.State.CANCELLED : InstallJob.State.SUCCEEDED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, InstallJob.State.CANCELLED);
+        } catch (Exception e) {
+            if (job.isCancelled()) {
+                logger.debug("Installation of {} stopped after it was cancelled", release.getId(), e);
+                finish(job, InstallJob.State.CANCELLED);
+            } else {
+                logger.error("Failed to install package '{}' from '{}'", release.getId(), release.getUrl(), e);
+                finish(job, InstallJob.State.FAILED);
+            }
+        }
+    }
+
+    /**
+     * A stage of a job, as queued in one of the thread pools.
+     */
+    private final class Stage implements Runnable {
+        private final InstallJob job;
+        private final boolean extract;
+
+        Stage(InstallJob job, boolean extract) {
+            this.job = job;
+            this.extract = extract;
+        }
+
+        ThreadPoolExecutor pool() {
+            return extract ? extractions : downloads;
+        }
+
+        @Override
+        public void run() {
+            InstallScheduler.this.run(this);
+        }
+    }
+}
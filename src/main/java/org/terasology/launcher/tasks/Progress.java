@@ -0,0 +1,109 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A snapshot of the progress of a long running operation, as reported by {@link ProgressAggregator}.
+ */
+public final class Progress {
+
+    /**
+     * The steps of installing a game package.
+     */
+    public enum Phase {
+        DOWNLOAD,
+        VERIFY,
+        EXTRACT
+    }
+
+    private final Phase phase;
+    private final long done;
+    private final long total;
+    private final double bytesPerSecond;
+    private final Duration remaining;
+
+    Progress(Phase phase, long done, long total, double bytesPerSecond, Duration remaining) {
+        this.phase = phase;
+        this.done = done;
+        this.total = total;
+        this.bytesPerSecond = bytesPerSecond;
+        this.remaining = remaining;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * The number of bytes processed so far in the current phase.
+     */
+    public long getDone() {
+        return done;
+    }
+
+    /**
+     * The number of bytes to process in the current phase, or {@code -1} if unknown.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * The fraction of the current phase that is done, between {@code 0} and {@code 1}, or {@code -1} if unknown.
+     */
+    public double getFraction() {
+        if (total <= 0) {
+            return -1;
+        }
+        return Math.min(1.0, (double) done / total);
+    }
+
+    /**
+     * The moving average of the throughput of the current phase.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * The estimated time until the current phase is done, if it can be estimated.
+     */
+    public Optional<Duration> getRemaining() {
+        return Optional.ofNullable(remaining);
+    }
+
+    /**
+     * Format a number of bytes for humans, e.g. {@code 12.3 MiB}.
+     */
+    public static String formatBytes(double bytes) {
+        final String[] units = {"B", "KiB", "MiB", "GiB"};
+        int unit = 0;
+        while (bytes >= 1024 && unit < units.length - 1) {
+            bytes /= 1024;
+            unit++;
+        }
+        return unit == 0 ? String.format("%.0f %s", bytes, units[unit]) : String.format("%.1f %s", bytes, units[unit]);
+    }
+
+    /**
+     * Format a duration for humans, e.g. {@code 1:05:09} or {@code 4:02}.
+     */
+    public static String formatDuration(Duration duration) {
+        final long seconds = duration.getSeconds();
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    @Override
+    public String toString() {
+        return phase + " " + formatBytes(done) + (total > 0 ? " of " + formatBytes(total) : "")
+                + " (" + formatBytes(bytesPerSecond) + "/s"
+                + getRemaining().map(eta -> ", " + formatDuration(eta) + " remaining").orElse("") + ")";
+    }
+}
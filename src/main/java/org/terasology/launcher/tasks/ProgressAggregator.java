@@ -0,0 +1,168 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sits between an I/O loop and a {@link ProgressListener} and turns a stream of "n more bytes done" events into a
+ * limited number of {@link Progress} updates.
+ * <p>
+ * The I/O loop may report progress as often as it likes, from as many threads as it likes. The listener is informed at
+ * most once per frame (see {@link #FRAME_INTERVAL}), plus once at the start and end of each phase. Each update carries
+ * the throughput (as exponential moving average over the frames) and an estimate of the remaining time.
+ */
+public final class ProgressAggregator {
+
+    /**
+     * The minimum time between two updates of the listener, i.e. 20 updates per second.
+     */
+    static final Duration FRAME_INTERVAL = Duration.ofMillis(50);
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressAggregator.class);
+
+    /**
+     * How often the progress is written to the log while a phase is running.
+     */
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The weight of the newest throughput sample in the moving average.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    private final ProgressListener listener;
+    private final long frameNanos;
+    private final LongSupplier clock;
+
+    private final AtomicLong done = new AtomicLong();
+    private volatile long lastFrame;
+
+    private Progress.Phase phase;
+    private long total;
+    private long phaseStart;
+    private long phaseStartDone;
+    private long lastFrameDone;
+    private long lastLog;
+    private double bytesPerSecond = -1;
+
+    public ProgressAggregator(ProgressListener listener) {
+        this(listener, FRAME_INTERVAL.toNanos(), System::nanoTime);
+    }
+
+    ProgressAggregator(ProgressListener listener, long frameNanos, LongSupplier clock) {
+        this.listener = listener;
+        this.frameNanos = frameNanos;
+        this.clock = clock;
+        this.lastFrame = clock.getAsLong() - frameNanos;
+    }
+
+    /**
+     * Start a new phase, resetting all counters.
+     *
+     * @param newPhase the phase to start
+     * @param newTotal the number of bytes to process in this phase, or {@code -1} if unknown
+     */
+    public void startPhase(Progress.Phase newPhase, long newTotal) {
+        startPhase(newPhase, newTotal, 0);
+    }
+
+    /**
+     * Start a new phase of which some part was already done before, e.g. when continuing a download.
+     * <p>
+     * The bytes done before do not count towards the throughput.
+     *
+     * @param newPhase    the phase to start
+     * @param newTotal    the number of bytes to process in this phase, or {@code -1} if unknown
+     * @param alreadyDone the number of bytes already processed
+     */
+    public synchronized void startPhase(Progress.Phase newPhase, long newTotal, long alreadyDone) {
+        final long now = clock.getAsLong();
+        phase = newPhase;
+        total = newTotal;
+        done.set(alreadyDone);
+        phaseStart = now;
+        phaseStartDone = alreadyDone;
+        lastFrameDone = alreadyDone;
+        lastLog = now;
+        bytesPerSecond = -1;
+        logger.debug("Starting {} of {}", phase, total > 0 ? Progress.formatBytes(total) : "unknown size");
+        emit(now);
+    }
+
+    /**
+     * Record that {@code bytes} more bytes of the current phase are done.
+     * <p>
+     * This is cheap unless a frame is due, and may be called concurrently.
+     */
+    public void advance(long bytes) {
+        done.addAndGet(bytes);
+        final long now = clock.getAsLong();
+        if (now - lastFrame >= frameNanos) {
+            frame(now);
+        }
+    }
+
+    /**
+     * End the current phase, informing the listener about its final state.
+     */
+    public synchronized void finishPhase() {
+        final long now = clock.getAsLong();
+        emit(now);
+        final long elapsed = Math.max(1, now - phaseStart);
+        final long processed = done.get() - phaseStartDone;
+        logger.info("Finished {}: {} in {} ms ({}/s)", phase, Progress.formatBytes(processed),
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                Progress.formatBytes(processed * 1e9 / elapsed));
+    }
+
+    public boolean isCancelled() {
+        return listener.isCancelled();
+    }
+
+    /**
+     * See {@link ProgressListener#onCancel(Runnable)}.
+     */
+    public ProgressListener.Registration onCancel(Runnable action) {
+        return listener.onCancel(action);
+    }
+
+    private synchronized void frame(long now) {
+        // another thread may have emitted the frame while this one was waiting for the lock
+        if (now - lastFrame >= frameNanos) {
+            emit(now);
+            if (now - lastLog >= LOG_INTERVAL_NANOS) {
+                lastLog = now;
+                logger.debug("{}", snapshot());
+            }
+        }
+    }
+
+    private void emit(long now) {
+        final long currentDone = done.get();
+        final long elapsed = now - lastFrame;
+        if (elapsed > 0 && currentDone > lastFrameDone) {
+            final double sample = (currentDone - lastFrameDone) * 1e9 / elapsed;
+            bytesPerSecond = bytesPerSecond < 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * bytesPerSecond;
+        }
+        lastFrame = now;
+        lastFrameDone = currentDone;
+        listener.update(snapshot());
+    }
+
+    private Progress snapshot() {
+        final long currentDone = done.get();
+        Duration remaining = null;
+        if (total > 0 && bytesPerSecond > 0) {
+            remaining = Duration.ofSeconds((long) Math.ceil(Math.max(0, total - currentDone) / bytesPerSecond));
+        }
+        return new Progress(phase, currentDone, total, Math.max(0, bytesPerSecond), remaining);
+    }
+}
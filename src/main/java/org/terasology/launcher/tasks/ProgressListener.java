@@ -11,4 +11,43 @@ public interface ProgressListener {
 
     boolean isCancelled();
 
+    /**
+     * Run {@code action} as soon as the task is cancelled, e.g. to abort a network call which may block for a long
+     * time. If the task is cancelled already, {@code action} runs right away.
+     * <p>
+     * By default, the action only runs if the task is cancelled already, so tasks still have to poll
+     * {@link #isCancelled()}.
+     *
+     * @return a registration which removes the action again when it is closed
+     */
+    default Registration onCancel(Runnable action) {
+        if (isCancelled()) {
+            action.run();
+        }
+        return () -> { };
+    }
+
+    /**
+     * Inform about detailed progress, see {@link ProgressAggregator}.
+     * <p>
+     * By default, this is mapped to {@link #update(int)} with the percentage of the current phase, or to
+     * {@link #update()} if the size of the phase is unknown.
+     */
+    default void update(Progress progress) {
+        final double fraction = progress.getFraction();
+        if (fraction < 0) {
+            update();
+        } else {
+            update((int) (fraction * 100));
+        }
+    }
+
+    /**
+     * An action registered with {@link #onCancel(Runnable)}.
+     */
+    interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
 }
@@ -0,0 +1,163 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.settings.Settings;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Downloads the newest release of the profile and build the user last played in the background, so that updating to it
+ * is instant by the time it is wanted.
+ * <p>
+ * The prefetcher is opt-in (see {@link Settings#prefetchReleases}) and only starts work while the launcher and the game
+ * are idle: no game is running and no other installation is in progress. The release is submitted to the
+ * {@link InstallScheduler} at {@link #PRIORITY}, below any installation the user asks for, and is downloaded within
+ * the launcher-wide bandwidth limit. Depending on {@link Settings#prefetchInstall}, the package is only put into the
+ * cache or installed right away.
+ * <p>
+ * As soon as the game is started or another installation is submitted, the prefetch is cancelled. The download is
+ * continued from where it stopped the next time the launcher is idle. If the user installs the release which is being
+ * prefetched, the prefetch turns into that installation.
+ */
+public final class ReleasePrefetcher {
+
+    /**
+     * The priority of prefetches in the {@link InstallScheduler}, lower than any installation the user asks for.
+     */
+    static final int PRIORITY = -100;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReleasePrefetcher.class);
+
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final InstallScheduler scheduler;
+    private final GameManager gameManager;
+    private final Settings settings;
+    private final Supplier<? extends Collection<GameRelease>> releases;
+    private final BooleanSupplier gameRunning;
+    private final Executor executor;
+
+    /**
+     * Releases which are not prefetched again during this session, as prefetching them failed or the user cancelled it.
+     */
+    private final Set<GameIdentifier> skipped = new HashSet<>();
+
+    private ScheduledExecutorService timer;
+    private InstallJob job;
+
+    /**
+     * @param scheduler   the scheduler to submit the prefetches to
+     * @param gameManager the game manager, to look up installed and cached releases
+     * @param settings    the launcher settings, with the last played release and whether to prefetch at all
+     * @param releases    the releases available from the repositories
+     * @param gameRunning whether a game is running
+     * @param executor    the executor the checks run on, e.g. {@code Platform::runLater}
+     */
+    public ReleasePrefetcher(InstallScheduler scheduler, GameManager gameManager, Settings settings,
+                             Supplier<? extends Collection<GameRelease>> releases, BooleanSupplier gameRunning,
+                             Executor executor) {
+        this.scheduler = scheduler;
+        this.gameManager = gameManager;
+        this.settings = settings;
+        this.releases = releases;
+        this.gameRunning = gameRunning;
+        this.executor = executor;
+    }
+
+    /**
+     * Check periodically whether the launcher is idle, and start or pause the prefetch accordingly.
+     */
+    public synchronized void start() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("Prefetch-timer")
+                    .setDaemon(true)
+                    .build());
+            timer.scheduleWithFixedDelay(() -> executor.execute(this::check), CHECK_INTERVAL.toMillis(),
+                    CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop checking. A running prefetch is left to the scheduler.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Start, pause, or leave the prefetch, depending on whether the launcher is idle.
+     */
+    synchronized void check() {
+        if (job != null && job.getState().isDone()) {
+            if (job.getState() != InstallJob.State.SUCCEEDED) {
+                skipped.add(job.getRelease().getId());
+            }
+            job = null;
+        } else if (job != null && job.getPriority() > PRIORITY) {
+            // the user asked to install the release, so the job is no prefetch anymore
+            job = null;
+        }
+
+        final boolean enabled = settings.prefetchReleases.get();
+        final boolean idle = !gameRunning.getAsBoolean()
+                && scheduler.getJobs().stream().allMatch(other -> other == job);
+        if (job != null) {
+            if (!enabled || !idle) {
+                logger.info("Pausing the prefetch of {}", job.getRelease().getId());
+                final InstallJob paused = job;
+                job = null;
+                scheduler.cancel(paused);
+            }
+            return;
+        }
+        if (enabled && idle) {
+            findRelease().ifPresent(release -> {
+                final boolean install = settings.prefetchInstall.get();
+                logger.info("Prefetching {} ({})", release.getId(), install ? "install" : "download only");
+                job = scheduler.submit(release, PRIORITY, !install);
+            });
+        }
+    }
+
+    /**
+     * The newest release of the profile and build last played, if it is newer than the one last played and still has
+     * to be downloaded or installed.
+     */
+    Optional<GameRelease> findRelease() {
+        final GameIdentifier lastPlayed = settings.lastPlayedGameVersion.get();
+        if (lastPlayed == null) {
+            return Optional.empty();
+        }
+        return releases.get().stream()
+                .filter(release -> release.getId().getProfile() == lastPlayed.getProfile()
+                        && release.getId().getBuild() == lastPlayed.getBuild())
+                .max(Comparator.comparing(GameRelease::getTimestamp))
+                .filter(release -> !release.getId().equals(lastPlayed))
+                .filter(release -> !skipped.contains(release.getId()))
+                .filter(release -> !gameManager.getInstalledGames().contains(release.getId()))
+                .filter(release -> settings.prefetchInstall.get() || !gameManager.isCached(release));
+    }
+}
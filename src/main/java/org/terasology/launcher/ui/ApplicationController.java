@@ -4,7 +4,9 @@
 package org.terasology.launcher.ui;
 
 import javafx.animation.Transition;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.Property;
@@ -25,6 +27,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
@@ -47,7 +50,9 @@ import org.terasology.launcher.repositories.RepositoryManager;
 import org.terasology.launcher.settings.LauncherSettings;
 import org.terasology.launcher.settings.Settings;
 import org.terasology.launcher.tasks.DeleteTask;
-import org.terasology.launcher.tasks.DownloadTask;
+import org.terasology.launcher.tasks.InstallJob;
+import org.terasology.launcher.tasks.InstallScheduler;
+import org.terasology.launcher.tasks.ReleasePrefetcher;
 import org.terasology.launcher.util.BundleUtils;
 import org.terasology.launcher.util.HostServices;
 import org.terasology.launcher.util.Languages;
@@ -78,7 +83,8 @@ public class ApplicationController {
     private RepositoryManager repositoryManager;
     private final GameService gameService;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private DownloadTask downloadTask;
+    private InstallScheduler installScheduler;
+    private ReleasePrefetcher releasePrefetcher;
 
     private Stage stage;
 
@@ -101,6 +107,8 @@ public class ApplicationController {
     @FXML
     private ProgressBar progressBar;
     @FXML
+    private Label progressLabel;
+    @FXML
     private Button startButton;
     @FXML
     private Button downloadButton;
@@ -226,6 +234,9 @@ public class ApplicationController {
         //TODO: instead of imperatively updating the changelog view its value should be bound via property, too
         selectedRelease.addListener(
                 (observable, oldValue, newValue) -> changelogViewController.update(newValue != null ? newValue.getChangelog() : ""));
+        // show the installation of the selected release, if there is one
+        selectedRelease.addListener((observable, oldValue, newValue) -> showInstallJob(
+                installScheduler != null && newValue != null ? installScheduler.getJob(newValue.getId()).orElse(null) : null));
     }
 
     /**
@@ -278,11 +289,18 @@ public class ApplicationController {
 
         this.repositoryManager = configuration.getRepositoryManager();
         this.gameManager = configuration.getGameManager();
+        this.installScheduler = new InstallScheduler(gameManager, launcherSettings.concurrentDownloads.get(),
+                launcherSettings.concurrentExtractions.get(), Platform::runLater);
+        launcherSettings.concurrentDownloads.addListener((obs, oldVal, newVal) -> updateInstallConcurrency());
+        launcherSettings.concurrentExtractions.addListener((obs, oldVal, newVal) -> updateInstallConcurrency());
+        this.releasePrefetcher = new ReleasePrefetcher(installScheduler, gameManager, launcherSettings,
+                repositoryManager::getReleases, gameService::isRunning, Platform::runLater);
+        releasePrefetcher.start();
 
         this.stage = stage;
 
         // bind the application controller's view of the installed games to that of the game manager. that way, we also
-        // get notified if the installed games are changed from a different thread (DeleteTask or DownloadTask).
+        // get notified if the installed games are changed from a different thread (DeleteTask or InstallScheduler).
         Bindings.bindContent(installedGames, gameManager.getInstalledGames());
 
         profileComboBox.getSelectionModel().select(
@@ -391,7 +409,7 @@ public class ApplicationController {
         launcherSettings.lastPlayedGameVersion.set(selectedRelease.getValue().getId());
 
         if (launcherSettings.closeLauncherAfterGameStart.get()) {
-            if (downloadTask == null) {
+            if (!installScheduler.hasActiveJobs()) {
                 logger.info("Close launcher after game start.");
                 close();
             } else {
@@ -415,27 +433,46 @@ public class ApplicationController {
 
     @FXML
     protected void downloadAction() {
-        downloadTask = new DownloadTask(gameManager, selectedRelease.getValue());
-        downloading.bind(downloadTask.runningProperty());
-
-        profileComboBox.disableProperty().bind(downloadTask.runningProperty());
-        gameReleaseComboBox.disableProperty().bind(downloadTask.runningProperty());
-        progressBar.visibleProperty().bind(downloadTask.runningProperty());
-
-        progressBar.progressProperty().bind(downloadTask.progressProperty());
-
-        downloadTask.setOnSucceeded(workerStateEvent -> {
-            downloadTask = null;
-        });
-
-        executor.submit(downloadTask);
-
+        // other releases can be selected and queued while this one is installing
+        showInstallJob(installScheduler.submit(selectedRelease.getValue(), 0));
     }
 
     @FXML
     protected void cancelDownloadAction() {
         logger.info("Cancel game download!");
-        downloadTask.cancel(false);
+        installScheduler.getJob(selectedRelease.getValue().getId()).ifPresent(installScheduler::cancel);
+    }
+
+    /**
+     * Bind the progress indicators and the game action to the given installation job.
+     *
+     * @param job the job to show, or {@code null} if the selected release is not being installed
+     */
+    private void showInstallJob(InstallJob job) {
+        downloading.unbind();
+        progressBar.visibleProperty().unbind();
+        progressBar.progressProperty().unbind();
+        progressLabel.visibleProperty().unbind();
+        progressLabel.textProperty().unbind();
+
+        if (job == null) {
+            downloading.set(false);
+            progressBar.setVisible(false);
+            progressLabel.setVisible(false);
+            return;
+        }
+        final BooleanBinding active = Bindings.createBooleanBinding(() -> !job.stateProperty().get().isDone(),
+                job.stateProperty());
+        downloading.bind(active);
+        progressBar.visibleProperty().bind(active);
+        progressBar.progressProperty().bind(job.progressProperty());
+        progressLabel.visibleProperty().bind(active);
+        progressLabel.textProperty().bind(job.messageProperty());
+    }
+
+    private void updateInstallConcurrency() {
+        installScheduler.setConcurrency(launcherSettings.concurrentDownloads.get(),
+                launcherSettings.concurrentExtractions.get());
     }
 
     @FXML
@@ -487,10 +524,11 @@ public class ApplicationController {
         }
 
         // TODO: Improve close request handling
-        if (downloadTask != null) {
-            downloadTask.cancel(true);
-        }
+        releasePrefetcher.stop();
+        installScheduler.shutdownNow();
         executor.shutdownNow();
+        gameManager.getPeerCache().close();
+        logger.info("Package cache: {}", gameManager.getPackageCacheStatistics());
 
         logger.debug("Closing the launcher ...");
         stage.close();
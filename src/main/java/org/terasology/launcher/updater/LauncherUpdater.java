@@ -11,9 +11,12 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.control.TextArea;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import okhttp3.OkHttpClient;
 import org.kohsuke.github.GHRelease;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.okhttp3.OkHttpConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.launcher.model.LauncherVersion;
@@ -28,10 +31,12 @@ public final class LauncherUpdater {
     private static final Logger logger = LoggerFactory.getLogger(LauncherUpdater.class);
 
     private final Semver currentVersion;
+    private final OkHttpClient httpClient;
 
-    public LauncherUpdater(LauncherVersion currentVersionInfo) {
+    public LauncherUpdater(LauncherVersion currentVersionInfo, OkHttpClient httpClient) {
         //TODO: might not be valid semver, thus can be null
         currentVersion = currentVersionInfo.getSemver();
+        this.httpClient = httpClient;
     }
 
     //TODO: catch invalid semver and return Try<..> or Option<..> instead
@@ -50,7 +55,9 @@ public final class LauncherUpdater {
     public GHRelease updateAvailable() {
         //TODO: only check of both version are defined and valid semver?
         try {
-            final GitHub github = GitHub.connectAnonymously();
+            final GitHub github = new GitHubBuilder()
+                    .withConnector(new OkHttpConnector(httpClient))
+                    .build();
             final GHRepository repository = github.getRepository("MovingBlocks/TerasologyLauncher");
             final GHRelease latestRelease = repository.getLatestRelease();
             final Semver latestVersion = versionOf(latestRelease);
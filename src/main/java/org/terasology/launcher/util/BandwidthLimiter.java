@@ -0,0 +1,153 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate at which downloads transfer data, using a token bucket.
+ * <p>
+ * The bucket fills up with one token per byte at the configured rate and holds at most one second worth of tokens (but
+ * never less than one download buffer), so that an idle transfer may burst briefly before being held back. Every
+ * thread copying data takes tokens for each chunk it has read, so all segments of a download, and all downloads using
+ * the same limiter, share the configured rate.
+ * <p>
+ * Limiters form a hierarchy: a limiter for a single download is created with the launcher-wide limiter as parent, and
+ * data passes only once both have granted it. The rate of a limiter can be changed at any time; waiting transfers pick
+ * up the new rate immediately.
+ */
+public final class BandwidthLimiter {
+
+    /**
+     * The longest time to wait without checking whether the transfer was cancelled.
+     */
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final BandwidthLimiter parent;
+    private final LongSupplier clock;
+
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Create a limiter without a parent.
+     *
+     * @param bytesPerSecond the maximum rate, {@code 0} for no limit
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        this(null, bytesPerSecond);
+    }
+
+    /**
+     * Create a limiter which is additionally bound by the limit of {@code parent}.
+     *
+     * @param parent         the limiter to obey as well, or {@code null}
+     * @param bytesPerSecond the maximum rate, {@code 0} for no limit
+     */
+    public BandwidthLimiter(BandwidthLimiter parent, long bytesPerSecond) {
+        this(parent, bytesPerSecond, System::nanoTime);
+    }
+
+    BandwidthLimiter(BandwidthLimiter parent, long bytesPerSecond, LongSupplier clock) {
+        this.parent = parent;
+        this.clock = clock;
+        this.lastRefill = clock.getAsLong();
+        setBytesPerSecond(bytesPerSecond);
+    }
+
+    public static BandwidthLimiter unlimited() {
+        return new BandwidthLimiter(0);
+    }
+
+    /**
+     * Create a limiter for a single transfer, which is bound by this limiter as well.
+     *
+     * @param bytesPerSecond the maximum rate of the transfer, {@code 0} for no limit of its own
+     */
+    public BandwidthLimiter newChild(long bytesPerSecond) {
+        return new BandwidthLimiter(this, bytesPerSecond, clock);
+    }
+
+    /**
+     * Change the maximum rate, taking effect for transfers which are currently running as well.
+     *
+     * @param newBytesPerSecond the maximum rate, {@code 0} for no limit
+     */
+    public synchronized void setBytesPerSecond(long newBytesPerSecond) {
+        if (newBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth limit must not be negative: " + newBytesPerSecond);
+        }
+        refill(clock.getAsLong());
+        bytesPerSecond = newBytesPerSecond;
+        tokens = Math.min(tokens, capacity());
+        notifyAll();
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Wait until {@code bytes} bytes may be transferred, by this limiter and all its parents.
+     *
+     * @param bytes     the number of bytes about to be transferred (or just transferred)
+     * @param cancelled checked regularly while waiting; waiting stops early once it returns {@code true}
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire(long bytes, BooleanSupplier cancelled) throws InterruptedIOException {
+        take(bytes, cancelled);
+        if (parent != null) {
+            parent.acquire(bytes, cancelled);
+        }
+    }
+
+    private synchronized void take(long bytes, BooleanSupplier cancelled) throws InterruptedIOException {
+        while (!cancelled.getAsBoolean()) {
+            final long waitNanos = tryTake(bytes);
+            if (waitNanos == 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.min(waitNanos, MAX_WAIT_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+
+    /**
+     * Take {@code bytes} tokens if there are enough.
+     *
+     * @return {@code 0} if the tokens were taken, otherwise the time until there will be enough tokens, in nanoseconds
+     */
+    synchronized long tryTake(long bytes) {
+        if (bytesPerSecond == 0) {
+            return 0;
+        }
+        refill(clock.getAsLong());
+        // a chunk larger than the bucket may pass once the bucket is full, otherwise it would never pass
+        final double needed = Math.min(bytes, capacity());
+        if (tokens >= needed) {
+            tokens -= bytes;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((needed - tokens) * 1e9 / bytesPerSecond));
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(capacity(), tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+        }
+        lastRefill = now;
+    }
+
+    private double capacity() {
+        return Math.max(bytesPerSecond, DownloadUtils.BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A binary diff which describes a file as a sequence of ranges copied from an older version of the file and literal
+ * bytes.
+ * <p>
+ * The diff finds blocks of {@link #BLOCK_SIZE} bytes of the old version anywhere in the new version using a rolling
+ * checksum, and extends each match as far as possible in both directions. Jar files mostly change by whole entries, and
+ * the compressed data of an unchanged entry stays the same even if it moves, so this finds most of the shared content.
+ * <p>
+ * A delta consists of a header, followed by {@code COPY offset length} and {@code ADD length bytes} instructions, and
+ * ends with {@code END}.
+ */
+final class BinaryDelta {
+
+    static final int BLOCK_SIZE = 64;
+
+    private static final int MAGIC = 0x54444c31; // "TDL1"
+
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int ADD = 2;
+
+    private BinaryDelta() {
+    }
+
+    /**
+     * Compute the delta which turns {@code base} into {@code target}.
+     */
+    static byte[] diff(byte[] base, byte[] target) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(target.length);
+            final BlockIndex index = new BlockIndex(base);
+
+            int literalStart = 0;
+            int position = 0;
+            int hash = target.length >= BLOCK_SIZE ? checksum(target, 0) : 0;
+            while (position + BLOCK_SIZE <= target.length) {
+                final int candidate = index.find(hash, target, position);
+                if (candidate < 0) {
+                    if (position + BLOCK_SIZE < target.length) {
+                        hash = roll(hash, target[position], target[position + BLOCK_SIZE]);
+                    }
+                    position++;
+                    continue;
+                }
+                // extend the match backwards into the pending literal bytes, then forwards
+                int baseStart = candidate;
+                int targetStart = position;
+                while (targetStart > literalStart && baseStart > 0 && base[baseStart - 1] == target[targetStart - 1]) {
+                    baseStart--;
+                    targetStart--;
+                }
+                int end = position + BLOCK_SIZE;
+                int baseEnd = candidate + BLOCK_SIZE;
+                while (end < target.length && baseEnd < base.length && base[baseEnd] == target[end]) {
+                    end++;
+                    baseEnd++;
+                }
+                writeAdd(out, target, literalStart, targetStart);
+                out.writeByte(COPY);
+                out.writeLong(baseStart);
+                out.writeInt(end - targetStart);
+                literalStart = end;
+                position = end;
+                if (position + BLOCK_SIZE <= target.length) {
+                    hash = checksum(target, position);
+                }
+            }
+            writeAdd(out, target, literalStart, target.length);
+            out.writeByte(END);
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reconstruct the target of a delta from its base.
+     *
+     * @param base  the content the delta was computed against
+     * @param delta the delta, as created by {@link #diff(byte[], byte[])}
+     * @param out   receives the reconstructed content
+     * @throws IOException if the delta is malformed or does not fit {@code base}
+     */
+    static void apply(byte[] base, InputStream delta, OutputStream out) throws IOException {
+        final DataInputStream in = new DataInputStream(delta);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary delta");
+        }
+        final long length = in.readLong();
+        final byte[] buffer = new byte[DownloadUtils.BUFFER_SIZE];
+        long written = 0;
+        int op;
+        while ((op = in.readUnsignedByte()) != END) {
+            if (op == COPY) {
+                final long offset = in.readLong();
+                final int count = in.readInt();
+                if (offset < 0 || count < 0 || offset + count > base.length) {
+                    throw new IOException("Delta copies outside of its base: " + offset + "+" + count);
+                }
+                out.write(base, (int) offset, count);
+                written += count;
+            } else if (op == ADD) {
+                int remaining = in.readInt();
+                written += remaining;
+                while (remaining > 0) {
+                    final int n = Math.min(remaining, buffer.length);
+                    in.readFully(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            } else {
+                throw new IOException("Unknown delta instruction " + op);
+            }
+        }
+        if (written != length) {
+            throw new IOException("Delta produced " + written + " bytes instead of " + length);
+        }
+    }
+
+    private static void writeAdd(DataOutputStream out, byte[] data, int from, int to) throws IOException {
+        if (to > from) {
+            out.writeByte(ADD);
+            out.writeInt(to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    /**
+     * An Adler-style checksum of the block starting at {@code offset}: the sum of the bytes in the low half, the sum of
+     * the running sums in the high half.
+     */
+    private static int checksum(byte[] data, int offset) {
+        int a = 0;
+        int b = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+            a += data[i] & 0xff;
+            b += a;
+        }
+        return (b << 16) | (a & 0xffff);
+    }
+
+    /**
+     * Move the block of {@code hash} one byte ahead, dropping {@code out} and appending {@code in}.
+     */
+    private static int roll(int hash, byte out, byte in) {
+        int a = hash & 0xffff;
+        int b = hash >>> 16;
+        a = (a - (out & 0xff) + (in & 0xff)) & 0xffff;
+        b = (b - BLOCK_SIZE * (out & 0xff) + a) & 0xffff;
+        return (b << 16) | a;
+    }
+
+    /**
+     * The offsets of the aligned blocks of the base, by checksum. Only the first block per hash bucket is kept, which
+     * is enough to find repeated content without chaining.
+     */
+    private static final class BlockIndex {
+        private final byte[] base;
+        private final int[] offsets;
+        private final int mask;
+
+        BlockIndex(byte[] base) {
+            this.base = base;
+            final int blocks = base.length / BLOCK_SIZE;
+            this.offsets = new int[Math.max(16, Integer.highestOneBit(Math.max(1, blocks)) << 2)];
+            this.mask = offsets.length - 1;
+            Arrays.fill(offsets, -1);
+            for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+                final int bucket = bucket(checksum(base, offset));
+                if (offsets[bucket] < 0) {
+                    offsets[bucket] = offset;
+                }
+            }
+        }
+
+        /**
+         * The offset of a block of the base with the same content as the block of {@code data} at {@code position}.
+         *
+         * @return the offset in the base, or {@code -1} if there is none
+         */
+        int find(int hash, byte[] data, int position) {
+            final int offset = offsets[bucket(hash)];
+            if (offset >= 0
+                    && Arrays.equals(base, offset, offset + BLOCK_SIZE, data, position, position + BLOCK_SIZE)) {
+                return offset;
+            }
+            return -1;
+        }
+
+        private int bucket(int hash) {
+            // spread the bits, the checksums of similar blocks differ mostly in the low bits of each half
+            return (hash * 0x9e3779b1) >>> 7 & mask;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes message digests of a download while it is being written, even if its segments are written concurrently.
+ * <p>
+ * The data is hashed in file order. Data written right at the position up to which the content has been hashed so far
+ * is hashed directly from the download buffer. Data written ahead of that position (by the threads downloading later
+ * segments) is read back from the file once the gap before it has been closed. This only concerns the data of a
+ * segment that is already on disk when the hashing reaches the start of that segment, and the data of a resumed
+ * download that was written in an earlier attempt.
+ * <p>
+ * Only one thread hashes at a time, and it does so without holding the hasher's lock: the threads writing other
+ * segments meanwhile do not wait for it, and the hashing thread catches up with their data, too, before it is done.
+ */
+final class ContentHasher {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, MessageDigest> digests;
+    private final List<DownloadState.Segment> segments;
+    private final FileChannel channel;
+
+    private volatile long hashed;
+    private int segmentIndex;
+
+    /**
+     * Whether a thread is hashing the written data, guarded by {@code this}.
+     */
+    private boolean hashing;
+
+    /**
+     * Whether data was written while a thread was hashing, which that thread still has to catch up with, guarded by
+     * {@code this}.
+     */
+    private boolean pending;
+
+    private ContentHasher(Set<String> algorithms, List<DownloadState.Segment> segments, FileChannel channel) {
+        this.digests = new LinkedHashMap<>();
+        for (String algorithm : algorithms) {
+            try {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, e);
+            }
+        }
+        this.segments = segments;
+        this.channel = channel;
+        this.hashed = segments.isEmpty() ? 0 : segments.get(0).getStart();
+    }
+
+    /**
+     * Create a hasher for a download written to {@code channel} in the given segments.
+     *
+     * @param algorithms the names of the {@link MessageDigest} algorithms to compute
+     * @param segments   the segments of the download, in file order and without gaps
+     * @param channel    the channel the download is written to, which must be readable as well
+     */
+    static ContentHasher forSegments(Set<String> algorithms, List<DownloadState.Segment> segments,
+                                     FileChannel channel) {
+        return new ContentHasher(algorithms, segments, channel);
+    }
+
+    /**
+     * Create a hasher for content which is passed to {@link #update(byte[], int, int)} strictly in order.
+     */
+    static ContentHasher forStream(Set<String> algorithms) {
+        return new ContentHasher(algorithms, Collections.emptyList(), null);
+    }
+
+    /**
+     * Inform the hasher that {@code data} was written to the file at {@code position}.
+     * <p>
+     * The segment the data belongs to must already reflect the write, i.e. its position must be at the end of
+     * {@code data}. The buffer's position is not modified. If another thread is hashing, this returns right away and
+     * that thread hashes the data.
+     */
+    void update(long position, ByteBuffer data) throws IOException {
+        if (digests.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (hashing) {
+                pending = true;
+                return;
+            }
+            hashing = true;
+        }
+        boolean released = false;
+        try {
+            if (position == hashed) {
+                for (MessageDigest digest : digests.values()) {
+                    digest.update(data.duplicate());
+                }
+                hashed += data.remaining();
+            }
+            do {
+                catchUp();
+                released = releaseUnlessPending();
+            } while (!released);
+        } finally {
+            if (!released) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Hash the next {@code len} bytes of a stream.
+     */
+    synchronized void update(byte[] data, int off, int len) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(data, off, len);
+        }
+        hashed += len;
+    }
+
+    /**
+     * Hash all data that has been written so far and return the digests.
+     *
+     * @return the digests as lower case hex strings, by algorithm
+     */
+    synchronized Map<String, String> finish() throws IOException {
+        while (hashing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the hashing to finish");
+            }
+        }
+        catchUp();
+        final Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+            result.put(entry.getKey(), toHex(entry.getValue().digest()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * The number of bytes hashed so far.
+     */
+    long getHashedBytes() {
+        return hashed;
+    }
+
+    /**
+     * Stop hashing, unless other threads wrote data meanwhile which has to be caught up with first.
+     *
+     * @return whether the hashing stopped
+     */
+    private synchronized boolean releaseUnlessPending() {
+        if (pending) {
+            pending = false;
+            return false;
+        }
+        release();
+        return true;
+    }
+
+    private synchronized void release() {
+        hashing = false;
+        notifyAll();
+    }
+
+    /**
+     * Read back and hash the data which has been written beyond the hashed position without a gap.
+     */
+    private void catchUp() throws IOException {
+        if (digests.isEmpty()) {
+            return;
+        }
+        while (segmentIndex < segments.size()) {
+            final DownloadState.Segment segment = segments.get(segmentIndex);
+            final long written = segment.getPosition();
+            if (written > hashed) {
+                hashFromFile(hashed, written);
+                hashed = written;
+            }
+            if (!segment.isComplete()) {
+                break;
+            }
+            segmentIndex++;
+        }
+    }
+
+    private void hashFromFile(long from, long to) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, to - from));
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            final int n = channel.read(buffer, position);
+            if (n == -1) {
+                throw new IOException("Unexpected end of file at " + position + " while hashing up to " + to);
+            }
+            buffer.flip();
+            for (MessageDigest digest : digests.values()) {
+                digest.update(buffer.duplicate());
+            }
+            position += n;
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
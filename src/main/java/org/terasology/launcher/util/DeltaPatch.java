@@ -0,0 +1,286 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A patch which turns the extracted files of one game package into those of another.
+ * <p>
+ * A patch is a ZIP archive with a {@link #MANIFEST} that lists every file of the new package with the SHA-256 of its
+ * content and how to obtain it: copied unchanged from the old installation, reconstructed from the old file and a
+ * {@link BinaryDelta}, or added from the patch. Files of the old installation which are not listed are not part of the
+ * new one. Every file is verified against the manifest while it is written, so a patch applied to a modified
+ * installation fails rather than producing a broken one.
+ */
+public final class DeltaPatch {
+
+    static final String MANIFEST = "delta-manifest";
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaPatch.class);
+
+    private static final String HEADER = "# Terasology launcher delta patch 1";
+    private static final String DIFF_PREFIX = "diff/";
+    private static final String DATA_PREFIX = "data/";
+
+    /**
+     * A diff is only used if it is at most this fraction of the size of the new file.
+     */
+    private static final double MAX_DIFF_RATIO = 0.8;
+
+    private DeltaPatch() {
+    }
+
+    /**
+     * Create a patch from the files of {@code baseZip} to those of {@code targetZip}.
+     *
+     * @param baseZip   the game package the patch applies to, once extracted
+     * @param targetZip the game package the patch produces
+     * @param patchFile the file to write the patch to
+     * @throws IOException if reading the packages or writing the patch fails
+     */
+    public static void create(Path baseZip, Path targetZip, Path patchFile) throws IOException {
+        final List<Operation> operations = new ArrayList<>();
+        long patchedBytes = 0;
+        long totalBytes = 0;
+        try (ZipFile base = new ZipFile(baseZip.toFile());
+             ZipFile target = new ZipFile(targetZip.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(patchFile))) {
+            final Enumeration<? extends ZipEntry> entries = target.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                final byte[] newContent = readEntry(target, entry);
+                final String newHash = sha256(newContent);
+                totalBytes += newContent.length;
+                final ZipEntry baseEntry = base.getEntry(entry.getName());
+                final byte[] oldContent = baseEntry != null && !baseEntry.isDirectory()
+                        ? readEntry(base, baseEntry) : null;
+                if (oldContent != null && Arrays.equals(oldContent, newContent)) {
+                    operations.add(new Operation(Operation.Type.COPY, entry.getName(), newHash, newHash));
+                    continue;
+                }
+                if (oldContent != null) {
+                    final byte[] delta = BinaryDelta.diff(oldContent, newContent);
+                    if (delta.length <= MAX_DIFF_RATIO * newContent.length) {
+                        operations.add(new Operation(Operation.Type.DIFF, entry.getName(), newHash,
+                                sha256(oldContent)));
+                        writeEntry(out, DIFF_PREFIX + entry.getName(), delta);
+                        patchedBytes += delta.length;
+                        continue;
+                    }
+                }
+                operations.add(new Operation(Operation.Type.ADD, entry.getName(), newHash, null));
+                writeEntry(out, DATA_PREFIX + entry.getName(), newContent);
+                patchedBytes += newContent.length;
+            }
+
+            out.putNextEntry(new ZipEntry(MANIFEST));
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(HEADER);
+            writer.newLine();
+            for (Operation operation : operations) {
+                writer.write(operation.toString());
+                writer.newLine();
+            }
+            writer.flush();
+            out.closeEntry();
+        }
+        logger.info("Created patch '{}' from '{}' to '{}': {} of {} to transfer", patchFile, baseZip, targetZip,
+                Progress.formatBytes(patchedBytes), Progress.formatBytes(totalBytes));
+    }
+
+    /**
+     * Create the files of the new package in {@code targetDirectory} from the patch and the files of the old package
+     * in {@code baseDirectory}.
+     *
+     * @param patchFile       the patch
+     * @param baseDirectory   the installation of the package the patch was created against; it is not modified
+     * @param targetDirectory where to write the files of the new package
+     * @param cancelled       checked before each file, to stop applying the patch early
+     * @throws IOException if the patch is malformed, does not fit the files in {@code baseDirectory}, or writing fails
+     */
+    public static void apply(Path patchFile, Path baseDirectory, Path targetDirectory, BooleanSupplier cancelled)
+            throws IOException {
+        final Path root = targetDirectory.toAbsolutePath().normalize();
+        final Path baseRoot = baseDirectory.toAbsolutePath().normalize();
+        try (ZipFile patch = new ZipFile(patchFile.toFile())) {
+            for (Operation operation : readManifest(patch)) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                final Path target = resolve(root, operation.path);
+                Files.createDirectories(target.getParent());
+                apply(patch, operation, resolve(baseRoot, operation.path), target);
+            }
+        }
+    }
+
+    private static void apply(ZipFile patch, Operation operation, Path base, Path target) throws IOException {
+        switch (operation.type) {
+            case COPY:
+                try (InputStream in = Files.newInputStream(base);
+                     OutputStream out = newVerifyingStream(target, operation)) {
+                    in.transferTo(out);
+                }
+                break;
+            case DIFF:
+                final byte[] oldContent = Files.readAllBytes(base);
+                if (!sha256(oldContent).equals(operation.baseHash)) {
+                    throw new IOException("Installed file does not match the patch: " + operation.path);
+                }
+                try (InputStream delta = patch.getInputStream(getEntry(patch, DIFF_PREFIX + operation.path));
+                     OutputStream out = newVerifyingStream(target, operation)) {
+                    BinaryDelta.apply(oldContent, delta, out);
+                }
+                break;
+            case ADD:
+                try (InputStream in = patch.getInputStream(getEntry(patch, DATA_PREFIX + operation.path));
+                     OutputStream out = newVerifyingStream(target, operation)) {
+                    in.transferTo(out);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected operation " + operation.type);
+        }
+    }
+
+    private static List<Operation> readManifest(ZipFile patch) throws IOException {
+        final List<Operation> operations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(patch.getInputStream(getEntry(patch, MANIFEST)), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IOException("Unsupported patch format");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    operations.add(Operation.parse(line));
+                }
+            }
+        }
+        return operations;
+    }
+
+    private static ZipEntry getEntry(ZipFile patch, String name) throws IOException {
+        final ZipEntry entry = patch.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Patch is missing entry " + name);
+        }
+        return entry;
+    }
+
+    private static Path resolve(Path root, String name) throws IOException {
+        final Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("Patch entry is outside of the target directory: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * A stream to {@code target} which checks the written content against the manifest when it is closed.
+     */
+    private static OutputStream newVerifyingStream(Path target, Operation operation) throws IOException {
+        final MessageDigest digest = newDigest();
+        return new DigestOutputStream(Files.newOutputStream(target), digest) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                final String actual = ContentHasher.toHex(digest.digest());
+                if (!actual.equals(operation.hash)) {
+                    throw new IOException("Patched file does not match the patch: " + operation.path);
+                }
+            }
+        };
+    }
+
+    private static byte[] readEntry(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static String sha256(byte[] content) {
+        return ContentHasher.toHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(FileDigest.SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A line of the manifest: {@code <type> <hash> <base hash or -> <path>}.
+     */
+    private static final class Operation {
+        enum Type { COPY, DIFF, ADD }
+
+        private final Type type;
+        private final String path;
+        private final String hash;
+        private final String baseHash;
+
+        Operation(Type type, String path, String hash, String baseHash) {
+            this.type = type;
+            this.path = path;
+            this.hash = hash;
+            this.baseHash = baseHash;
+        }
+
+        static Operation parse(String line) throws IOException {
+            final String[] fields = line.split(" ", 4);
+            if (fields.length != 4) {
+                throw new IOException("Malformed patch manifest line: " + line);
+            }
+            try {
+                final String baseHash = fields[2].equals("-") ? null : fields[2];
+                return new Operation(Type.valueOf(fields[0]), fields[3], fields[1], baseHash);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed patch manifest line: " + line, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + hash + " " + (baseHash != null ? baseHash : "-") + " " + path;
+        }
+    }
+}
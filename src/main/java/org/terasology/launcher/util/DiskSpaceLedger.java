@@ -0,0 +1,159 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps track of the disk space promised to installations which have not written all of their files yet.
+ * <p>
+ * Before an installation writes anything, it reserves the space it will need on each file store. The usable space of a
+ * file store only shrinks as files are written, so without a ledger, several installations checking the usable space at
+ * the same time would each count on the same free space. A reservation which does not fit next to the others waits
+ * until they are released; one which does not fit at all is refused right away.
+ */
+public final class DiskSpaceLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskSpaceLedger.class);
+
+    /**
+     * How often a waiting reservation checks whether it was cancelled.
+     */
+    private static final long POLL_MILLIS = 500;
+
+    private final UsableSpace usableSpace;
+    private final Map<FileStore, Long> reserved = new HashMap<>();
+
+    public DiskSpaceLedger() {
+        this(FileStore::getUsableSpace);
+    }
+
+    DiskSpaceLedger(UsableSpace usableSpace) {
+        this.usableSpace = usableSpace;
+    }
+
+    /**
+     * Reserve disk space for files which are about to be written.
+     *
+     * @param needs     the number of bytes which will be written, by the directory they will be written to; the
+     *                  directories do not need to exist yet
+     * @param cancelled checked while waiting for other reservations to be released
+     * @return the reservation, or {@code null} if cancelled while waiting
+     * @throws DownloadException    if there is not enough space, even if all other reservations were released
+     * @throws IOException          if the file stores or their usable space cannot be determined
+     * @throws InterruptedException if interrupted while waiting for other reservations to be released
+     */
+    public Reservation reserve(Map<Path, Long> needs, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        final Map<Path, FileStore> stores = new LinkedHashMap<>();
+        final Map<FileStore, Long> byStore = new HashMap<>();
+        for (Map.Entry<Path, Long> need : needs.entrySet()) {
+            final FileStore store = Files.getFileStore(existingAncestor(need.getKey()));
+            stores.put(need.getKey(), store);
+            byStore.merge(store, need.getValue(), Long::sum);
+        }
+
+        synchronized (this) {
+            boolean waiting = false;
+            while (!cancelled.getAsBoolean()) {
+                boolean fits = true;
+                for (Map.Entry<FileStore, Long> need : byStore.entrySet()) {
+                    final long usable = usableSpace.get(need.getKey());
+                    if (usable < need.getValue()) {
+                        throw new DownloadException("Insufficient space on " + need.getKey() + ": "
+                                + Progress.formatBytes(need.getValue()) + " needed, "
+                                + Progress.formatBytes(usable) + " available");
+                    }
+                    fits &= usable - reserved.getOrDefault(need.getKey(), 0L) >= need.getValue();
+                }
+                if (fits) {
+                    byStore.forEach((store, bytes) -> reserved.merge(store, bytes, Long::sum));
+                    return new Reservation(new HashMap<>(needs), stores);
+                }
+                if (!waiting) {
+                    logger.info("Waiting for other installations to make room for {}", needs);
+                    waiting = true;
+                }
+                TimeUnit.MILLISECONDS.timedWait(this, POLL_MILLIS);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The number of bytes currently reserved on the file store of {@code path}.
+     */
+    public synchronized long getReserved(Path path) throws IOException {
+        return reserved.getOrDefault(Files.getFileStore(existingAncestor(path)), 0L);
+    }
+
+    private synchronized void release(FileStore store, long bytes) {
+        reserved.computeIfPresent(store, (key, value) -> value - bytes > 0 ? value - bytes : null);
+        notifyAll();
+    }
+
+    private static Path existingAncestor(Path path) throws IOException {
+        Path existing = path.toAbsolutePath();
+        while (existing != null && Files.notExists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            throw new IOException("No existing parent directory of " + path);
+        }
+        return existing;
+    }
+
+    /**
+     * Determines the usable space of a file store, see {@link FileStore#getUsableSpace()}.
+     */
+    @FunctionalInterface
+    interface UsableSpace {
+        long get(FileStore store) throws IOException;
+    }
+
+    /**
+     * Disk space reserved in the ledger. It is released when the files have been written, or will not be written.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final Map<Path, Long> needs;
+        private final Map<Path, FileStore> stores;
+
+        private Reservation(Map<Path, Long> needs, Map<Path, FileStore> stores) {
+            this.needs = needs;
+            this.stores = stores;
+        }
+
+        /**
+         * Release the space reserved for {@code directory}, e.g. because its files have been written.
+         */
+        public synchronized void release(Path directory) {
+            final Long bytes = needs.remove(directory);
+            if (bytes != null) {
+                DiskSpaceLedger.this.release(stores.get(directory), bytes);
+            }
+        }
+
+        /**
+         * Release all of the reserved space.
+         */
+        @Override
+        public synchronized void close() {
+            for (Path directory : Map.copyOf(needs).keySet()) {
+                release(directory);
+            }
+        }
+    }
+}
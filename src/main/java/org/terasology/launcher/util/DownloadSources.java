@@ -0,0 +1,112 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The URLs a resource can be downloaded from, all of which are expected to serve identical content.
+ * <p>
+ * During a download, the sources are handed out in order of preference. Sources which fail are not used again, sources
+ * which become too slow are moved to the end of the line.
+ */
+public final class DownloadSources {
+
+    private final HostStatistics statistics;
+    private final List<URL> order;
+    private final Set<URL> failed = new HashSet<>();
+
+    /**
+     * @param urls       the candidate URLs, in the order of preference given by the repositories
+     * @param statistics the statistics to rank the URLs by and to record the observed throughput in
+     */
+    public DownloadSources(List<URL> urls, HostStatistics statistics) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one download source is required");
+        }
+        this.statistics = statistics;
+        this.order = statistics.rank(new ArrayList<>(new LinkedHashSet<>(urls)));
+    }
+
+    /**
+     * A single source, without any statistics carried over from other downloads.
+     */
+    public static DownloadSources of(URL url) {
+        return new DownloadSources(List.of(url), new HostStatistics());
+    }
+
+    public HostStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * All sources which have not failed, most preferred first.
+     */
+    public synchronized List<URL> getAvailable() {
+        final List<URL> available = new ArrayList<>(order);
+        available.removeAll(failed);
+        return Collections.unmodifiableList(available);
+    }
+
+    public synchronized URL getPreferred() {
+        return order.stream().filter(url -> !failed.contains(url)).findFirst().orElse(null);
+    }
+
+    /**
+     * Make {@code url} the most preferred source, e.g. because it won the race for the first bytes.
+     */
+    public synchronized void prefer(URL url) {
+        order.remove(url);
+        order.add(0, url);
+    }
+
+    /**
+     * Pick the source to continue with instead of {@code current}.
+     *
+     * @return the most preferred source other than {@code current} which has not failed, {@code current} if there is no
+     *         such source and it has not failed, or {@code null} if all sources have failed
+     */
+    public synchronized URL next(URL current) {
+        return order.stream()
+                .filter(url -> !failed.contains(url) && !url.equals(current))
+                .findFirst()
+                .orElse(failed.contains(current) ? null : current);
+    }
+
+    /**
+     * Whether there is a source other than {@code current} to switch to.
+     */
+    public synchronized boolean hasAlternativeTo(URL current) {
+        return order.stream().anyMatch(url -> !failed.contains(url) && !url.equals(current));
+    }
+
+    /**
+     * Move {@code url} to the end of the line, as its throughput collapsed.
+     */
+    public synchronized void demote(URL url) {
+        statistics.recordFailure(url);
+        if (order.remove(url)) {
+            order.add(url);
+        }
+    }
+
+    /**
+     * Do not use {@code url} again for this download, as a request to it failed.
+     */
+    public synchronized void fail(URL url) {
+        statistics.recordFailure(url);
+        failed.add(url);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return order.toString();
+    }
+}
@@ -0,0 +1,219 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * The progress of a partial download, persisted in a small sidecar file next to the partial file.
+ * <p>
+ * The state records which version of the remote resource is being downloaded (by means of its validator, see
+ * {@link RemoteResource#getValidator()}) and, for each segment of the download, up to which byte the data has been
+ * written to disk. An interrupted download can be continued from there as long as the remote resource is unchanged.
+ */
+final class DownloadState {
+
+    static final String SUFFIX = ".state";
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadState.class);
+
+    private static final String PROPERTY_URL = "url";
+    private static final String PROPERTY_VALIDATOR = "validator";
+    private static final String PROPERTY_CONTENT_LENGTH = "contentLength";
+    private static final String PROPERTY_SEGMENTS = "segments";
+    private static final String PROPERTY_SEGMENT_PREFIX = "segment.";
+
+    private final String url;
+    private final String validator;
+    private final long contentLength;
+    private final List<Segment> segments;
+
+    private DownloadState(String url, String validator, long contentLength, List<Segment> segments) {
+        this.url = url;
+        this.validator = validator;
+        this.contentLength = contentLength;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Plan a new download of the given resource, split into {@code count} segments of (almost) equal size.
+     */
+    static DownloadState create(RemoteResource resource, int count) {
+        final long contentLength = resource.getContentLength();
+        final long segmentSize = contentLength / count;
+        final List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long start = i * segmentSize;
+            final long end = (i == count - 1) ? contentLength - 1 : start + segmentSize - 1;
+            segments.add(new Segment(start, end, start));
+        }
+        return new DownloadState(resource.getUrl().toExternalForm(), resource.getValidator().orElse(null),
+                contentLength, segments);
+    }
+
+    /**
+     * Load the state of a previous attempt to download to {@code file}, if there is one.
+     */
+    static Optional<DownloadState> load(Path file) {
+        final Path stateFile = stateFileFor(file);
+        if (Files.notExists(stateFile) || Files.notExists(file)) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            final Properties properties = new Properties();
+            properties.load(in);
+            final int count = Integer.parseInt(properties.getProperty(PROPERTY_SEGMENTS));
+            final List<Segment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String[] values = properties.getProperty(PROPERTY_SEGMENT_PREFIX + i).split(",");
+                segments.add(new Segment(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])));
+            }
+            return Optional.of(new DownloadState(
+                    properties.getProperty(PROPERTY_URL),
+                    properties.getProperty(PROPERTY_VALIDATOR),
+                    Long.parseLong(properties.getProperty(PROPERTY_CONTENT_LENGTH)),
+                    segments));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable download state '{}'", stateFile, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remove the sidecar file for downloads to {@code file}.
+     */
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(stateFileFor(file));
+    }
+
+    static Path stateFileFor(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + SUFFIX);
+    }
+
+    /**
+     * Whether this state describes a download of exactly the given version of the remote resource.
+     */
+    boolean matches(RemoteResource resource) {
+        return resource.isResumable()
+                && url.equals(resource.getUrl().toExternalForm())
+                && contentLength == resource.getContentLength()
+                && resource.getValidator().map(v -> v.equals(validator)).orElse(false);
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getValidator() {
+        return validator;
+    }
+
+    long getContentLength() {
+        return contentLength;
+    }
+
+    List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * The number of bytes already written to disk over all segments.
+     */
+    long getCompletedBytes() {
+        return segments.stream().mapToLong(Segment::getCompletedBytes).sum();
+    }
+
+    /**
+     * Persist this state next to {@code file}.
+     * <p>
+     * The positions of the segments are recorded before {@code channel} is flushed, so that the stored state never
+     * claims more data than has actually reached the disk.
+     *
+     * @param file    the partial download
+     * @param channel the channel the segments are written to
+     */
+    synchronized void store(Path file, FileChannel channel) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(PROPERTY_URL, url);
+        properties.setProperty(PROPERTY_VALIDATOR, validator);
+        properties.setProperty(PROPERTY_CONTENT_LENGTH, Long.toString(contentLength));
+        properties.setProperty(PROPERTY_SEGMENTS, Integer.toString(segments.size()));
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            properties.setProperty(PROPERTY_SEGMENT_PREFIX + i,
+                    segment.getStart() + "," + segment.getEnd() + "," + segment.getPosition());
+        }
+        if (channel.isOpen()) {
+            channel.force(false);
+        }
+
+        final Path stateFile = stateFileFor(file);
+        final Path tempFile = stateFile.resolveSibling(stateFile.getFileName().toString() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "Terasology Launcher - Download state");
+        }
+        Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A contiguous byte range {@code [start, end]} of the download and the position up to which it has been written.
+     */
+    static final class Segment {
+        private final long start;
+        private final long end;
+        private volatile long position;
+
+        Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        /**
+         * The offset of the next byte to download for this segment.
+         */
+        long getPosition() {
+            return position;
+        }
+
+        void setPosition(long position) {
+            this.position = position;
+        }
+
+        long getCompletedBytes() {
+            return position - start;
+        }
+
+        boolean isComplete() {
+            return position > end;
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end + "@" + position;
+        }
+    }
+}
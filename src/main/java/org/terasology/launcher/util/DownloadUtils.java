@@ -3,25 +3,59 @@
 
 package org.terasology.launcher.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressAggregator;
 import org.terasology.launcher.tasks.ProgressListener;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URISyntaxException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URL;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Download files over HTTP.
+ * <p>
+ * All requests are sent with the launcher's shared {@link OkHttpClient} so that downloads reuse the pooled (and, where
+ * available, HTTP/2) connections which were opened for fetching the release information before.
+ */
 public final class DownloadUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadUtils.class);
@@ -29,96 +63,872 @@ public final class DownloadUtils {
     private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
     private static final Duration READ_TIMEOUT = Duration.ofMinutes(5);
 
+    /**
+     * Segmented downloads are not worth the additional requests for small files. Each segment is at least this large.
+     */
+    static final long MIN_SEGMENT_SIZE = 1024L * 1024L;
+
+    /**
+     * The amount of data after which the state of a download is written to disk.
+     */
+    private static final long CHECKPOINT_INTERVAL = 8L * 1024L * 1024L;
+
+    /**
+     * The size of the direct buffer each download thread copies through. Progress and cancellation are checked once
+     * per buffer, so this is a trade-off between per-chunk overhead and responsiveness on slow connections.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of bytes the sources of a download race for, see {@link #selectSource}.
+     */
+    static final int RACE_BYTES = 64 * 1024;
+
+    private static final Duration RACE_TIMEOUT = Duration.ofSeconds(15);
+
     private DownloadUtils() {
     }
 
-    public static CompletableFuture<Void> downloadToFile(URL downloadURL, Path file, ProgressListener listener) throws DownloadException {
-        listener.update(0);
+    public static CompletableFuture<Map<String, String>> downloadToFile(OkHttpClient client, URL downloadURL,
+                                                                        Path file, ProgressAggregator progress)
+            throws DownloadException {
+        return downloadToFile(client, downloadURL, file, progress, 1);
+    }
+
+    public static CompletableFuture<Map<String, String>> downloadToFile(OkHttpClient client, URL downloadURL,
+                                                                        Path file, ProgressAggregator progress,
+                                                                        int segments) throws DownloadException {
+        return downloadToFile(client, DownloadSources.of(downloadURL), file, progress, segments,
+                Set.of(FileDigest.SHA_256), BandwidthLimiter.unlimited());
+    }
+
+    /**
+     * Download a resource which is available from one or more sources to the given file.
+     * <p>
+     * If there is more than one source, the sources race for the first bytes of the resource (see
+     * {@link #selectSource}), and the download starts from the winner.
+     * <p>
+     * If more than one segment is requested and the server supports byte range requests, the resource is split into
+     * {@code segments} parts of (almost) equal size which are fetched concurrently and written directly to their
+     * position in the preallocated target file. Otherwise, the resource is fetched as a single stream. A segment whose
+     * source fails, stalls, or whose throughput collapses (see {@link ThroughputMonitor}), is continued from the next
+     * source with a range request. Once no other source is left, the segment is retried from its last written byte
+     * after a growing, jittered pause (see {@link RetryPolicy}), until too many attempts in a row made no progress.
+     * <p>
+     * If the server supports byte range requests, the progress of the download is recorded in a sidecar file next to
+     * {@code file}. A download which was cancelled or failed is continued from where it stopped on the next call,
+     * unless the remote resource has changed in the meantime. If the resource changes during the download, the partial
+     * download is discarded and the download starts over once.
+     * <p>
+     * The requested digests of the content are computed while it is written, see {@link ContentHasher}. All segments
+     * together transfer data at most at the rate granted by {@code limiter}.
+     *
+     * @param client     the launcher's shared HTTP client
+     * @param sources    the URLs to download from, which also collect the throughput observed per host
+     * @param file       the file to write to; it is overwritten if it exists and is not a resumable partial download
+     * @param progress   the object which is to be informed about download progress
+     * @param segments   the maximum number of concurrent range requests to use
+     * @param algorithms the names of the digest algorithms to compute
+     * @param limiter    the bandwidth limit of this download
+     * @return a future which completes with the digests of the content (as hex strings, by algorithm) once the file was
+     *         written completely
+     * @throws DownloadException if the download cannot be started
+     */
+    public static CompletableFuture<Map<String, String>> downloadToFile(OkHttpClient client, DownloadSources sources,
+                                                                        Path file, ProgressAggregator progress,
+                                                                        int segments, Set<String> algorithms,
+                                                                        BandwidthLimiter limiter)
+            throws DownloadException {
+        return downloadToFile(client, sources, file, progress, segments, algorithms, limiter, true);
+    }
 
-        var result = getConnectedDownloadConnection(downloadURL);
+    private static CompletableFuture<Map<String, String>> downloadToFile(OkHttpClient client, DownloadSources sources,
+                                                                         Path file, ProgressAggregator progress,
+                                                                         int segments, Set<String> algorithms,
+                                                                         BandwidthLimiter limiter,
+                                                                         boolean restartIfChanged)
+            throws DownloadException {
+        final OkHttpClient downloadClient = forDownloads(client);
+        final Optional<DownloadState> previousState = DownloadState.load(file);
+        // a partial download can only be continued from the source it was started from
+        previousState.flatMap(previous -> sources.getAvailable().stream()
+                        .filter(url -> url.toExternalForm().equals(previous.getUrl()))
+                        .findFirst())
+                .ifPresentOrElse(sources::prefer, () -> raceSources(downloadClient, sources));
 
-        return result.thenAcceptAsync(response -> {
-            var contentLength = response.headers().firstValueAsLong("content-length").orElse(0L);
-            logger.debug("Download file '{}' ({}; {}) from URL '{}'.", file, contentLength,
-                    response.headers().firstValue("content-type"), downloadURL);
+        final RemoteResource resource = probeAny(downloadClient, sources);
+        if (!resource.acceptsRanges() || resource.getContentLength() <= 0) {
+            logger.debug("Falling back to single stream download for {}", resource);
+            deleteState(file);
+            return downloadStreamToFile(downloadClient, sources, resource.getUrl(), file, progress, algorithms,
+                    limiter);
+        }
 
-            try (BufferedInputStream in = new BufferedInputStream(response.body());
-                 BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
-                downloadToFile(listener, contentLength, in, out);
+        final DownloadState state = previousState
+                .filter(previous -> previous.matches(resource))
+                .orElseGet(() -> {
+                    final int count = (int) Math.max(1, Math.min(segments, resource.getContentLength() / MIN_SEGMENT_SIZE));
+                    return DownloadState.create(resource, count);
+                });
+        if (state.getCompletedBytes() > 0) {
+            logger.info("Resuming download of '{}' at {} of {} bytes.", file, state.getCompletedBytes(),
+                    state.getContentLength());
+        } else {
+            try {
+                Files.deleteIfExists(file);
             } catch (IOException e) {
-                throw new DownloadException("Could not download file from URL! URL=" + downloadURL + ", file=" + file, e);
+                throw new DownloadException("Could not remove stale partial download! file=" + file, e);
+            }
+        }
+        final AtomicBoolean remoteChanged = new AtomicBoolean();
+        final CompletableFuture<Map<String, String>> download = downloadSegmentsToFile(downloadClient, resource,
+                sources, file, progress, state, algorithms, limiter, remoteChanged);
+        if (!restartIfChanged) {
+            return download;
+        }
+        return download.handle((digests, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(digests);
             }
+            if (!remoteChanged.get() || progress.isCancelled()) {
+                return CompletableFuture.<Map<String, String>>failedFuture(throwable);
+            }
+            // the state is discarded already, and the new resource is validated by its own validator
+            logger.info("Remote file changed during download of '{}', starting over", file);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new DownloadException("Could not remove stale partial download! file=" + file, e);
+            }
+            return downloadToFile(client, sources, file, progress, segments, algorithms, limiter, false);
+        }).thenCompose(Function.identity());
+    }
 
-            if (!listener.isCancelled()) {
-                try {
-                    if (Files.size(file) != contentLength) {
-                        throw new DownloadException("Wrong file length after download! " + Files.size(file) + " != " + contentLength);
-                    }
-                } catch (IOException e) {
-                    throw new DownloadException("Failed to read the file length after download!", e);
+    /**
+     * Pick the source to download from.
+     * <p>
+     * If there is more than one source, the first {@link #RACE_BYTES} bytes are requested from all of them at once. The
+     * source which delivers them first wins and becomes the preferred source; the other requests are cancelled. Sources
+     * which fail to respond are not used any further.
+     *
+     * @param client  the launcher's shared HTTP client
+     * @param sources the sources to choose from
+     * @return the preferred source
+     * @throws DownloadException if none of the sources responds
+     */
+    public static URL selectSource(OkHttpClient client, DownloadSources sources) throws DownloadException {
+        raceSources(forDownloads(client), sources);
+        final URL preferred = sources.getPreferred();
+        if (preferred == null) {
+            throw new DownloadException("None of the download sources responded: " + sources);
+        }
+        return preferred;
+    }
+
+    /**
+     * Download the resource at the given URL and hand its content to {@code consumer} while it is still arriving.
+     * <p>
+     * If {@code teeFile} is given, the content is written to that file as well. Whatever {@code consumer} leaves
+     * unread is read to the end afterwards, so that {@code teeFile} always receives the complete resource.
+     * <p>
+     * The content is fetched as a single stream, so this neither uses segments nor can it be resumed.
+     *
+     * @param client      the launcher's shared HTTP client
+     * @param downloadURL the URL to download from
+     * @param teeFile     the file to write a copy of the content to, or {@code null}
+     * @param progress    the object which is to be informed about download progress
+     * @param algorithms  the names of the digest algorithms to compute
+     * @param limiter     the bandwidth limit of this download
+     * @param consumer    processes the content
+     * @return the digests of the content (as hex strings, by algorithm), or an empty map if the download was cancelled
+     * @throws DownloadException if the download or {@code consumer} fails
+     */
+    public static Map<String, String> downloadToConsumer(OkHttpClient client, URL downloadURL, Path teeFile,
+                                                         ProgressAggregator progress, Set<String> algorithms,
+                                                         BandwidthLimiter limiter, ContentConsumer consumer)
+            throws DownloadException {
+        final Call call = forDownloads(client).newCall(newRequestBuilder(downloadURL).build());
+        try (ProgressListener.Registration abort = progress.onCancel(call::cancel);
+             Response response = call.execute()) {
+            final ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new DownloadException("Unexpected response to download request! URL=" + downloadURL
+                        + ", status=" + response.code());
+            }
+            final long contentLength = body.contentLength();
+            logger.debug("Stream ({}; {}) from URL '{}'.", contentLength, body.contentType(), downloadURL);
+            progress.startPhase(Progress.Phase.DOWNLOAD, contentLength);
+
+            final ContentHasher hasher = ContentHasher.forStream(algorithms);
+            try (OutputStream tee = teeFile != null
+                    ? new BufferedOutputStream(Files.newOutputStream(teeFile), BUFFER_SIZE) : null;
+                 ProgressInputStream in =
+                         new ProgressInputStream(body.byteStream(), tee, hasher, limiter, progress)) {
+                consumer.accept(in);
+                in.skip(Long.MAX_VALUE);
+                if (contentLength >= 0 && in.count != contentLength) {
+                    throw new DownloadException("Wrong length after download! " + in.count + " != " + contentLength);
                 }
-                listener.update(100);
             }
-        });
+            progress.finishPhase();
+            return hasher.finish();
+        } catch (InterruptedIOException e) {
+            if (!progress.isCancelled()) {
+                throw new DownloadException("Download interrupted! URL=" + downloadURL, e);
+            }
+            logger.debug("Download from '{}' cancelled", downloadURL);
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            if (progress.isCancelled()) {
+                // the call was aborted by the cancellation
+                logger.debug("Download from '{}' cancelled", downloadURL);
+                return Collections.emptyMap();
+            }
+            throw new DownloadException("Could not process download from URL! URL=" + downloadURL, e);
+        }
     }
 
-    public static long getContentLength(URL downloadURL) throws DownloadException {
-        HttpURLConnection connection = null;
-        try {
-            connection = (HttpURLConnection) downloadURL.openConnection();
-            connection.setRequestMethod("HEAD");
-            return connection.getContentLengthLong();
-        } catch (IOException e) {
+    /**
+     * The file in which the progress of a resumable download to {@code file} is recorded.
+     */
+    public static Path getStateFileFor(Path file) {
+        return DownloadState.stateFileFor(file);
+    }
+
+    public static long getContentLength(OkHttpClient client, URL downloadURL) throws DownloadException {
+        return probe(client, downloadURL).getContentLength();
+    }
+
+    /**
+     * The size of a resource which is available from one or more sources, as announced by the first source which
+     * responds. Sources which do not respond are not used any further.
+     */
+    public static long getContentLength(OkHttpClient client, DownloadSources sources) throws DownloadException {
+        return probeAny(client, sources).getContentLength();
+    }
+
+    /**
+     * Send a {@code HEAD} request to the given URL to learn about the size of the resource and whether the server
+     * supports byte range requests for it.
+     *
+     * @param client      the launcher's shared HTTP client
+     * @param downloadURL the URL to probe
+     * @return the information announced by the server
+     * @throws DownloadException if the request fails
+     */
+    public static RemoteResource probe(OkHttpClient client, URL downloadURL) throws DownloadException {
+        final Request request = newRequestBuilder(downloadURL).head().build();
+        try (Response response = forDownloads(client).newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new DownloadException("Unexpected response to HEAD request! URL=" + downloadURL
+                        + ", status=" + response.code());
+            }
+            final String contentLength = response.header("Content-Length");
+            final boolean acceptsRanges = response.headers("Accept-Ranges").stream()
+                    .anyMatch(value -> value.equalsIgnoreCase("bytes"));
+            return new RemoteResource(downloadURL,
+                    contentLength != null ? Long.parseLong(contentLength) : -1L,
+                    acceptsRanges,
+                    response.header("ETag"),
+                    response.header("Last-Modified"));
+        } catch (IOException | NumberFormatException e) {
             throw new DownloadException("Could not send HEAD request to HTTP-URL! URL=" + downloadURL, e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+        }
+    }
+
+    /**
+     * Probe the preferred source, falling back to the next source as long as the probe fails.
+     *
+     * @throws DownloadException if none of the sources responded
+     */
+    public static RemoteResource probeAny(OkHttpClient client, DownloadSources sources) throws DownloadException {
+        URL source = sources.getPreferred();
+        while (true) {
+            if (source == null) {
+                throw new DownloadException("None of the download sources responded: " + sources);
+            }
+            try {
+                return probe(client, source);
+            } catch (DownloadException e) {
+                sources.fail(source);
+                final URL next = sources.getPreferred();
+                if (next == null) {
+                    throw e;
+                }
+                logger.warn("Could not probe download source {}, trying {}", source, next, e);
+                source = next;
             }
         }
     }
 
-    private static CompletableFuture<HttpResponse<InputStream>> getConnectedDownloadConnection(URL downloadURL) throws DownloadException {
-        var client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
+    private static void raceSources(OkHttpClient client, DownloadSources sources) {
+        final List<URL> candidates = sources.getAvailable();
+        if (candidates.size() < 2) {
+            return;
+        }
+        final CompletableFuture<URL> winner = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(candidates.size());
+        final List<Call> calls = new ArrayList<>(candidates.size());
+        final long start = System.nanoTime();
+        for (URL url : candidates) {
+            final Call call = client.newCall(newRequestBuilder(url)
+                    .header("Range", "bytes=0-" + (RACE_BYTES - 1))
+                    .build());
+            calls.add(call);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call failedCall, IOException e) {
+                    lost(failedCall, e);
+                }
+
+                @Override
+                public void onResponse(Call respondedCall, Response response) {
+                    try (response) {
+                        final ResponseBody body = response.body();
+                        if (!response.isSuccessful() || body == null) {
+                            throw new IOException("Unexpected response status " + response.code());
+                        }
+                        body.source().request(RACE_BYTES);
+                        final long received = Math.min(RACE_BYTES, body.source().getBuffer().size());
+                        sources.getStatistics().recordTransfer(url, received, System.nanoTime() - start);
+                        winner.complete(url);
+                    } catch (IOException e) {
+                        lost(respondedCall, e);
+                        return;
+                    }
+                    pending.decrementAndGet();
+                }
+
+                private void lost(Call lostCall, IOException e) {
+                    // the requests of the losers are cancelled, which is no reason to avoid them in the future
+                    if (!lostCall.isCanceled()) {
+                        logger.debug("Download source {} failed to respond", url, e);
+                        sources.fail(url);
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        winner.complete(null);
+                    }
+                }
+            });
+        }
+
+        URL result = null;
+        try {
+            result = winner.get(RACE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.debug("No download source won the race within {}", RACE_TIMEOUT);
+        }
+        calls.forEach(Call::cancel);
+        if (result != null) {
+            logger.info("Downloading from {} (fastest of {} sources, {} ms to the first {})", result.getHost(),
+                    candidates.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    Progress.formatBytes(RACE_BYTES));
+            sources.prefer(result);
+        }
+    }
+
+    /**
+     * Derive a client suitable for large downloads from the shared client.
+     * <p>
+     * The derived client shares the connection pool and dispatcher of the shared client, but does not limit the total
+     * duration of a call and does not store the downloaded files in the HTTP cache.
+     */
+    static OkHttpClient forDownloads(OkHttpClient client) {
+        return client.newBuilder()
+                .cache(null)
+                .callTimeout(Duration.ZERO)
                 .connectTimeout(CONNECT_TIMEOUT)
+                .readTimeout(READ_TIMEOUT)
                 .build();
+    }
+
+    static Request.Builder newRequestBuilder(URL downloadURL) {
+        return new Request.Builder()
+                .url(downloadURL)
+                // transparent compression would break byte range requests and the length checks
+                .header("Accept-Encoding", "identity");
+    }
+
+    private static void deleteState(Path file) throws DownloadException {
+        try {
+            DownloadState.delete(file);
+        } catch (IOException e) {
+            throw new DownloadException("Could not remove stale download state! file=" + file, e);
+        }
+    }
+
+    private static ExecutorService newDownloadExecutor(Path file, int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("Download-" + file.getFileName() + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    private static CompletableFuture<Map<String, String>> downloadStreamToFile(OkHttpClient client,
+                                                                               DownloadSources sources,
+                                                                               URL downloadURL, Path file,
+                                                                               ProgressAggregator progress,
+                                                                               Set<String> algorithms,
+                                                                               BandwidthLimiter limiter) {
+        final ExecutorService executor = newDownloadExecutor(file, 1);
+        return CompletableFuture.supplyAsync(() -> {
+            final Call call = client.newCall(newRequestBuilder(downloadURL).build());
+            try (ProgressListener.Registration abort = progress.onCancel(call::cancel);
+                 Response response = call.execute()) {
+                final ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    throw new DownloadException("Unexpected response to download request! URL=" + downloadURL
+                            + ", status=" + response.code());
+                }
+                final long contentLength = body.contentLength();
+                logger.debug("Download file '{}' ({}; {}) from URL '{}'.", file, contentLength,
+                        body.contentType(), downloadURL);
+
+                // without a known length, the data is simply appended until the server closes the stream
+                final DownloadState.Segment segment = new DownloadState.Segment(0,
+                        contentLength > 0 ? contentLength - 1 : Long.MAX_VALUE - 1, 0);
+                final AtomicLong writtenBytes = new AtomicLong();
+                progress.startPhase(Progress.Phase.DOWNLOAD, contentLength);
+                final Map<String, String> digests;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    if (contentLength > 0) {
+                        preallocate(channel, contentLength);
+                    }
+                    final ContentHasher hasher = ContentHasher.forSegments(algorithms, List.of(segment), channel);
+                    // without range support there is no way to switch sources, so the monitor only measures
+                    final ThroughputMonitor monitor = new ThroughputMonitor(() -> false, System::nanoTime);
+                    try {
+                        downloadSegment(progress, segment, body.source(), channel, hasher, limiter, monitor,
+                                writtenBytes, new AtomicBoolean(), () -> { });
+                    } finally {
+                        sources.getStatistics().recordTransfer(downloadURL, monitor.getBytes(), monitor.getNanos());
+                    }
+                    if (contentLength < 0) {
+                        // the length was not known up front, so the channel may have been written beyond its size
+                        channel.truncate(writtenBytes.get());
+                    }
+                    digests = hasher.finish();
+                }
+
+                if (!progress.isCancelled()) {
+                    if (contentLength >= 0 && writtenBytes.get() != contentLength) {
+                        throw new DownloadException("Wrong file length after download! " + writtenBytes.get()
+                                + " != " + contentLength);
+                    }
+                    progress.finishPhase();
+                }
+                return digests;
+            } catch (IOException e) {
+                if (progress.isCancelled()) {
+                    logger.debug("Download of '{}' cancelled", file);
+                    return Collections.<String, String>emptyMap();
+                }
+                throw new DownloadException("Could not download file from URL! URL=" + downloadURL + ", file=" + file, e);
+            }
+        }, executor).whenComplete((result, throwable) -> executor.shutdown());
+    }
+
+    private static CompletableFuture<Map<String, String>> downloadSegmentsToFile(OkHttpClient client,
+                                                                                 RemoteResource resource,
+                                                                                 DownloadSources sources, Path file,
+                                                                                 ProgressAggregator progress,
+                                                                                 DownloadState state,
+                                                                                 Set<String> algorithms,
+                                                                                 BandwidthLimiter limiter,
+                                                                                 AtomicBoolean remoteChanged) {
+        final URL downloadURL = resource.getUrl();
+        final long contentLength = resource.getContentLength();
+        final List<DownloadState.Segment> pending = state.getSegments().stream()
+                .filter(segment -> !segment.isComplete())
+                .collect(Collectors.toList());
+        logger.debug("Download file '{}' ({}) from URL '{}' in segments {}.", file, contentLength, downloadURL, pending);
 
-        HttpRequest request;
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new DownloadException("Could not open file for download! file=" + file, e);
+        }
         try {
-            request = HttpRequest.newBuilder(downloadURL.toURI()).timeout(READ_TIMEOUT).build();
-        } catch (URISyntaxException e) {
-            throw new DownloadException("Error in URL: " + downloadURL, e);
-        }
-        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
-    }
-
-    private static void downloadToFile(ProgressListener listener, long contentLength, BufferedInputStream in,
-                                       BufferedOutputStream out) throws IOException {
-        final byte[] buffer = new byte[2048];
-        final float sizeFactor = 100f / contentLength;
-        long writtenBytes = 0;
-        int n;
-        if (!listener.isCancelled()) {
-            while ((n = in.read(buffer)) != -1) {
-                if (listener.isCancelled()) {
-                    break;
+            preallocate(channel, contentLength);
+        } catch (IOException e) {
+            closeSilently(channel, file);
+            throw new DownloadException("Could not preallocate file for download! file=" + file, e);
+        }
+
+        final ContentHasher hasher = ContentHasher.forSegments(algorithms, state.getSegments(), channel);
+        final ExecutorService executor = newDownloadExecutor(file, Math.max(1, pending.size()));
+        final AtomicLong writtenBytes = new AtomicLong(state.getCompletedBytes());
+        progress.startPhase(Progress.Phase.DOWNLOAD, contentLength, state.getCompletedBytes());
+        final AtomicLong checkpointBytes = new AtomicLong(writtenBytes.get());
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        final Runnable checkpoint = () -> {
+            if (writtenBytes.get() - checkpointBytes.get() >= CHECKPOINT_INTERVAL) {
+                checkpointBytes.set(writtenBytes.get());
+                storeState(state, file, channel);
+            }
+        };
+
+        final List<CompletableFuture<Void>> parts = new ArrayList<>(pending.size());
+        for (DownloadState.Segment segment : pending) {
+            parts.add(CompletableFuture.runAsync(() -> {
+                URL source = downloadURL;
+                int retries = 0;
+                while (!segment.isComplete() && !progress.isCancelled() && !failed.get()) {
+                    final URL attempt = source;
+                    final long startPosition = segment.getPosition();
+                    final ThroughputMonitor monitor = new ThroughputMonitor(() -> sources.hasAlternativeTo(attempt),
+                            System::nanoTime, ThroughputMonitor.MIN_BYTES_PER_SECOND);
+                    Exception retryCause = null;
+                    try {
+                        downloadSegmentFrom(client, attempt, state, segment, channel, hasher, limiter, monitor,
+                                writtenBytes, failed, remoteChanged, progress, checkpoint);
+                    } catch (ThroughputMonitor.SlowSourceException e) {
+                        sources.demote(attempt);
+                        source = sources.next(attempt);
+                        if (source != null) {
+                            logger.info("Switching segment {} from {} to {}: {}", segment, attempt.getHost(),
+                                    source.getHost(), e.getMessage());
+                        } else {
+                            // the alternatives failed in the meantime, so the slow source is still the best one
+                            retryCause = e;
+                        }
+                    } catch (IOException | DownloadException e) {
+                        if (progress.isCancelled()) {
+                            // the call was aborted by the cancellation, the source is fine
+                            break;
+                        }
+                        if (remoteChanged.get()) {
+                            throw new DownloadException("Remote file changed during download! URL=" + attempt, e);
+                        }
+                        sources.fail(attempt);
+                        source = sources.next(attempt);
+                        if (source == null && !(e instanceof IOException)) {
+                            throw new DownloadException("Could not download segment " + segment
+                                    + " from any source! URL=" + attempt + ", file=" + file, e);
+                        }
+                        if (source != null) {
+                            logger.warn("Download of segment {} from {} failed, continuing from {}: {}", segment,
+                                    attempt.getHost(), source.getHost(), e.toString());
+                        } else {
+                            retryCause = e;
+                        }
+                    } finally {
+                        sources.getStatistics().recordTransfer(attempt, monitor.getBytes(), monitor.getNanos());
+                    }
+                    if (segment.getPosition() > startPosition) {
+                        // only failures without any progress in between count against the limit
+                        retries = 0;
+                    }
+                    long pauseMillis = 0;
+                    if (retryCause != null) {
+                        // no other source is left, so try the last one again after a pause
+                        retries++;
+                        if (!RetryPolicy.DEFAULT.canRetry(retries)) {
+                            throw new DownloadException("Could not download segment " + segment + " after "
+                                    + RetryPolicy.DEFAULT.getMaxRetries() + " retries! URL=" + attempt
+                                    + ", file=" + file, retryCause);
+                        }
+                        source = attempt;
+                        pauseMillis = RetryPolicy.DEFAULT.getDelayMillis(retries);
+                        logger.warn("Retrying segment {} from {} in {} ms, retry {} of {}: {}", segment,
+                                attempt.getHost(), pauseMillis, retries, RetryPolicy.DEFAULT.getMaxRetries(),
+                                retryCause.toString());
+                    }
+                    try {
+                        RetryPolicy.pause(pauseMillis, progress::isCancelled);
+                    } catch (InterruptedIOException e) {
+                        throw new DownloadException("Download interrupted! file=" + file, e);
+                    }
+                }
+            }, executor).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    failed.set(true);
                 }
+            }));
+        }
 
-                out.write(buffer, 0, n);
-                writtenBytes += n;
+        final AtomicReference<Map<String, String>> digests = new AtomicReference<>();
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .whenComplete((result, throwable) -> {
+                    executor.shutdown();
+                    try {
+                        if (remoteChanged.get()) {
+                            logger.info("Remote file changed, discarding partial download '{}'", file);
+                            DownloadState.delete(file);
+                        } else if (throwable != null || progress.isCancelled()) {
+                            storeState(state, file, channel);
+                        } else {
+                            // the hasher may need to read back the end of the file, so finish before closing it
+                            digests.set(hasher.finish());
+                            DownloadState.delete(file);
+                        }
+                    } catch (IOException e) {
+                        logger.warn("Could not finish download of '{}'", file, e);
+                    } finally {
+                        closeSilently(channel, file);
+                    }
+                })
+                .thenApply(result -> {
+                    if (progress.isCancelled()) {
+                        return Collections.emptyMap();
+                    }
+                    if (writtenBytes.get() != contentLength) {
+                        throw new DownloadException("Wrong file length after download! " + writtenBytes.get()
+                                + " != " + contentLength);
+                    }
+                    if (digests.get() == null) {
+                        throw new DownloadException("Could not compute digests of '" + file + "'");
+                    }
+                    progress.finishPhase();
+                    return digests.get();
+                });
+    }
 
-                int percentage = (int) (sizeFactor * writtenBytes);
-                if (percentage < 1) {
-                    percentage = 1;
-                } else if (percentage >= 100) {
-                    percentage = 99;
+    /**
+     * Continue the download of a segment from the given source.
+     * <p>
+     * The request to the source the download was started from is conditional on the resource being unchanged. Other
+     * sources cannot be checked that way, so their response must at least announce the same total length.
+     */
+    private static void downloadSegmentFrom(OkHttpClient client, URL source, DownloadState state,
+                                            DownloadState.Segment segment, FileChannel channel, ContentHasher hasher,
+                                            BandwidthLimiter limiter, ThroughputMonitor monitor,
+                                            AtomicLong writtenBytes, AtomicBoolean failed,
+                                            AtomicBoolean remoteChanged, ProgressAggregator progress,
+                                            Runnable checkpoint) throws IOException {
+        final long contentLength = state.getContentLength();
+        final boolean originalSource = source.toExternalForm().equals(state.getUrl());
+        final boolean wholeFile = segment.getPosition() == 0 && segment.getEnd() == contentLength - 1;
+        final Request.Builder requestBuilder = newRequestBuilder(source);
+        if (!wholeFile) {
+            requestBuilder.header("Range", "bytes=" + segment.getPosition() + "-" + segment.getEnd());
+            if (originalSource && state.getValidator() != null) {
+                // only send the requested range if the resource is still the same, the full resource otherwise
+                requestBuilder.header("If-Range", state.getValidator());
+            }
+        }
+        final Call call = client.newCall(requestBuilder.build());
+        try (ProgressListener.Registration abort = progress.onCancel(call::cancel);
+             Response response = call.execute()) {
+            if (response.code() >= 500) {
+                // the server may well recover, so this is retried like a broken connection
+                throw new IOException("Server error " + response.code() + " from " + source);
+            }
+            if (!wholeFile && response.code() != 206) {
+                remoteChanged.set(originalSource && response.code() == 200);
+                throw new DownloadException("Server did not honor range request! URL=" + source
+                        + ", status=" + response.code());
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new DownloadException("Unexpected response to download request! URL=" + source
+                        + ", status=" + response.code());
+            }
+            if (!wholeFile && !originalSource && getTotalLength(response) != contentLength) {
+                throw new DownloadException("Source serves a different file! URL=" + source
+                        + ", Content-Range=" + response.header("Content-Range"));
+            }
+            final BufferedSource body = response.body().source();
+            // detect a connection which went silent within the stall window rather than the generous read timeout
+            body.timeout().timeout(ThroughputMonitor.STALL_NANOS, TimeUnit.NANOSECONDS);
+            downloadSegment(progress, segment, body, channel, hasher, limiter, monitor, writtenBytes, failed,
+                    checkpoint);
+            if (!segment.isComplete() && !progress.isCancelled() && !failed.get()) {
+                throw new IOException("Connection closed before segment " + segment + " was complete");
+            }
+        }
+    }
+
+    /**
+     * The total length of the resource as announced in the {@code Content-Range} header of a partial response.
+     *
+     * @return the total length, or {@code -1} if it is not announced
+     */
+    private static long getTotalLength(Response response) {
+        final String contentRange = response.header("Content-Range");
+        if (contentRange != null) {
+            final int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0 && !contentRange.endsWith("*")) {
+                try {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    logger.debug("Invalid Content-Range header: {}", contentRange);
                 }
-                listener.update(percentage);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reserve the full size of the download on disk up front.
+     * <p>
+     * This avoids fragmenting the file while it grows and allows each segment to write to its own region.
+     */
+    private static void preallocate(FileChannel channel, long contentLength) throws IOException {
+        if (channel.size() > contentLength) {
+            channel.truncate(contentLength);
+        } else if (channel.size() < contentLength) {
+            channel.write(ByteBuffer.allocate(1), contentLength - 1);
+        }
+    }
+
+    /**
+     * Copy the data of a single segment from {@code in} to its position in {@code channel}.
+     * <p>
+     * The data is copied through a direct buffer of {@link #BUFFER_SIZE} bytes, which is filled completely (or up to
+     * the end of the stream) before it is written, so that the positional writes, the progress updates and the
+     * checkpoint checks happen once per buffer instead of once per network read. The bandwidth is taken from
+     * {@code limiter} once per buffer as well; as the next buffer is only read afterwards, the connection's flow
+     * control holds back the server while the limiter makes the thread wait.
+     */
+    static void downloadSegment(ProgressAggregator progress, DownloadState.Segment segment,
+                                ReadableByteChannel in, FileChannel channel, ContentHasher hasher,
+                                BandwidthLimiter limiter, ThroughputMonitor monitor, AtomicLong writtenBytes,
+                                AtomicBoolean failed, Runnable checkpoint) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long position = segment.getPosition();
+        while (!progress.isCancelled() && !failed.get()) {
+            final int n = fill(in, buffer);
+            if (n == 0) {
+                break;
+            }
+            if (position + n > segment.getEnd() + 1) {
+                throw new IOException("Server sent more data than requested for segment " + segment);
+            }
+            final long throttleStart = System.nanoTime();
+            limiter.acquire(n, progress::isCancelled);
+            final long throttledNanos = System.nanoTime() - throttleStart;
+            buffer.flip();
+            final ByteBuffer data = buffer.duplicate();
+            final long start = position;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            segment.setPosition(position);
+            hasher.update(start, data);
+            writtenBytes.addAndGet(n);
+            progress.advance(n);
+            checkpoint.run();
+            monitor.update(n, throttledNanos);
+        }
+    }
+
+    /**
+     * Read from {@code in} until {@code buffer} is full or the end of the stream is reached.
+     *
+     * @return the number of bytes read, {@code 0} at the end of the stream
+     */
+    private static int fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            final int n = in.read(buffer);
+            if (n == -1) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Processes the content of a download, see {@link #downloadToConsumer}.
+     */
+    @FunctionalInterface
+    public interface ContentConsumer {
+        void accept(InputStream in) throws IOException;
+    }
 
-                if (listener.isCancelled()) {
-                    break;
+    /**
+     * Passes the data read through to an optional second stream and a {@link ContentHasher}, reports it to a
+     * {@link ProgressAggregator}, and limits the rate at which it is read with a {@link BandwidthLimiter}.
+     * <p>
+     * Reading fails with an {@link InterruptedIOException} once the progress is cancelled.
+     */
+    static final class ProgressInputStream extends FilterInputStream {
+        private final OutputStream tee;
+        private final ContentHasher hasher;
+        private final BandwidthLimiter limiter;
+        private final ProgressAggregator progress;
+        private long count;
+
+        ProgressInputStream(InputStream in, OutputStream tee, ContentHasher hasher, BandwidthLimiter limiter,
+                            ProgressAggregator progress) {
+            super(in);
+            this.tee = tee;
+            this.hasher = hasher;
+            this.limiter = limiter;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (progress.isCancelled()) {
+                throw new InterruptedIOException("Download cancelled");
+            }
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                limiter.acquire(n, progress::isCancelled);
+                if (tee != null) {
+                    tee.write(b, off, n);
                 }
+                hasher.update(b, off, n);
+                count += n;
+                progress.advance(n);
+            }
+            return n;
+        }
+
+        /**
+         * Read (rather than skip) up to {@code n} bytes, so that they are passed on as well.
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            long skipped = 0;
+            int read;
+            while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+                skipped += read;
             }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Record the download progress so that an interrupted download can be continued later on.
+     * <p>
+     * Downloads of resources without a validator cannot be resumed safely, so there is nothing to record for them.
+     */
+    private static void storeState(DownloadState state, Path file, FileChannel channel) {
+        if (state.getValidator() != null) {
+            try {
+                state.store(file, channel);
+            } catch (IOException e) {
+                logger.warn("Could not store download state for '{}'", file, e);
+            }
+        }
+    }
+
+    private static void closeSilently(FileChannel channel, Path file) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close file '{}' after download.", file, e);
         }
     }
 }
@@ -0,0 +1,114 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The size, modification time and CRC-32 of each file extracted into a directory, kept in a file in that directory.
+ * <p>
+ * A file whose size and modification time are unchanged since it was recorded is assumed to still have the recorded
+ * CRC-32, so that checking an installation against its package does not need to read every file (see
+ * {@link ZipExtractor#repair}). This is the same trade-off as for the digests of the packages in the cache, see
+ * {@link FileDigest}.
+ * <p>
+ * The file lists one file per line, as {@code <crc32 hex> <size> <last modified millis> <entry name>}.
+ */
+public final class ExtractionManifest {
+
+    /**
+     * The name of the manifest file in the directory it describes.
+     */
+    public static final String FILE_NAME = ".manifest";
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionManifest.class);
+
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+    /**
+     * Load the manifest of the given directory, or an empty manifest if there is none or it cannot be read.
+     */
+    static ExtractionManifest load(Path directory) {
+        final ExtractionManifest manifest = new ExtractionManifest();
+        final Path file = directory.resolve(FILE_NAME);
+        if (Files.notExists(file)) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(" ", 4);
+                if (fields.length == 4) {
+                    manifest.records.put(fields[3], new Record(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[0], 16)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable manifest '{}'", file, e);
+            manifest.records.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * Record the current size and modification time of the file extracted from the given entry.
+     */
+    void record(String name, Path file, long crc) throws IOException {
+        records.put(name, new Record(Files.size(file), Files.getLastModifiedTime(file).toMillis(), crc));
+    }
+
+    void remove(String name) {
+        records.remove(name);
+    }
+
+    /**
+     * The CRC-32 recorded for the given entry, if its file has not been changed since.
+     */
+    Optional<Long> getCrc(String name, Path file) throws IOException {
+        final Record record = records.get(name);
+        if (record == null || Files.size(file) != record.size
+                || Files.getLastModifiedTime(file).toMillis() != record.lastModified) {
+            return Optional.empty();
+        }
+        return Optional.of(record.crc);
+    }
+
+    void store(Path directory) throws IOException {
+        final Path file = directory.resolve(FILE_NAME);
+        final Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Record> entry : records.entrySet()) {
+                final Record record = entry.getValue();
+                writer.write(Long.toHexString(record.crc) + " " + record.size + " " + record.lastModified + " "
+                        + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Record {
+        private final long size;
+        private final long lastModified;
+        private final long crc;
+
+        Record(long size, long lastModified, long crc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+    }
+}
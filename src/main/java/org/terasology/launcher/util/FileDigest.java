@@ -0,0 +1,187 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressAggregator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The message digests of a file, persisted in a small sidecar file next to it.
+ * <p>
+ * Along with the digests, the size and modification time of the file are recorded. As long as both are unchanged, the
+ * recorded digests are trusted without reading the file again.
+ */
+public final class FileDigest {
+
+    public static final String SHA_256 = "SHA-256";
+
+    static final String SUFFIX = ".digest";
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDigest.class);
+
+    private static final String PROPERTY_SIZE = "size";
+    private static final String PROPERTY_LAST_MODIFIED = "lastModified";
+    private static final String PROPERTY_DIGEST_PREFIX = "digest.";
+
+    private final long size;
+    private final long lastModified;
+    private final Map<String, String> digests;
+
+    private FileDigest(long size, long lastModified, Map<String, String> digests) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.digests = Collections.unmodifiableMap(new LinkedHashMap<>(digests));
+    }
+
+    /**
+     * Record the given digests for the current state of {@code file}.
+     */
+    public static FileDigest of(Path file, Map<String, String> digests) throws IOException {
+        return new FileDigest(Files.size(file), Files.getLastModifiedTime(file).toMillis(), digests);
+    }
+
+    /**
+     * Read {@code file} completely and compute its digests.
+     *
+     * @param file       the file to hash
+     * @param algorithms the names of the digest algorithms to compute
+     * @param progress   the object which is to be informed about the progress, in phase {@link Progress.Phase#VERIFY}
+     */
+    public static FileDigest compute(Path file, Set<String> algorithms, ProgressAggregator progress)
+            throws IOException {
+        final long size = Files.size(file);
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        final ContentHasher hasher = ContentHasher.forStream(algorithms);
+        progress.startPhase(Progress.Phase.VERIFY, size);
+        try (InputStream in = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[DownloadUtils.BUFFER_SIZE];
+            int n;
+            while (!progress.isCancelled() && (n = in.read(buffer)) != -1) {
+                hasher.update(buffer, 0, n);
+                progress.advance(n);
+            }
+        }
+        progress.finishPhase();
+        return new FileDigest(size, lastModified, hasher.finish());
+    }
+
+    /**
+     * Copy {@code source} to {@code target}, computing the digests of the content on the way.
+     *
+     * @param source     the file to copy
+     * @param target     the file to write; it is overwritten if it exists
+     * @param algorithms the names of the digest algorithms to compute
+     * @return the digests of the copy
+     */
+    public static FileDigest copy(Path source, Path target, Set<String> algorithms) throws IOException {
+        final ContentHasher hasher = ContentHasher.forStream(algorithms);
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            final byte[] buffer = new byte[DownloadUtils.BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                hasher.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        }
+        return of(target, hasher.finish());
+    }
+
+    /**
+     * Load the digests recorded for {@code file}, if there are any.
+     */
+    public static Optional<FileDigest> load(Path file) {
+        final Path digestFile = digestFileFor(file);
+        if (Files.notExists(digestFile)) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(digestFile)) {
+            final Properties properties = new Properties();
+            properties.load(in);
+            final Map<String, String> digests = new LinkedHashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(PROPERTY_DIGEST_PREFIX)) {
+                    digests.put(name.substring(PROPERTY_DIGEST_PREFIX.length()), properties.getProperty(name));
+                }
+            }
+            return Optional.of(new FileDigest(
+                    Long.parseLong(properties.getProperty(PROPERTY_SIZE)),
+                    Long.parseLong(properties.getProperty(PROPERTY_LAST_MODIFIED)),
+                    digests));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable digest file '{}'", digestFile, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remove the sidecar file of {@code file}.
+     */
+    public static void delete(Path file) throws IOException {
+        Files.deleteIfExists(digestFileFor(file));
+    }
+
+    public static Path digestFileFor(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + SUFFIX);
+    }
+
+    /**
+     * Write the digests to the sidecar file of {@code file}.
+     */
+    public void store(Path file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(PROPERTY_SIZE, Long.toString(size));
+        properties.setProperty(PROPERTY_LAST_MODIFIED, Long.toString(lastModified));
+        digests.forEach((algorithm, digest) -> properties.setProperty(PROPERTY_DIGEST_PREFIX + algorithm, digest));
+
+        final Path digestFile = digestFileFor(file);
+        final Path tempFile = digestFile.resolveSibling(digestFile.getFileName().toString() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "Terasology Launcher - File digests");
+        }
+        Files.move(tempFile, digestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Whether {@code file} still has the size and modification time it had when the digests were recorded.
+     */
+    public boolean isCurrent(Path file) {
+        try {
+            return Files.size(file) == size && Files.getLastModifiedTime(file).toMillis() == lastModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The digest computed with the given algorithm, as lower case hex string.
+     */
+    public Optional<String> get(String algorithm) {
+        return Optional.ofNullable(digests.get(algorithm));
+    }
+
+    public boolean hasAll(Set<String> algorithms) {
+        return digests.keySet().containsAll(algorithms);
+    }
+
+    @Override
+    public String toString() {
+        return digests.toString();
+    }
+}
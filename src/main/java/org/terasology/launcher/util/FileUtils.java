@@ -5,16 +5,18 @@ package org.terasology.launcher.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terasology.launcher.util.visitor.ArchiveCopyVisitor;
 import org.terasology.launcher.util.visitor.DeleteFileVisitor;
 import org.terasology.launcher.util.visitor.LocalCopyVisitor;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 public final class FileUtils {
 
@@ -67,8 +69,23 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * The total size of the files in the specified ZIP file once extracted, as recorded in its central directory.
+     *
+     * @param archive the ZIP file
+     * @return the sum of the uncompressed sizes of all entries
+     * @throws IOException if the archive cannot be read
+     */
+    public static long getUncompressedSize(final Path archive) throws IOException {
+        try (MappedZip zip = MappedZip.open(archive)) {
+            return zip.getUncompressedSize();
+        }
+    }
+
     /**
      * Extracts the specified ZIP file to the specified location.
+     * <p>
+     * The entries are extracted in parallel, see {@link ZipExtractor}.
      *
      * @param archive        the ZIP file to extract
      * @param outputLocation where to extract to
@@ -78,14 +95,7 @@ public final class FileUtils {
         logger.trace("Extracting '{}' to '{}'", archive, outputLocation);
 
         try {
-            if (Files.notExists(outputLocation)) {
-                Files.createDirectories(outputLocation);
-            }
-            try (FileSystem fileSystem = FileSystems.newFileSystem(archive, ((ClassLoader) null))) {
-                for (Path rootDirectory : fileSystem.getRootDirectories()) {
-                    Files.walkFileTree(rootDirectory, new ArchiveCopyVisitor(outputLocation));
-                }
-            }
+            new ZipExtractor().extract(archive, outputLocation);
             return true;
         } catch (IOException e) {
             logger.error("Could not extract zip archive '{}' to '{}'!", archive, outputLocation, e);
@@ -93,6 +103,40 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Extracts a ZIP archive to the specified location while it is read from the given stream.
+     * <p>
+     * In contrast to {@link #extractZipTo(Path, Path)}, this does not need the complete archive up front: each entry is
+     * written to disk as soon as its data has been read. The central directory at the end of the archive is not
+     * needed, so the stream may not be read to its end; callers that need all of the data have to drain it.
+     *
+     * @param in             the stream to read the ZIP archive from
+     * @param outputLocation where to extract to
+     * @throws IOException if reading the archive or writing the files fails
+     */
+    public static void extractZipStreamTo(final InputStream in, final Path outputLocation) throws IOException {
+        logger.trace("Extracting stream to '{}'", outputLocation);
+        final Path root = outputLocation.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        // ZipInputStream reads in tiny chunks, so don't pass them on to the network
+        final ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, 64 * 1024));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            final Path target = root.resolve(entry.getName()).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("ZIP entry is outside of the target directory: " + entry.getName());
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            zip.closeEntry();
+        }
+    }
+
     /**
      * Copy the whole folder recursively to the specified destination.
      *
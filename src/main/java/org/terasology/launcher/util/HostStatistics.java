@@ -0,0 +1,143 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Properties;
+
+/**
+ * Download speed and failures observed per host, used to rank the sources of a download.
+ * <p>
+ * Hosts are told apart by name and port. The statistics are kept in a small properties file, so that the ranking
+ * carries over to the next launcher session.
+ */
+public final class HostStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostStatistics.class);
+
+    /**
+     * Transfers smaller than this say more about latency than about throughput, so they are not recorded.
+     */
+    static final long MIN_SAMPLE_BYTES = 32 * 1024;
+
+    /**
+     * The weight of the newest sample in the moving average of the throughput.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private static final String PROPERTY_BYTES_PER_SECOND = ".bytesPerSecond";
+    private static final String PROPERTY_FAILURES = ".failures";
+
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    /**
+     * Load the statistics from {@code file}, starting with empty statistics if it does not exist or cannot be read.
+     */
+    public static HostStatistics load(Path file) {
+        final HostStatistics statistics = new HostStatistics();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                final Properties properties = new Properties();
+                properties.load(in);
+                for (String name : properties.stringPropertyNames()) {
+                    if (name.endsWith(PROPERTY_BYTES_PER_SECOND)) {
+                        final String host = name.substring(0, name.length() - PROPERTY_BYTES_PER_SECOND.length());
+                        final Host entry = statistics.hosts.computeIfAbsent(host, h -> new Host());
+                        entry.bytesPerSecond = Double.parseDouble(properties.getProperty(name));
+                        entry.failures = Integer.parseInt(properties.getProperty(host + PROPERTY_FAILURES, "0"));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Ignoring unreadable host statistics '{}'", file, e);
+                statistics.hosts.clear();
+            }
+        }
+        return statistics;
+    }
+
+    public synchronized void store(Path file) throws IOException {
+        final Properties properties = new Properties();
+        hosts.forEach((host, entry) -> {
+            properties.setProperty(host + PROPERTY_BYTES_PER_SECOND, Double.toString(entry.bytesPerSecond));
+            properties.setProperty(host + PROPERTY_FAILURES, Integer.toString(entry.failures));
+        });
+        final Path tempFile = file.resolveSibling(file.getFileName().toString() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "Terasology Launcher - Download host statistics");
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Record that {@code bytes} bytes were received from the host of {@code url} in {@code nanos} nanoseconds.
+     */
+    public synchronized void recordTransfer(URL url, long bytes, long nanos) {
+        if (bytes < MIN_SAMPLE_BYTES || nanos <= 0) {
+            return;
+        }
+        final double sample = bytes * 1e9 / nanos;
+        final Host entry = hosts.computeIfAbsent(url.getAuthority(), h -> new Host());
+        entry.bytesPerSecond = entry.bytesPerSecond > 0
+                ? SMOOTHING * sample + (1 - SMOOTHING) * entry.bytesPerSecond
+                : sample;
+        entry.failures = Math.max(0, entry.failures - 1);
+    }
+
+    /**
+     * Record that a request to the host of {@code url} failed, or that the host became too slow to continue with.
+     */
+    public synchronized void recordFailure(URL url) {
+        hosts.computeIfAbsent(url.getAuthority(), h -> new Host()).failures++;
+    }
+
+    /**
+     * The average throughput observed for the host of {@code url}, if any transfers from it were recorded.
+     */
+    public synchronized OptionalDouble getBytesPerSecond(URL url) {
+        final Host entry = hosts.get(url.getAuthority());
+        return entry != null && entry.bytesPerSecond > 0
+                ? OptionalDouble.of(entry.bytesPerSecond)
+                : OptionalDouble.empty();
+    }
+
+    /**
+     * Order the given URLs from the most to the least promising host.
+     * <p>
+     * Hosts without any statistics come first, in the given order, so that they get a chance to prove themselves. The
+     * other hosts are ordered by their average throughput, halved for every recent failure.
+     */
+    public synchronized List<URL> rank(List<URL> urls) {
+        final List<URL> ranked = new ArrayList<>(urls);
+        ranked.sort(Comparator.comparingDouble(this::score).reversed());
+        return ranked;
+    }
+
+    private double score(URL url) {
+        final Host entry = hosts.get(url.getAuthority());
+        if (entry == null) {
+            return Double.MAX_VALUE;
+        }
+        return entry.bytesPerSecond / Math.pow(2, entry.failures);
+    }
+
+    private static final class Host {
+        private double bytesPerSecond;
+        private int failures;
+    }
+}
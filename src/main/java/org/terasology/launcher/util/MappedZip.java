@@ -0,0 +1,460 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A local ZIP archive read through a memory mapping of the whole file.
+ * <p>
+ * Opening the archive only records where the header of each entry starts in its central directory; the fields of an
+ * entry are read from the mapping when they are asked for, by the index of the entry. Looking up an entry by name
+ * compares the encoded names in place, so that no strings or entry objects are created for the entries which are not
+ * asked for. The content of an entry is handed out as a slice of the mapping, which deflated entries are inflated from
+ * directly.
+ * <p>
+ * The mapping is only read with absolute positions and never changed, so that a reader can be shared by any number of
+ * threads. Closing the reader releases the mapping right away where the platform allows it, rather than when the
+ * reader is garbage collected, as some platforms do not allow to delete or replace a file while it is mapped. Reading
+ * from a released mapping would crash the JVM, so the streams handed out keep the mapping until they are closed as
+ * well, and the reader and the streams refuse to be used once they are closed. The archive must not be truncated while
+ * it is mapped, nor the reader be closed while another thread reads the central directory.
+ * <p>
+ * Like {@link RemoteZip}, only archives below 2 GiB, without ZIP64 extensions and with stored or deflated entries are
+ * supported, which covers the game packages and the game's jars.
+ */
+public final class MappedZip implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedZip.class);
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final Consumer<ByteBuffer> UNMAPPER = findUnmapper();
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private volatile boolean closed;
+
+    /**
+     * The number of streams handed out which are not closed yet, guarded by {@code this}.
+     */
+    private int openStreams;
+
+    /**
+     * The position of the central directory header of each entry in {@link #buffer}.
+     */
+    private final int[] headers;
+
+    private MappedZip(Path path, ByteBuffer buffer, int[] headers) {
+        this.path = path;
+        this.buffer = buffer;
+        this.headers = headers;
+    }
+
+    /**
+     * Map the given archive and read its central directory.
+     *
+     * @param archive the ZIP file
+     * @return the archive
+     * @throws IOException if the archive cannot be read, is not a ZIP file or is not supported
+     */
+    public static MappedZip open(Path archive) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new ZipException("Archives of 2 GiB and more are not supported: " + archive);
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final int length = buffer.limit();
+        int end = length - END_OF_CENTRAL_DIRECTORY_SIZE;
+        final int first = Math.max(0, end - MAX_COMMENT_SIZE);
+        while (end >= first && buffer.getInt(end) != END_OF_CENTRAL_DIRECTORY) {
+            end--;
+        }
+        if (end < first) {
+            throw malformed(buffer, "No end of central directory record in " + archive);
+        }
+        final int count = Short.toUnsignedInt(buffer.getShort(end + 10));
+        final long size = Integer.toUnsignedLong(buffer.getInt(end + 12));
+        final long offset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+        if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+            throw malformed(buffer, "ZIP64 archives are not supported: " + archive);
+        }
+        if (offset + size > end) {
+            throw malformed(buffer, "Central directory outside of the archive: " + archive);
+        }
+
+        final int[] headers = new int[count];
+        int position = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_FILE_HEADER_SIZE > end || buffer.getInt(position) != CENTRAL_FILE_HEADER) {
+                throw malformed(buffer, "Malformed central directory at entry " + i + " of " + archive);
+            }
+            headers[i] = position;
+            position += CENTRAL_FILE_HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(position + 28))
+                    + Short.toUnsignedInt(buffer.getShort(position + 30))
+                    + Short.toUnsignedInt(buffer.getShort(position + 32));
+        }
+        if (position > end) {
+            throw malformed(buffer, "Malformed central directory in " + archive);
+        }
+        return new MappedZip(archive, buffer, headers);
+    }
+
+    /**
+     * Release the mapping of a file which turned out not to be a readable archive.
+     */
+    private static ZipException malformed(ByteBuffer buffer, String message) {
+        UNMAPPER.accept(buffer);
+        return new ZipException(message);
+    }
+
+    public int getEntryCount() {
+        return headers.length;
+    }
+
+    /**
+     * The index of the entry with the given name, or {@code -1} if there is none.
+     */
+    public int find(String name) {
+        final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < headers.length; i++) {
+            if (getNameLength(i) == encoded.length && nameRegionMatches(i, 0, encoded)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The index of the first entry whose name ends with the given suffix, or {@code -1} if there is none.
+     */
+    public int findEndingWith(String suffix) {
+        final byte[] encoded = suffix.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < headers.length; i++) {
+            final int nameLength = getNameLength(i);
+            if (nameLength >= encoded.length && nameRegionMatches(i, nameLength - encoded.length, encoded)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getName(int entry) {
+        final byte[] name = new byte[getNameLength(entry)];
+        buffer.duplicate().position(header(entry) + CENTRAL_FILE_HEADER_SIZE).get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    public boolean isDirectory(int entry) {
+        final int nameLength = getNameLength(entry);
+        return nameLength > 0 && buffer.get(header(entry) + CENTRAL_FILE_HEADER_SIZE + nameLength - 1) == '/';
+    }
+
+    public long getSize(int entry) {
+        return Integer.toUnsignedLong(buffer.getInt(header(entry) + 24));
+    }
+
+    public long getCompressedSize(int entry) {
+        return Integer.toUnsignedLong(buffer.getInt(header(entry) + 20));
+    }
+
+    public long getCrc(int entry) {
+        return Integer.toUnsignedLong(buffer.getInt(header(entry) + 16));
+    }
+
+    /**
+     * The modification time of the given entry, in the local time the archive records it in, like
+     * {@link java.util.zip.ZipEntry#getTimeLocal()}.
+     *
+     * @return the time, or {@code null} if the archive records an invalid one
+     */
+    public LocalDateTime getTimeLocal(int entry) {
+        final int time = Short.toUnsignedInt(buffer.getShort(header(entry) + 12));
+        final int date = Short.toUnsignedInt(buffer.getShort(header(entry) + 14));
+        try {
+            return LocalDateTime.of(1980 + (date >> 9), (date >> 5) & 0xf, date & 0x1f,
+                    time >> 11, (time >> 5) & 0x3f, (time & 0x1f) * 2);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The total size of the files in the archive once extracted.
+     */
+    public long getUncompressedSize() {
+        long total = 0;
+        for (int i = 0; i < headers.length; i++) {
+            if (!isDirectory(i)) {
+                total += getSize(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The content of the given entry as it is stored in the archive, i.e. compressed if the entry is deflated.
+     *
+     * @throws IOException if the local file header of the entry is malformed
+     */
+    private ByteBuffer getRawData(int entry) throws IOException {
+        final int local = buffer.getInt(header(entry) + 42);
+        if (local < 0 || local + LOCAL_FILE_HEADER_SIZE > buffer.limit()
+                || buffer.getInt(local) != LOCAL_FILE_HEADER) {
+            throw new ZipException("Malformed local file header of " + getName(entry) + " in " + path);
+        }
+        final long start = (long) local + LOCAL_FILE_HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(local + 26))
+                + Short.toUnsignedInt(buffer.getShort(local + 28));
+        final long end = start + getCompressedSize(entry);
+        if (end > buffer.limit()) {
+            throw new ZipException("Entry " + getName(entry) + " reaches beyond the end of " + path);
+        }
+        return buffer.duplicate().position((int) start).limit((int) end).slice();
+    }
+
+    /**
+     * The uncompressed content of the given entry.
+     *
+     * @throws IOException if the entry is malformed or compressed with an unsupported method
+     */
+    public InputStream getInputStream(int entry) throws IOException {
+        ensureOpen();
+        final int method = Short.toUnsignedInt(buffer.getShort(header(entry) + 10));
+        final ByteBuffer data = getRawData(entry);
+        switch (method) {
+            case STORED:
+                return new SliceInputStream(data);
+            case DEFLATED:
+                return new InflatingInputStream(data, getName(entry));
+            default:
+                throw new ZipException("Unsupported compression method " + method + " of " + getName(entry)
+                        + " in " + path);
+        }
+    }
+
+    /**
+     * Release the mapping of the archive, or once the last stream handed out is closed if any are still open.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            if (openStreams == 0) {
+                UNMAPPER.accept(buffer);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Archive is closed: " + path);
+        }
+    }
+
+    /**
+     * The position of the central directory header of the given entry.
+     */
+    private int header(int entry) {
+        if (closed) {
+            throw new IllegalStateException("Archive is closed: " + path);
+        }
+        return headers[entry];
+    }
+
+    private synchronized void retain() throws IOException {
+        ensureOpen();
+        openStreams++;
+    }
+
+    private synchronized void release() {
+        openStreams--;
+        if (closed && openStreams == 0) {
+            UNMAPPER.accept(buffer);
+        }
+    }
+
+    private int getNameLength(int entry) {
+        return Short.toUnsignedInt(buffer.getShort(header(entry) + 28));
+    }
+
+    private boolean nameRegionMatches(int entry, int offset, byte[] bytes) {
+        final int start = header(entry) + CENTRAL_FILE_HEADER_SIZE + offset;
+        for (int j = 0; j < bytes.length; j++) {
+            if (buffer.get(start + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Java has no API to release a mapping; {@code sun.misc.Unsafe#invokeCleaner} does so on all supported Java
+     * versions. Without it, mappings are released by the garbage collector.
+     */
+    private static Consumer<ByteBuffer> findUnmapper() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            final Object unsafe = field.get(null);
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException e) {
+                    logger.debug("Could not release mapping", e);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Cannot release mappings explicitly, leaving them to the garbage collector", e);
+            return buffer -> {
+            };
+        }
+    }
+
+    /**
+     * A stream over a part of the mapping, which keeps the mapping from being released until it is closed.
+     */
+    private abstract class MappedInputStream extends InputStream {
+        private boolean streamClosed;
+
+        MappedInputStream() throws IOException {
+            retain();
+        }
+
+        void ensureStreamOpen() throws IOException {
+            if (streamClosed) {
+                throw new IOException("Stream is closed: " + path);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!streamClosed) {
+                streamClosed = true;
+                release();
+            }
+        }
+    }
+
+    private final class SliceInputStream extends MappedInputStream {
+        private final ByteBuffer data;
+
+        SliceInputStream(ByteBuffer data) throws IOException {
+            this.data = data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureStreamOpen();
+            return data.hasRemaining() ? Byte.toUnsignedInt(data.get()) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureStreamOpen();
+            if (len == 0) {
+                return 0;
+            }
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, data.remaining());
+            data.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureStreamOpen();
+            return data.remaining();
+        }
+    }
+
+    /**
+     * Inflates straight from the mapping, without copying the compressed data into a buffer first.
+     */
+    private final class InflatingInputStream extends MappedInputStream {
+        private final Inflater inflater = new Inflater(true);
+        private final String name;
+        private final byte[] single = new byte[1];
+
+        InflatingInputStream(ByteBuffer data, String name) throws IOException {
+            this.name = name;
+            inflater.setInput(data);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(single[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureStreamOpen();
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                int n;
+                while ((n = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        throw new EOFException("Unexpected end of ZIP entry " + name);
+                    }
+                }
+                return n;
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflated data in " + name + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+            super.close();
+        }
+    }
+}
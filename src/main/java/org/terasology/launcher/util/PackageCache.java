@@ -0,0 +1,329 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the game packages in the cache directory within a size limit.
+ * <p>
+ * When the packages exceed the limit, the least recently used ones are evicted. Packages of installed releases go
+ * first, as they are only needed to install the release again; if downloaded files are not to be kept at all, they are
+ * evicted right after their installation. Packages which are being downloaded or installed are never evicted.
+ * <p>
+ * The time a package was last used is kept as its last access time, which is set explicitly whenever the package is
+ * used, so that it does not depend on how the file system updates access times. Its modification time is left alone,
+ * as the recorded digests of the package depend on it (see {@link FileDigest}).
+ * <p>
+ * The cache directory is shared with other files, so only the files of packages and their partial downloads are
+ * managed, see {@link #PACKAGE}, {@link #PARTIAL} and {@link #SIDECAR}.
+ */
+public final class PackageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackageCache.class);
+
+    /**
+     * A partial download is discarded if it has not been continued for this long.
+     */
+    static final Duration ORPHAN_AGE = Duration.ofDays(7);
+
+    private static final Pattern PACKAGE = Pattern.compile("terasology-.*\\.zip");
+    private static final Pattern PARTIAL = Pattern.compile("terasology-.*\\.(zip\\.part|patch)");
+    private static final Pattern SIDECAR =
+            Pattern.compile("terasology-.*\\.(zip\\.digest|zip\\.part\\.state|patch\\.state)");
+
+    /**
+     * The files of the HTTP response cache, which used to be kept in the cache directory itself.
+     */
+    private static final Pattern HTTP_CACHE = Pattern.compile("journal(\\.bkp|\\.tmp)?|[0-9a-f]{32}\\.[01](\\.tmp)?");
+
+    private final Path directory;
+    private final LongSupplier maxBytes;
+    private final BooleanSupplier keepInstalled;
+    private final Supplier<Set<String>> installed;
+    private final Clock clock;
+    private final ExecutorService executor;
+
+    /**
+     * The number of installations using each package, by file name.
+     */
+    private final Map<String, Integer> pinned = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long evictedBytes;
+
+    /**
+     * @param directory     the cache directory
+     * @param maxBytes      the maximum total size of the packages, {@code 0} for no limit
+     * @param keepInstalled whether packages are kept after their release was installed
+     * @param installed     the file names of the packages whose release is installed
+     */
+    public PackageCache(Path directory, LongSupplier maxBytes, BooleanSupplier keepInstalled,
+                        Supplier<Set<String>> installed) {
+        this(directory, maxBytes, keepInstalled, installed, Clock.systemUTC(),
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("package-cache-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    PackageCache(Path directory, LongSupplier maxBytes, BooleanSupplier keepInstalled,
+                 Supplier<Set<String>> installed, Clock clock, ExecutorService executor) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.keepInstalled = keepInstalled;
+        this.installed = installed;
+        this.clock = clock;
+        this.executor = executor;
+    }
+
+    /**
+     * Remove abandoned partial downloads and leftover files in the background, then evict packages if needed.
+     */
+    public void start() {
+        executor.execute(() -> {
+            removeOrphans();
+            trim();
+        });
+    }
+
+    /**
+     * Evict packages in the background, see {@link #trim()}.
+     */
+    public void trimLater() {
+        executor.execute(this::trim);
+    }
+
+    /**
+     * Record that the given package was found in the cache, and is about to be used.
+     */
+    public void hit(Path file) {
+        synchronized (this) {
+            hits++;
+        }
+        touch(file);
+    }
+
+    /**
+     * Record that the given package was not found in the cache, and has to be fetched.
+     */
+    public synchronized void miss(Path file) {
+        misses++;
+    }
+
+    /**
+     * Record that the given package is in use, so that it is not evicted until {@link #unpin(Path)} is called.
+     */
+    public synchronized void pin(Path file) {
+        pinned.merge(file.getFileName().toString(), 1, Integer::sum);
+    }
+
+    /**
+     * Record that the given package is no longer used by an installation, and evict packages in the background.
+     * <p>
+     * The package counts as used at this time.
+     */
+    public void unpin(Path file) {
+        synchronized (this) {
+            pinned.computeIfPresent(file.getFileName().toString(), (name, count) -> count > 1 ? count - 1 : null);
+        }
+        touch(file);
+        trimLater();
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions, evictedBytes);
+    }
+
+    /**
+     * Evict packages until the cache is within its limits.
+     */
+    synchronized void trim() {
+        final List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                file -> PACKAGE.matcher(file.getFileName().toString()).matches() && Files.isRegularFile(file))) {
+            for (Path file : files) {
+                final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                entries.add(new Entry(file, attributes.size(), attributes.lastAccessTime().toInstant()));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list the packages in the cache '{}'", directory, e);
+            return;
+        }
+        final Set<String> installedPackages = installed.get();
+        // packages of installed releases first, the least recently used first among those
+        entries.sort(Comparator.<Entry, Boolean>comparing(entry -> !installedPackages.contains(entry.getName()))
+                .thenComparing(entry -> entry.lastUsed));
+
+        long total = entries.stream().mapToLong(entry -> entry.size).sum();
+        final long limit = maxBytes.getAsLong();
+        final boolean keep = keepInstalled.getAsBoolean();
+        for (Entry entry : entries) {
+            final boolean unwanted = !keep && installedPackages.contains(entry.getName());
+            if (!unwanted && (limit <= 0 || total <= limit)) {
+                continue;
+            }
+            if (pinned.containsKey(entry.getName())) {
+                continue;
+            }
+            if (evict(entry)) {
+                total -= entry.size;
+            }
+        }
+        if (limit > 0 && total > limit) {
+            logger.debug("Packages in use keep the cache at {}, above its limit of {}", Progress.formatBytes(total),
+                    Progress.formatBytes(limit));
+        }
+    }
+
+    private boolean evict(Entry entry) {
+        try {
+            Files.delete(entry.file);
+            FileDigest.delete(entry.file);
+        } catch (IOException e) {
+            logger.warn("Could not evict '{}' from the cache", entry.file, e);
+            return false;
+        }
+        evictions++;
+        evictedBytes += entry.size;
+        logger.info("Evicted '{}' ({}) from the cache, {} evicted since start", entry.getName(),
+                Progress.formatBytes(entry.size), Progress.formatBytes(evictedBytes));
+        return true;
+    }
+
+    /**
+     * Remove the partial downloads which cannot be or have not been continued for a while, the sidecar files without
+     * the file they belong to, and the files of the HTTP response cache, which has moved to a directory of its own.
+     */
+    synchronized void removeOrphans() {
+        final Instant expiry = clock.instant().minus(ORPHAN_AGE);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                final boolean orphan;
+                if (PARTIAL.matcher(name).matches()) {
+                    orphan = !pinned.containsKey(getPackageName(name))
+                            && (Files.notExists(DownloadUtils.getStateFileFor(file))
+                            || Files.getLastModifiedTime(file).toInstant().isBefore(expiry));
+                } else if (SIDECAR.matcher(name).matches()) {
+                    orphan = Files.notExists(file.resolveSibling(name.substring(0, name.lastIndexOf('.'))));
+                } else {
+                    orphan = HTTP_CACHE.matcher(name).matches();
+                }
+                if (orphan) {
+                    logger.info("Removing orphaned file '{}' from the cache", file);
+                    Files.deleteIfExists(file);
+                    if (PARTIAL.matcher(name).matches()) {
+                        Files.deleteIfExists(DownloadUtils.getStateFileFor(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean up the cache '{}'", directory, e);
+        }
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.getFileAttributeView(file, BasicFileAttributeView.class)
+                    .setTimes(null, FileTime.from(clock.instant()), null);
+        } catch (IOException e) {
+            logger.debug("Could not record the use of '{}'", file, e);
+        }
+    }
+
+    /**
+     * The file name of the package a partial download or patch belongs to.
+     */
+    private static String getPackageName(String partialName) {
+        if (partialName.endsWith(".part")) {
+            return partialName.substring(0, partialName.length() - ".part".length());
+        }
+        final int from = partialName.lastIndexOf(".from-");
+        return (from >= 0 ? partialName.substring(0, from) : partialName) + ".zip";
+    }
+
+    private static final class Entry {
+        private final Path file;
+        private final long size;
+        private final Instant lastUsed;
+
+        Entry(Path file, long size, Instant lastUsed) {
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        String getName() {
+            return file.getFileName().toString();
+        }
+    }
+
+    /**
+     * How well the cache served the installations since the launcher started.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long evictedBytes;
+
+        Statistics(long hits, long misses, long evictions, long evictedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.evictedBytes = evictedBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return hits + " hits, " + misses + " misses, " + evictions + " evictions ("
+                    + Progress.formatBytes(evictedBytes) + ")";
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.net.URL;
+import java.util.Optional;
+
+/**
+ * Information about a remote download target, as reported by the server in response to a {@code HEAD} request.
+ */
+public final class RemoteResource {
+
+    private final URL url;
+    private final long contentLength;
+    private final boolean acceptsRanges;
+    private final String etag;
+    private final String lastModified;
+
+    RemoteResource(URL url, long contentLength, boolean acceptsRanges, String etag, String lastModified) {
+        this.url = url;
+        this.contentLength = contentLength;
+        this.acceptsRanges = acceptsRanges;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * The size of the resource in bytes, or {@code -1} if the server did not announce it.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Whether the server announced support for byte range requests ({@code Accept-Ranges: bytes}).
+     */
+    public boolean acceptsRanges() {
+        return acceptsRanges;
+    }
+
+    /**
+     * A value identifying this exact version of the resource, usable in an {@code If-Range} request header.
+     * <p>
+     * This is the entity tag if the server sent a strong one, and the modification date otherwise. Weak entity tags
+     * are not allowed in {@code If-Range} and are therefore ignored.
+     */
+    public Optional<String> getValidator() {
+        if (etag != null && !etag.startsWith("W/")) {
+            return Optional.of(etag);
+        }
+        return Optional.ofNullable(lastModified);
+    }
+
+    /**
+     * Whether an interrupted download of this resource can be continued later on.
+     */
+    public boolean isResumable() {
+        return acceptsRanges && contentLength > 0 && getValidator().isPresent();
+    }
+
+    @Override
+    public String toString() {
+        return url + " (" + contentLength + " bytes" + (acceptsRanges ? ", ranges" : "") + ")";
+    }
+}
@@ -0,0 +1,483 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A ZIP archive on an HTTP server which supports byte range requests, read without downloading all of it.
+ * <p>
+ * Opening the archive fetches only its end of central directory record and its central directory. Then the CRC-32 and
+ * size of each entry can be compared against the files of an earlier installation (see {@link #plan(Path)}), so that
+ * only the local file records of entries which changed are fetched, while the unchanged files are copied locally.
+ * <p>
+ * Only archives without ZIP64 extensions and with stored or deflated entries are supported, which covers the game
+ * packages.
+ */
+public final class RemoteZip {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteZip.class);
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /**
+     * Neighbouring entries which are fetched are requested together if at most this many bytes lie between them.
+     */
+    static final long MERGE_GAP = 64 * 1024;
+
+    private final OkHttpClient client;
+    private final RemoteResource resource;
+    private final long centralDirectoryOffset;
+    private final List<Entry> entries;
+
+    private RemoteZip(OkHttpClient client, RemoteResource resource, long centralDirectoryOffset, List<Entry> entries) {
+        this.client = client;
+        this.resource = resource;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.entries = entries;
+    }
+
+    /**
+     * Read the central directory of the given archive.
+     *
+     * @param client   the launcher's shared HTTP client
+     * @param resource the archive, as probed by {@link DownloadUtils#probe}; it has to accept byte range requests
+     * @return the archive
+     * @throws IOException if the central directory cannot be fetched or parsed
+     */
+    public static RemoteZip open(OkHttpClient client, RemoteResource resource) throws IOException {
+        if (!resource.acceptsRanges() || resource.getContentLength() < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new IOException("Server does not support range requests for " + resource.getUrl());
+        }
+        final OkHttpClient downloadClient = DownloadUtils.forDownloads(client);
+        final long length = resource.getContentLength();
+        final int tailSize = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = fetch(downloadClient, resource, length - tailSize, tailSize);
+
+        int end = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_OF_CENTRAL_DIRECTORY) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException("No end of central directory record in " + resource.getUrl());
+        }
+        final int count = Short.toUnsignedInt(tail.getShort(end + 10));
+        final long size = Integer.toUnsignedLong(tail.getInt(end + 12));
+        final long offset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+            throw new IOException("ZIP64 archives are not supported: " + resource.getUrl());
+        }
+        if (offset + size > length) {
+            throw new IOException("Central directory outside of the archive: " + resource.getUrl());
+        }
+
+        final ByteBuffer directory;
+        if (offset >= length - tailSize) {
+            directory = tail.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            directory.position((int) (offset - (length - tailSize))).limit(directory.position() + (int) size);
+        } else {
+            directory = fetch(downloadClient, resource, offset, (int) size);
+        }
+        return new RemoteZip(downloadClient, resource, offset, parseCentralDirectory(directory.slice()
+                .order(ByteOrder.LITTLE_ENDIAN), count, offset));
+    }
+
+    private static List<Entry> parseCentralDirectory(ByteBuffer directory, int count, long directoryOffset)
+            throws IOException {
+        final List<Entry> entries = new ArrayList<>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_FILE_HEADER_SIZE > directory.limit()
+                    || directory.getInt(position) != CENTRAL_FILE_HEADER) {
+                throw new IOException("Malformed central directory at entry " + i);
+            }
+            final int method = Short.toUnsignedInt(directory.getShort(position + 10));
+            final long crc = Integer.toUnsignedLong(directory.getInt(position + 16));
+            final long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+            final long size = Integer.toUnsignedLong(directory.getInt(position + 24));
+            final int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            final int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            final int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            final long offset = Integer.toUnsignedLong(directory.getInt(position + 42));
+            final byte[] name = new byte[nameLength];
+            directory.duplicate().position(position + CENTRAL_FILE_HEADER_SIZE).get(name);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, size, offset));
+            position += CENTRAL_FILE_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        // the local file record of an entry ends where the next one (or the central directory) starts
+        final List<Entry> byOffset = new ArrayList<>(entries);
+        byOffset.sort(Comparator.comparingLong(entry -> entry.offset));
+        for (int i = 0; i < byOffset.size(); i++) {
+            byOffset.get(i).end = i + 1 < byOffset.size() ? byOffset.get(i + 1).offset : directoryOffset;
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * The total size of the files in the archive once extracted.
+     */
+    public long getUncompressedSize() {
+        return entries.stream().filter(entry -> !entry.isDirectory()).mapToLong(Entry::getSize).sum();
+    }
+
+    /**
+     * Compare the entries of the archive against the files in {@code baseDirectory}, e.g. the installation of an
+     * earlier release. A file with the same size and CRC-32 as an entry is reused, all other entries are fetched.
+     *
+     * @param baseDirectory where to look for unchanged files
+     * @return which entries to copy and which to fetch
+     * @throws IOException if reading the files in {@code baseDirectory} fails
+     */
+    public Plan plan(Path baseDirectory) throws IOException {
+        final Path baseRoot = baseDirectory.toAbsolutePath().normalize();
+        final List<Entry> reused = new ArrayList<>();
+        final List<Entry> fetched = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            final Path base = resolve(baseRoot, entry.name);
+            if (Files.isRegularFile(base) && Files.size(base) == entry.size && crc(base) == entry.crc) {
+                reused.add(entry);
+            } else {
+                fetched.add(entry);
+            }
+        }
+        return new Plan(baseRoot, reused, fetched);
+    }
+
+    private static long crc(Path file) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return crc.getValue();
+    }
+
+    private static Path resolve(Path root, String name) throws IOException {
+        final Path target = root.resolve(name).normalize();
+        if (!target.startsWith(root)) {
+            throw new IOException("ZIP entry is outside of the target directory: " + name);
+        }
+        return target;
+    }
+
+    private static ByteBuffer fetch(OkHttpClient client, RemoteResource resource, long offset, int length)
+            throws IOException {
+        try (Response response = client.newCall(newRangeRequest(resource, offset, offset + length - 1)).execute()) {
+            final ResponseBody body = checkPartialResponse(response, resource);
+            final byte[] bytes = body.bytes();
+            if (bytes.length != length) {
+                throw new IOException("Expected " + length + " bytes from " + resource.getUrl() + ", got "
+                        + bytes.length);
+            }
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static Request newRangeRequest(RemoteResource resource, long first, long last) {
+        final Request.Builder builder = DownloadUtils.newRequestBuilder(resource.getUrl())
+                .header("Range", "bytes=" + first + "-" + last);
+        // fail rather than mix up two versions of the archive
+        resource.getValidator().ifPresent(validator -> builder.header("If-Range", validator));
+        return builder.build();
+    }
+
+    private static ResponseBody checkPartialResponse(Response response, RemoteResource resource) throws IOException {
+        if (response.code() != 206 || response.body() == null) {
+            throw new IOException("Server did not honor range request! URL=" + resource.getUrl()
+                    + ", status=" + response.code());
+        }
+        return response.body();
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    public static final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+        private long end;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The result of comparing the archive against an earlier installation, see {@link #plan(Path)}.
+     */
+    public final class Plan {
+        private final Path baseDirectory;
+        private final List<Entry> reused;
+        private final List<Entry> fetched;
+
+        Plan(Path baseDirectory, List<Entry> reused, List<Entry> fetched) {
+            this.baseDirectory = baseDirectory;
+            this.reused = reused;
+            this.fetched = fetched;
+        }
+
+        public List<Entry> getReused() {
+            return Collections.unmodifiableList(reused);
+        }
+
+        public List<Entry> getFetched() {
+            return Collections.unmodifiableList(fetched);
+        }
+
+        /**
+         * The number of bytes that have to be downloaded to carry out the plan, including what lies between entries
+         * that are requested together.
+         */
+        public long getFetchBytes() {
+            return mergeRanges().stream().mapToLong(Range::length).sum();
+        }
+
+        /**
+         * Create all files of the archive in {@code outputLocation}.
+         *
+         * @param outputLocation where to extract to
+         * @param progress       the object which is to be informed about download progress
+         * @param limiter        the bandwidth limit for fetching entries
+         * @throws IOException if fetching, copying or writing fails, or an entry does not match its CRC-32
+         */
+        public void extractTo(Path outputLocation, ProgressAggregator progress, BandwidthLimiter limiter)
+                throws IOException {
+            final Path root = outputLocation.toAbsolutePath().normalize();
+            Files.createDirectories(root);
+            for (Entry entry : entries) {
+                if (entry.isDirectory()) {
+                    Files.createDirectories(resolve(root, entry.name));
+                }
+            }
+            for (Entry entry : reused) {
+                final Path target = resolve(root, entry.name);
+                Files.createDirectories(target.getParent());
+                Files.copy(resolve(baseDirectory, entry.name), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            final List<Range> ranges = mergeRanges();
+            progress.startPhase(Progress.Phase.DOWNLOAD, ranges.stream().mapToLong(Range::length).sum());
+            for (Range range : ranges) {
+                if (progress.isCancelled()) {
+                    return;
+                }
+                fetchRange(range, root, progress, limiter);
+            }
+            progress.finishPhase();
+            logger.debug("Extracted {}: {} entries reused, {} fetched", resource.getUrl(), reused.size(),
+                    fetched.size());
+        }
+
+        private void fetchRange(Range range, Path root, ProgressAggregator progress, BandwidthLimiter limiter)
+                throws IOException {
+            final Request request = newRangeRequest(resource, range.first, range.end - 1);
+            final Call call = client.newCall(request);
+            try (ProgressListener.Registration abort = progress.onCancel(call::cancel);
+                 Response response = call.execute()) {
+                final ResponseBody body = checkPartialResponse(response, resource);
+                final InputStream in = new BufferedInputStream(new DownloadUtils.ProgressInputStream(body.byteStream(),
+                        null, ContentHasher.forStream(Set.of()), limiter, progress), DownloadUtils.BUFFER_SIZE);
+                long position = range.first;
+                for (Entry entry : range.entries) {
+                    while (position < entry.offset) {
+                        final long skipped = in.skip(entry.offset - position);
+                        if (skipped <= 0) {
+                            throw new IOException("Unexpected end of range response from " + resource.getUrl());
+                        }
+                        position += skipped;
+                    }
+                    position += extractEntry(entry, new DataInputStream(in), resolve(root, entry.name));
+                }
+            }
+        }
+
+        /**
+         * Extract the entry whose local file record starts at the current position of {@code in}.
+         *
+         * @return the number of bytes read from {@code in}
+         */
+        private long extractEntry(Entry entry, DataInputStream in, Path target) throws IOException {
+            final byte[] header = new byte[LOCAL_FILE_HEADER_SIZE];
+            in.readFully(header);
+            final ByteBuffer local = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            if (local.getInt(0) != LOCAL_FILE_HEADER) {
+                throw new IOException("Malformed local file header of " + entry.name);
+            }
+            final int skip = Short.toUnsignedInt(local.getShort(26)) + Short.toUnsignedInt(local.getShort(28));
+            in.readFully(new byte[skip]);
+
+            if (entry.method != STORED && entry.method != DEFLATED) {
+                throw new IOException("Unsupported compression method " + entry.method + " of " + entry.name);
+            }
+            final InputStream data = new BoundedInputStream(in, entry.compressedSize);
+            final Inflater inflater = new Inflater(true);
+            final CRC32 crc = new CRC32();
+            final long written;
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = new CheckedOutputStream(Files.newOutputStream(target), crc)) {
+                final InputStream content = entry.method == DEFLATED
+                        ? new InflaterInputStream(data, inflater, DownloadUtils.BUFFER_SIZE) : data;
+                written = content.transferTo(out);
+                // drain what the inflater did not need
+                data.transferTo(OutputStream.nullOutputStream());
+            } finally {
+                inflater.end();
+            }
+            if (written != entry.size || crc.getValue() != entry.crc) {
+                throw new IOException("Fetched entry does not match the central directory: " + entry.name);
+            }
+            return LOCAL_FILE_HEADER_SIZE + skip + entry.compressedSize;
+        }
+
+        /**
+         * The byte ranges to request for the fetched entries, with entries close to each other in one range.
+         */
+        private List<Range> mergeRanges() {
+            final List<Entry> sorted = new ArrayList<>(fetched);
+            sorted.sort(Comparator.comparingLong(entry -> entry.offset));
+            final List<Range> ranges = new ArrayList<>();
+            Range current = null;
+            for (Entry entry : sorted) {
+                if (current == null || entry.offset - current.end > MERGE_GAP) {
+                    current = new Range(entry.offset);
+                    ranges.add(current);
+                }
+                current.entries.add(entry);
+                current.end = Math.min(entry.end, centralDirectoryOffset);
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * A byte range of the archive, from {@code first} (inclusive) to {@code end} (exclusive).
+     */
+    private static final class Range {
+        private final long first;
+        private long end;
+        private final List<Entry> entries = new ArrayList<>();
+
+        Range(long first) {
+            this.first = first;
+        }
+
+        long length() {
+            return end - first;
+        }
+    }
+
+    /**
+     * Reads at most {@code limit} bytes of the underlying stream, without closing it.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
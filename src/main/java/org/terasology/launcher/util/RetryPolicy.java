@@ -0,0 +1,86 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * How often, and after which pause, a failed transfer is tried again.
+ * <p>
+ * The pause doubles with every consecutive failure up to a maximum. Only the first half of each pause is fixed, the
+ * second half is random, so that the segments of a download (and launchers hitting the same mirror after an outage) do
+ * not retry in lockstep.
+ */
+final class RetryPolicy {
+
+    static final RetryPolicy DEFAULT = new RetryPolicy(5, Duration.ofMillis(500), Duration.ofSeconds(30),
+            ThreadLocalRandom::current);
+
+    /**
+     * How often the pause checks whether the transfer was cancelled.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private final int maxRetries;
+    private final long baseMillis;
+    private final long maxMillis;
+    private final Supplier<Random> random;
+
+    /**
+     * @param maxRetries the number of consecutive failures which are retried
+     * @param baseDelay  the pause before the first retry, without jitter
+     * @param maxDelay   the longest pause between retries
+     * @param random     the source of the jitter
+     */
+    RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay, Supplier<Random> random) {
+        this.maxRetries = maxRetries;
+        this.baseMillis = baseDelay.toMillis();
+        this.maxMillis = maxDelay.toMillis();
+        this.random = random;
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Whether the given retry (counting from 1) is still allowed.
+     */
+    boolean canRetry(int retry) {
+        return retry <= maxRetries;
+    }
+
+    /**
+     * The pause before the given retry (counting from 1), in milliseconds.
+     */
+    long getDelayMillis(int retry) {
+        final long ceiling = Math.min(maxMillis, baseMillis << Math.min(retry - 1, 30));
+        final long half = ceiling / 2;
+        return half + (long) (random.get().nextDouble() * (ceiling - half));
+    }
+
+    /**
+     * Pause for {@code millis}, or until the transfer is cancelled.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while pausing
+     */
+    static void pause(long millis, BooleanSupplier cancelled) throws InterruptedIOException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining;
+        while (!cancelled.getAsBoolean() && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+}
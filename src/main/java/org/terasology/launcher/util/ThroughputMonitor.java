@@ -0,0 +1,162 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Watches the throughput of a single transfer and gives up on it when the throughput collapses or the transfer stalls.
+ * <p>
+ * The throughput is measured over windows of {@link #WINDOW_NANOS}. The transfer is considered to have collapsed when
+ * a window reaches less than {@link #COLLAPSE_RATIO} of the best window so far. Time spent waiting for the
+ * {@link BandwidthLimiter} does not count, so that a lowered bandwidth limit is not mistaken for a collapse.
+ * <p>
+ * Independently, a transfer which receives less than the minimum throughput over {@link #STALL_NANOS} is considered
+ * stalled, whether or not there is another source. A transfer which receives nothing at all never gets here, it is
+ * caught by the read timeout of the connection, see {@link #STALL_NANOS}.
+ */
+final class ThroughputMonitor {
+
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    static final double COLLAPSE_RATIO = 0.2;
+
+    /**
+     * The window for stall detection, which is also the read timeout for transfers watched for stalls.
+     */
+    static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * The throughput below which a transfer is considered stalled, in bytes per second.
+     */
+    static final long MIN_BYTES_PER_SECOND = 1024;
+
+    private final BooleanSupplier hasAlternative;
+    private final LongSupplier clock;
+    private final long minBytesPerSecond;
+
+    private final long start;
+    private long windowStart;
+    private long windowBytes;
+    private long excludedNanos;
+    private long totalBytes;
+    private long totalExcludedNanos;
+    private double bestBytesPerSecond;
+    private long stallWindowStart;
+    private long stallWindowBytes;
+    private long stallExcludedNanos;
+
+    /**
+     * A monitor without stall detection.
+     *
+     * @param hasAlternative whether there is another source to switch to; without one, a collapse is tolerated
+     * @param clock          the time source, in nanoseconds
+     */
+    ThroughputMonitor(BooleanSupplier hasAlternative, LongSupplier clock) {
+        this(hasAlternative, clock, 0);
+    }
+
+    /**
+     * @param hasAlternative    whether there is another source to switch to; without one, a collapse is tolerated
+     * @param clock             the time source, in nanoseconds
+     * @param minBytesPerSecond the throughput below which the transfer is considered stalled, or {@code 0} to never
+     *                          consider it stalled
+     */
+    ThroughputMonitor(BooleanSupplier hasAlternative, LongSupplier clock, long minBytesPerSecond) {
+        this.hasAlternative = hasAlternative;
+        this.clock = clock;
+        this.minBytesPerSecond = minBytesPerSecond;
+        this.start = clock.getAsLong();
+        this.windowStart = start;
+        this.stallWindowStart = start;
+    }
+
+    /**
+     * Record that {@code bytes} more bytes were received.
+     *
+     * @param bytes           the number of bytes received
+     * @param throttledNanos  the time spent waiting for the bandwidth limiter since the last call
+     * @throws SlowSourceException if the throughput collapsed and there is another source to switch to
+     * @throws StalledException    if the throughput fell below the minimum
+     */
+    void update(long bytes, long throttledNanos) throws SlowSourceException, StalledException {
+        final long now = clock.getAsLong();
+        windowBytes += bytes;
+        totalBytes += bytes;
+        excludedNanos += throttledNanos;
+        totalExcludedNanos += throttledNanos;
+        checkStall(now, bytes, throttledNanos);
+        final long elapsed = now - windowStart - excludedNanos;
+        if (elapsed < WINDOW_NANOS) {
+            return;
+        }
+        final double bytesPerSecond = windowBytes * 1e9 / elapsed;
+        windowStart = now;
+        windowBytes = 0;
+        excludedNanos = 0;
+        if (bytesPerSecond > bestBytesPerSecond) {
+            bestBytesPerSecond = bytesPerSecond;
+        } else if (bytesPerSecond < COLLAPSE_RATIO * bestBytesPerSecond && hasAlternative.getAsBoolean()) {
+            throw new SlowSourceException(String.format("Throughput collapsed to %.0f B/s from %.0f B/s",
+                    bytesPerSecond, bestBytesPerSecond));
+        }
+    }
+
+    private void checkStall(long now, long bytes, long throttledNanos) throws StalledException {
+        if (minBytesPerSecond <= 0) {
+            return;
+        }
+        stallWindowBytes += bytes;
+        stallExcludedNanos += throttledNanos;
+        final long elapsed = now - stallWindowStart - stallExcludedNanos;
+        if (elapsed < STALL_NANOS) {
+            return;
+        }
+        final double bytesPerSecond = stallWindowBytes * 1e9 / elapsed;
+        stallWindowStart = now;
+        stallWindowBytes = 0;
+        stallExcludedNanos = 0;
+        if (bytesPerSecond < minBytesPerSecond) {
+            throw new StalledException(String.format("Transfer stalled at %.0f B/s", bytesPerSecond));
+        }
+    }
+
+    /**
+     * The number of bytes received so far.
+     */
+    long getBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * The time spent receiving data so far, excluding the time spent waiting for the bandwidth limiter.
+     */
+    long getNanos() {
+        return clock.getAsLong() - start - totalExcludedNanos;
+    }
+
+    /**
+     * Thrown when a transfer is abandoned in favor of another source.
+     */
+    static final class SlowSourceException extends IOException {
+        private static final long serialVersionUID = 3787431196532712011L;
+
+        SlowSourceException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when a transfer is abandoned because it stalled.
+     */
+    static final class StalledException extends IOException {
+        private static final long serialVersionUID = -2150436520367165043L;
+
+        StalledException(String message) {
+            super(message);
+        }
+    }
+}
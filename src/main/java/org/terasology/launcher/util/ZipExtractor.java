@@ -0,0 +1,420 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts ZIP archives using several cores.
+ * <p>
+ * The central directory is read once, up front, to validate the entry names and create the whole directory tree
+ * before any file is written. The files are then inflated by a bounded number of workers, which all read from a
+ * single memory mapping of the archive (see {@link MappedZip}) without contending for a reader. Archives which cannot
+ * be mapped, e.g. those of 2 GiB and more, are read through a {@link ZipFile} per worker instead. The workers take the
+ * largest entries first, so that one big file does not keep a single worker busy at the end.
+ * <p>
+ * The size, modification time and CRC-32 of the extracted files are kept in an {@link ExtractionManifest}, so that
+ * {@link #repair} can tell which files changed without reading them.
+ */
+public final class ZipExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZipExtractor.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A listener for extractions which report no progress and cannot be cancelled.
+     */
+    private static final ProgressListener NO_PROGRESS = new ProgressListener() {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private final int threads;
+
+    /**
+     * An extractor using one worker per processor core.
+     */
+    public ZipExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads the maximum number of entries inflated at the same time
+     */
+    public ZipExtractor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed, not " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Extract {@code archive} to {@code outputLocation}, reporting the uncompressed bytes written as
+     * {@link Progress.Phase#EXTRACT} phase.
+     * <p>
+     * Extracting stops early if the progress is cancelled; the files written so far are left in place.
+     *
+     * @param archive        the ZIP file to extract
+     * @param outputLocation where to extract to
+     * @param listener       informed about the progress, and checked for cancellation before each entry
+     * @return {@code true} if the archive was extracted completely, {@code false} if cancelled
+     * @throws IOException if the archive cannot be read, has entries outside of {@code outputLocation}, or the files
+     *                     cannot be written
+     */
+    public boolean extract(Path archive, Path outputLocation, ProgressListener listener) throws IOException {
+        logger.trace("Extracting '{}' to '{}' with up to {} threads", archive, outputLocation, threads);
+        return run(archive, outputLocation, listener, new ExtractionManifest(), false, Set.of());
+    }
+
+    /**
+     * Extract {@code archive} to {@code outputLocation} completely, without reporting progress.
+     *
+     * @see #extract(Path, Path, ProgressListener)
+     */
+    public void extract(Path archive, Path outputLocation) throws IOException {
+        extract(archive, outputLocation, NO_PROGRESS);
+    }
+
+    /**
+     * Bring a directory extracted from {@code archive}, or from an earlier version of it, in line with the archive:
+     * rewrite the files which are missing or differ from their entry in size or CRC-32, and remove the files which are
+     * not in the archive.
+     * <p>
+     * The CRC-32 of a file is taken from the directory's {@link ExtractionManifest} if the file is unchanged since it
+     * was recorded, and computed otherwise. Checking an intact directory thus only reads the central directory and the
+     * file attributes. The files checked or rewritten count towards the {@link Progress.Phase#EXTRACT} phase.
+     *
+     * @param archive   the ZIP file to repair the directory from
+     * @param directory the directory to repair
+     * @param listener  informed about the progress, and checked for cancellation before each entry
+     * @param keep      the names of files in {@code directory} to leave alone even though they are not in the archive
+     * @return {@code true} if the directory was repaired completely, {@code false} if cancelled
+     * @throws IOException if the archive cannot be read, has entries outside of {@code directory}, or the files cannot
+     *                     be read or written
+     */
+    public boolean repair(Path archive, Path directory, ProgressListener listener, Set<String> keep)
+            throws IOException {
+        logger.trace("Repairing '{}' from '{}' with up to {} threads", directory, archive, threads);
+        return run(archive, directory, listener, ExtractionManifest.load(directory), true, keep);
+    }
+
+    private boolean run(Path archive, Path outputLocation, ProgressListener listener, ExtractionManifest manifest,
+                        boolean repair, Set<String> keep) throws IOException {
+        final MappedZip zip;
+        try {
+            zip = MappedZip.open(archive);
+        } catch (ZipException e) {
+            logger.debug("Cannot map '{}', reading it with a ZipFile per worker: {}", archive, e.getMessage());
+            final List<ZipEntry> entries;
+            try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+                entries = zipFile.stream().collect(Collectors.<ZipEntry>toList());
+            }
+            return run(archive, entries, () -> openZipFile(archive), outputLocation, listener, manifest, repair,
+                    keep);
+        }
+        try (zip) {
+            final List<ZipEntry> entries = new ArrayList<>(zip.getEntryCount());
+            for (int entry = 0; entry < zip.getEntryCount(); entry++) {
+                final ZipEntry zipEntry = new ZipEntry(zip.getName(entry));
+                zipEntry.setSize(zip.getSize(entry));
+                zipEntry.setCrc(zip.getCrc(entry));
+                entries.add(zipEntry);
+            }
+            // the mapping is shared by all workers
+            return run(archive, entries, () -> item -> zip.getInputStream(item.entry), outputLocation, listener,
+                    manifest, repair, keep);
+        }
+    }
+
+    private boolean run(Path archive, List<ZipEntry> entries, ReaderFactory readers, Path outputLocation,
+                        ProgressListener listener, ExtractionManifest manifest, boolean repair, Set<String> keep)
+            throws IOException {
+        final ProgressAggregator progress = new ProgressAggregator(listener);
+        final Path root = outputLocation.toAbsolutePath().normalize();
+        final List<Item> files = new ArrayList<>();
+        final Set<Path> directories = new TreeSet<>();
+        directories.add(root);
+        long total = 0;
+        for (int entry = 0; entry < entries.size(); entry++) {
+            final ZipEntry zipEntry = entries.get(entry);
+            final String name = zipEntry.getName();
+            final Path target = root.resolve(name).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("ZIP entry is outside of the target directory: " + name);
+            }
+            if (zipEntry.isDirectory()) {
+                directories.add(target);
+            } else {
+                directories.add(target.getParent());
+                files.add(new Item(entry, name, target, zipEntry.getSize(), zipEntry.getCrc()));
+                total += zipEntry.getSize();
+            }
+        }
+        // parents sort before their children, so each directory is created by a single call
+        for (Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+
+        progress.startPhase(Progress.Phase.EXTRACT, total);
+        files.sort(Comparator.comparingLong((Item item) -> item.size).reversed());
+        final Queue<Item> queue = new ConcurrentLinkedQueue<>(files);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final AtomicInteger written = new AtomicInteger();
+        final int workers = Math.max(1, Math.min(threads, files.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("extract-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(() -> {
+                    work(readers, queue, progress, manifest, repair, written, failed);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not extract " + archive, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.set(true);
+            return false;
+        } finally {
+            executor.shutdownNow();
+            // the workers stop after their current entry; the archive must not be closed before
+            awaitTermination(executor);
+            // the files written so far are recorded even if extracting did not finish, so that a repair can skip them
+            storeQuietly(manifest, root);
+        }
+        if (progress.isCancelled()) {
+            return false;
+        }
+        if (repair) {
+            final int removed = removeExtraneous(root, files, directories, manifest, keep);
+            manifest.store(root);
+            logger.info("Repaired '{}': rewrote {} of {} files, removed {}", root, written.get(), files.size(),
+                    removed);
+        }
+        progress.finishPhase();
+        return true;
+    }
+
+    private static void work(ReaderFactory readers, Queue<Item> queue, ProgressAggregator progress,
+                             ExtractionManifest manifest, boolean repair, AtomicInteger written, AtomicBoolean failed)
+            throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (EntryReader reader = readers.newReader()) {
+            Item item;
+            while (!failed.get() && !progress.isCancelled() && (item = queue.poll()) != null) {
+                if (repair && isIntact(item, manifest, buffer, progress)) {
+                    continue;
+                }
+                try (InputStream in = reader.open(item);
+                     OutputStream out = Files.newOutputStream(item.target)) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, n);
+                        progress.advance(n);
+                    }
+                }
+                manifest.record(item.name, item.target, item.crc);
+                written.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the file of the given entry has the entry's size and CRC-32. The file counts as processed if it does.
+     */
+    private static boolean isIntact(Item item, ExtractionManifest manifest, byte[] buffer,
+                                    ProgressAggregator progress) throws IOException {
+        if (!Files.isRegularFile(item.target) || Files.size(item.target) != item.size) {
+            return false;
+        }
+        final Long recorded = manifest.getCrc(item.name, item.target).orElse(null);
+        if (recorded != null) {
+            if (recorded == item.crc) {
+                progress.advance(item.size);
+                return true;
+            }
+            return false;
+        }
+        final CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(item.target)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        if (crc.getValue() != item.crc) {
+            return false;
+        }
+        progress.advance(item.size);
+        manifest.record(item.name, item.target, item.crc);
+        return true;
+    }
+
+    /**
+     * Remove the files and directories in {@code root} which are not in the archive.
+     *
+     * @return the number of files removed
+     */
+    private static int removeExtraneous(Path root, List<Item> files, Set<Path> directories,
+                                        ExtractionManifest manifest, Set<String> keep) throws IOException {
+        final Set<Path> wanted = files.stream().map(item -> item.target).collect(Collectors.toCollection(HashSet::new));
+        // archives need not have entries for the directories, so their ancestors are wanted as well
+        for (Path directory : directories) {
+            Path path = directory;
+            while (path.startsWith(root) && wanted.add(path)) {
+                path = path.getParent();
+            }
+        }
+        wanted.add(root.resolve(ExtractionManifest.FILE_NAME));
+        keep.forEach(name -> wanted.add(root.resolve(name)));
+        final List<Path> extraneous;
+        try (Stream<Path> paths = Files.walk(root)) {
+            // children before their parents, so that directories are empty when they are removed
+            extraneous = paths.filter(path -> !wanted.contains(path))
+                    .sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList());
+        }
+        int removed = 0;
+        for (Path path : extraneous) {
+            logger.debug("Removing '{}', which is not in the archive", path);
+            if (Files.isRegularFile(path)) {
+                manifest.remove(root.relativize(path).toString().replace('\\', '/'));
+                removed++;
+            }
+            Files.delete(path);
+        }
+        return removed;
+    }
+
+    private static EntryReader openZipFile(Path archive) throws IOException {
+        final ZipFile zipFile = new ZipFile(archive.toFile());
+        return new EntryReader() {
+            @Override
+            public InputStream open(Item item) throws IOException {
+                final ZipEntry entry = zipFile.getEntry(item.name);
+                if (entry == null) {
+                    throw new ZipException("Entry " + item.name + " disappeared from " + archive);
+                }
+                return zipFile.getInputStream(entry);
+            }
+
+            @Override
+            public void close() throws IOException {
+                zipFile.close();
+            }
+        };
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void storeQuietly(ExtractionManifest manifest, Path root) {
+        try {
+            manifest.store(root);
+        } catch (IOException e) {
+            logger.warn("Could not store the manifest of '{}'", root, e);
+        }
+    }
+
+    /**
+     * Reads the content of the entries for a single worker.
+     */
+    @FunctionalInterface
+    private interface EntryReader extends Closeable {
+        InputStream open(Item item) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReaderFactory {
+        EntryReader newReader() throws IOException;
+    }
+
+    private static final class Item {
+        private final int entry;
+        private final String name;
+        private final Path target;
+        private final long size;
+        private final long crc;
+
+        Item(int entry, String name, Path target, long size, long crc) {
+            this.entry = entry;
+            this.name = name;
+            this.target = target;
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+}
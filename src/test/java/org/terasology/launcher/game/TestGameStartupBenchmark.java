@@ -0,0 +1,124 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.game;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.Benchmark;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Measures what the game pays for its jars at start: loading all classes of its libraries, with the jars as they come
+ * out of the game package and as repacked by the {@link JarOptimizer}.
+ * <p>
+ * Real jars are needed to load classes from, so the launcher's own dependencies stand in for the game's libraries.
+ * Each run loads the classes through a new class loader, as a new game process would.
+ */
+class TestGameStartupBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 15;
+
+    @TempDir
+    static Path tempFolder;
+
+    private static Path original;
+    private static Path optimized;
+
+    @BeforeAll
+    static void setupInstallations() throws IOException, URISyntaxException {
+        original = tempFolder.resolve("original");
+        optimized = tempFolder.resolve("optimized");
+        for (Class<?> library : List.of(ImmutableList.class, Gson.class)) {
+            final Path jar = Path.of(library.getProtectionDomain().getCodeSource().getLocation().toURI());
+            for (Path installation : List.of(original, optimized)) {
+                Files.createDirectories(installation.resolve("libs"));
+                Files.copy(jar, installation.resolve("libs").resolve(jar.getFileName()));
+            }
+        }
+        new JarOptimizer(Runtime.getRuntime().availableProcessors()).optimize(optimized);
+    }
+
+    @Benchmark
+    void benchmarkClassLoading() throws IOException {
+        report("class loading, jars as packaged", measure(original));
+        report("class loading, optimized jars", measure(optimized));
+        System.out.printf("size of the jars: %d KiB as packaged, %d KiB optimized%n", sizeOf(original) / 1024,
+                sizeOf(optimized) / 1024);
+    }
+
+    private static long[] measure(Path installation) throws IOException {
+        final List<Path> jars = listJars(installation);
+        final List<String> classes = new ArrayList<>();
+        for (Path jar : jars) {
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                zip.stream().map(ZipEntry::getName)
+                        .filter(name -> name.endsWith(".class") && !name.contains("-info"))
+                        .map(name -> name.substring(0, name.length() - ".class".length()).replace('/', '.'))
+                        .forEach(classes::add);
+            }
+        }
+        final URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = jars.get(i).toUri().toURL();
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            loadAll(urls, classes);
+        }
+        final long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            nanos[i] = loadAll(urls, classes);
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static long loadAll(URL[] urls, List<String> classes) throws IOException {
+        final long start = System.nanoTime();
+        try (URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+            for (String name : classes) {
+                try {
+                    Class.forName(name, false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // optional dependencies of the library, which the game would not use either
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<Path> listJars(Path installation) throws IOException {
+        try (var files = Files.list(installation.resolve("libs"))) {
+            final List<Path> jars = new ArrayList<>();
+            files.filter(file -> file.toString().endsWith(".jar")).sorted().forEach(jars::add);
+            return jars;
+        }
+    }
+
+    private static long sizeOf(Path installation) throws IOException {
+        long size = 0;
+        for (Path jar : listJars(installation)) {
+            size += Files.size(jar);
+        }
+        return size;
+    }
+
+    private static void report(String name, long[] nanos) {
+        System.out.printf("%-35s median %7.1f ms (min %7.1f ms, max %7.1f ms)%n", name,
+                nanos[nanos.length / 2] / 1e6, nanos[0] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.game;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestJarOptimizer {
+
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2021, 3, 14, 15, 9, 26);
+
+    @TempDir
+    Path installation;
+
+    private final Map<String, byte[]> content = new LinkedHashMap<>();
+    private Path gameJar;
+    private Path otherJar;
+
+    @BeforeEach
+    void setup() throws IOException {
+        final Random random = new Random(5);
+        content.put("org/terasology/engine/Main.class", new byte[]{(byte) 0xca, (byte) 0xfe, 0, 1, 2, 3});
+        content.put("assets/big.json", "{\"value\": 1}\n".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        final byte[] texture = new byte[100_000];
+        random.nextBytes(texture);
+        content.put("assets/texture.png", texture);
+        content.put("org/terasology/engine/Game.class", new byte[]{(byte) 0xca, (byte) 0xfe, 4, 5});
+        content.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nMain-Class: org.terasology.engine.Main\r\n\r\n"
+                .getBytes(StandardCharsets.UTF_8));
+        gameJar = writeJar(installation.resolve("libs/Terasology.jar"));
+        otherJar = writeJar(installation.resolve("modules/Core.jar"));
+    }
+
+    @Test
+    void testOptimize() throws IOException {
+        new JarOptimizer(2).optimize(installation);
+
+        assertTrue(JarOptimizer.isOptimized(installation));
+        assertEquals(List.of("libs/Terasology.jar"), Files.readAllLines(installation.resolve(JarOptimizer.RECORD_FILE))
+                .stream().map(line -> line.split("\t")[0]).collect(Collectors.toList()));
+        final List<String> names = new ArrayList<>();
+        try (ZipFile jar = new ZipFile(gameJar.toFile())) {
+            final Enumeration<? extends ZipEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                final int expected = entry.getName().equals("assets/big.json") ? ZipEntry.DEFLATED : ZipEntry.STORED;
+                assertEquals(expected, entry.getMethod(), entry.getName());
+                assertEquals(ENTRY_TIME, entry.getTimeLocal(), entry.getName());
+                try (InputStream in = jar.getInputStream(entry)) {
+                    assertArrayEquals(content.get(entry.getName()), in.readAllBytes());
+                }
+            }
+        }
+        assertEquals(List.of("META-INF/MANIFEST.MF", "org/terasology/engine/Game.class",
+                "org/terasology/engine/Main.class", "assets/big.json", "assets/texture.png"), names);
+        try (JarInputStream jar = new JarInputStream(Files.newInputStream(gameJar))) {
+            final Manifest manifest = jar.getManifest();
+            assertNotNull(manifest);
+            assertEquals("org.terasology.engine.Main", manifest.getMainAttributes().getValue("Main-Class"));
+        }
+        assertAllDeflated(otherJar);
+    }
+
+    @Test
+    void testRestore() throws IOException {
+        final JarOptimizer optimizer = new JarOptimizer(2);
+        optimizer.optimize(installation);
+
+        optimizer.restore(installation);
+
+        assertFalse(JarOptimizer.isOptimized(installation));
+        assertAllDeflated(gameJar);
+        try (JarFile jar = new JarFile(gameJar.toFile())) {
+            for (Map.Entry<String, byte[]> file : content.entrySet()) {
+                try (InputStream in = jar.getInputStream(jar.getEntry(file.getKey()))) {
+                    assertArrayEquals(file.getValue(), in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testOptimizeSkipsRepackedJars() throws IOException {
+        final JarOptimizer optimizer = new JarOptimizer(1);
+        optimizer.optimize(installation);
+        final FileTime modified = Files.getLastModifiedTime(gameJar);
+
+        optimizer.optimize(installation);
+
+        assertEquals(modified, Files.getLastModifiedTime(gameJar));
+    }
+
+    @Test
+    void testReplacedJarIsNoLongerOptimized() throws IOException {
+        final JarOptimizer optimizer = new JarOptimizer(1);
+        optimizer.optimize(installation);
+
+        // as a repair from the game package does
+        writeJar(gameJar);
+
+        assertFalse(JarOptimizer.isOptimized(installation));
+        optimizer.optimize(installation);
+        assertTrue(JarOptimizer.isOptimized(installation));
+        try (ZipFile jar = new ZipFile(gameJar.toFile())) {
+            assertEquals(ZipEntry.STORED, jar.getEntry("org/terasology/engine/Main.class").getMethod());
+        }
+    }
+
+    private Path writeJar(Path jar) throws IOException {
+        Files.createDirectories(jar.getParent());
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> file : content.entrySet()) {
+                final ZipEntry entry = new ZipEntry(file.getKey());
+                entry.setTimeLocal(ENTRY_TIME);
+                zip.putNextEntry(entry);
+                zip.write(file.getValue());
+                zip.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static void assertAllDeflated(Path jar) throws IOException {
+        try (ZipFile file = new ZipFile(jar.toFile())) {
+            file.stream().forEach(entry -> assertEquals(ZipEntry.DEFLATED, entry.getMethod(), entry.getName()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.game;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.Profile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestStagingArea {
+
+    private static final GameIdentifier RELEASE = new GameIdentifier("5.1.0", Build.STABLE, Profile.OMEGA);
+
+    @TempDir
+    Path tempFolder;
+
+    private Path tempDirectory;
+    private Path installDirectory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDirectory = Files.createDirectories(tempFolder.resolve("temp"));
+        installDirectory = Files.createDirectories(tempFolder.resolve("games"));
+    }
+
+    @Test
+    void testCommit() throws IOException {
+        final StagingArea stagingArea = new StagingArea(tempDirectory, installDirectory);
+        final Path staging = stagingArea.newDirectory(RELEASE);
+        assertTrue(staging.startsWith(tempDirectory));
+        Files.createDirectories(staging.resolve("libs"));
+        Files.writeString(staging.resolve("libs/Terasology.jar"), "game");
+        final Path target = installDirectory.resolve("OMEGA/STABLE/5.1.0");
+        assertFalse(StagingArea.isInstalled(target));
+
+        stagingArea.commit(staging, target);
+        stagingArea.release(staging);
+
+        assertEquals("game", Files.readString(target.resolve("libs/Terasology.jar")));
+        assertTrue(Files.exists(target.resolve(StagingArea.INSTALLED_MARKER)));
+        assertTrue(StagingArea.isInstalled(target));
+        assertFalse(Files.exists(staging));
+    }
+
+    @Test
+    void testCommitReadOnlyFile() throws IOException {
+        final StagingArea stagingArea = new StagingArea(tempDirectory, installDirectory);
+        final Path staging = stagingArea.newDirectory(RELEASE);
+        final Path jar = Files.createDirectories(staging.resolve("libs")).resolve("Terasology.jar");
+        Files.writeString(jar, "game");
+        assertTrue(jar.toFile().setReadOnly());
+        final Path target = installDirectory.resolve("OMEGA/STABLE/5.1.0");
+
+        stagingArea.commit(staging, target);
+        stagingArea.release(staging);
+
+        assertEquals("game", Files.readString(target.resolve("libs/Terasology.jar")));
+        assertTrue(StagingArea.isInstalled(target));
+    }
+
+    @Test
+    void testReplacesIncompleteInstallation() throws IOException {
+        final Path target = installDirectory.resolve("OMEGA/STABLE/5.1.0");
+        final Path leftover = Files.createDirectories(target.resolve("modules"));
+        Files.writeString(leftover.resolve("half-written.jar"), "");
+        assertFalse(StagingArea.isInstalled(target));
+
+        final StagingArea stagingArea = new StagingArea(null, installDirectory);
+        final Path staging = stagingArea.newDirectory(RELEASE);
+        assertTrue(staging.startsWith(installDirectory.resolve(StagingArea.STAGING_DIRECTORY)));
+        Files.createDirectories(staging);
+        Files.writeString(staging.resolve("Terasology.jar"), "game");
+        stagingArea.commit(staging, target);
+
+        assertFalse(Files.exists(leftover));
+        assertTrue(StagingArea.isInstalled(target));
+        assertEquals("game", Files.readString(target.resolve("Terasology.jar")));
+        try (Stream<Path> aside = Files.list(installDirectory.resolve(StagingArea.STAGING_DIRECTORY))) {
+            assertEquals(0, aside.count());
+        }
+    }
+
+    @Test
+    void testUnmarkedInstallationIsIncomplete() throws IOException {
+        final Path legacy = Files.createDirectories(installDirectory.resolve("OMEGA/STABLE/5.0.0/libs"));
+        Files.writeString(legacy.resolve("Terasology.jar"), "game");
+
+        assertFalse(StagingArea.isInstalled(legacy.getParent()));
+        assertFalse(Files.exists(legacy.getParent().resolve(StagingArea.INSTALLED_MARKER)));
+    }
+
+    @Test
+    void testCleanUp() throws IOException {
+        final Path interrupted = Files.createDirectories(tempDirectory.resolve(StagingArea.STAGING_DIRECTORY)
+                .resolve("OMEGA-STABLE-5.0.0-interrupted/libs"));
+        final Path copy = Files.createDirectories(installDirectory.resolve(StagingArea.STAGING_DIRECTORY)
+                .resolve("OMEGA-STABLE-5.0.0-copy"));
+        final StagingArea stagingArea = new StagingArea(tempDirectory, installDirectory);
+        final Path active = Files.createDirectories(stagingArea.newDirectory(RELEASE));
+
+        stagingArea.cleanUp();
+
+        assertFalse(Files.exists(interrupted.getParent()));
+        assertFalse(Files.exists(copy));
+        assertTrue(Files.exists(active));
+    }
+}
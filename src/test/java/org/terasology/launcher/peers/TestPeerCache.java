@@ -0,0 +1,163 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.peers;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+import org.terasology.launcher.util.BandwidthLimiter;
+import org.terasology.launcher.util.DownloadSources;
+import org.terasology.launcher.util.DownloadUtils;
+import org.terasology.launcher.util.FileDigest;
+import org.terasology.launcher.util.HostStatistics;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs several launchers' peer caches on localhost, connected through configured peer lists.
+ */
+class TestPeerCache {
+
+    private static final String PACKAGE = "terasology-release-1.0.0-stable.zip";
+    private static final int SIZE = 3 * 1024 * 1024 + 17;
+
+    @TempDir
+    Path tempFolder;
+
+    private final OkHttpClient client = new OkHttpClient();
+    private final List<PeerCache> peers = new ArrayList<>();
+    private byte[] content;
+
+    @BeforeEach
+    void setup() {
+        content = new byte[SIZE];
+        new Random(17).nextBytes(content);
+    }
+
+    @AfterEach
+    void cleanup() {
+        peers.forEach(PeerCache::close);
+    }
+
+    @Test
+    void testFetchFromPeer() throws Exception {
+        final PeerCache seeder = startPeer("seeder", List.of());
+        Files.write(tempFolder.resolve("seeder").resolve(PACKAGE), content);
+        final PeerCache empty = startPeer("empty", List.of());
+        final int unused = unusedPort();
+        final PeerCache leecher = startPeer("leecher",
+                List.of("localhost:" + empty.getPort(), "localhost:" + unused, "localhost:" + seeder.getPort()));
+
+        final List<URL> urls = leecher.locate(client, PACKAGE);
+        assertEquals(List.of(new URL("http://localhost:" + seeder.getPort() + "/" + PACKAGE)), urls);
+
+        final Path target = tempFolder.resolve("leecher").resolve(PACKAGE);
+        DownloadUtils.downloadToFile(client,
+                new DownloadSources(urls, new HostStatistics()), target, new ProgressAggregator(new StubListener()), 4,
+                Set.of(FileDigest.SHA_256), BandwidthLimiter.unlimited()).get();
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(SIZE, seeder.getServedBytes());
+    }
+
+    @Test
+    void testServesOnlyCompletePackages() throws IOException {
+        final PeerCache seeder = startPeer("seeder", List.of());
+        final Path cache = tempFolder.resolve("seeder");
+        Files.write(cache.resolve(PACKAGE), content);
+        Files.write(cache.resolve(PACKAGE + ".part"), content);
+        Files.writeString(cache.resolve("mirror-statistics.properties"), "");
+        Files.write(tempFolder.resolve("outside.zip"), content);
+
+        final String base = "http://localhost:" + seeder.getPort() + "/";
+        assertEquals(200, get(base + PACKAGE, null).code());
+        assertEquals(404, get(base + PACKAGE + ".part", null).code());
+        assertEquals(404, get(base + "mirror-statistics.properties", null).code());
+        assertEquals(404, get(base + "..%2Foutside.zip", null).code());
+        assertEquals(List.of(), startPeer("leecher", List.of("localhost:" + seeder.getPort()))
+                .locate(client, PACKAGE + ".part"));
+    }
+
+    @Test
+    void testServesRanges() throws IOException {
+        final PeerCache seeder = startPeer("seeder", List.of());
+        Files.write(tempFolder.resolve("seeder").resolve(PACKAGE), content);
+        final String url = "http://localhost:" + seeder.getPort() + "/" + PACKAGE;
+
+        try (Response response = client.newCall(new Request.Builder().url(url)
+                .header("Range", "bytes=1000-1999").build()).execute()) {
+            assertEquals(206, response.code());
+            assertEquals("bytes 1000-1999/" + SIZE, response.header("Content-Range"));
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), response.body().bytes());
+        }
+        try (Response response = client.newCall(new Request.Builder().url(url)
+                .header("Range", "bytes=-10").build()).execute()) {
+            assertArrayEquals(Arrays.copyOfRange(content, SIZE - 10, SIZE), response.body().bytes());
+        }
+        try (Response response = client.newCall(new Request.Builder().url(url)
+                .header("Range", "bytes=0-9").header("If-Range", "\"changed\"").build()).execute()) {
+            assertEquals(200, response.code());
+            assertEquals(SIZE, response.body().bytes().length);
+        }
+        assertEquals(416, get(url, "bytes=" + SIZE + "-").code());
+        assertTrue(seeder.getServedBytes() > 0);
+    }
+
+    private PeerCache startPeer(String name, List<String> configuredPeers) throws IOException {
+        final Path cache = Files.createDirectories(tempFolder.resolve(name));
+        final PeerCache peer = PeerCache.start(cache, 0, configuredPeers, false);
+        peers.add(peer);
+        return peer;
+    }
+
+    private Response get(String url, String range) throws IOException {
+        final Request.Builder request = new Request.Builder().url(url);
+        if (range != null) {
+            request.header("Range", range);
+        }
+        try (Response response = client.newCall(request.build()).execute()) {
+            return response;
+        }
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class StubListener implements ProgressListener {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -141,6 +141,12 @@ final class JenkinsPayload {
                     "          \"relativePath\": \"distros/omega/versionInfo.properties\"\n" +
                     "        }\n" +
                     "      ],\n" +
+                    "      \"fingerprint\": [\n" +
+                    "        {\n" +
+                    "          \"fileName\": \"TerasologyOmega.zip\",\n" +
+                    "          \"hash\": \"5F4DCC3B5AA765D61D8327DEB882CF99\"\n" +
+                    "        }\n" +
+                    "      ],\n" +
                     "      \"number\": 1,\n" +
                     "      \"result\": \"SUCCESS\",\n" +
                     "      \"timestamp\": 1604285977306,\n" +
@@ -12,6 +12,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.Checksum;
 import org.terasology.launcher.model.GameIdentifier;
 import org.terasology.launcher.model.GameRelease;
 import org.terasology.launcher.model.Profile;
@@ -21,6 +22,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -103,6 +105,19 @@ class JenkinsRepositoryAdapterTest {
         );
     }
 
+    @Test
+    @DisplayName("use the Jenkins fingerprint of the game artifact as checksum")
+    void useFingerprintAsChecksum() {
+        Properties versionInfo = new Properties();
+        versionInfo.setProperty("displayVersion", "alpha 42 (preview)");
+
+        final JenkinsClient stubClient = new StubJenkinsClient(url -> validResult, url -> versionInfo);
+        final JenkinsRepositoryAdapter adapter = new JenkinsRepositoryAdapter(Profile.OMEGA, Build.STABLE, stubClient);
+
+        assertEquals(Optional.of(new Checksum("MD5", "5f4dcc3b5aa765d61d8327deb882cf99")),
+                adapter.fetchReleases().get(0).getChecksum());
+    }
+
     @ParameterizedTest(name = "{displayName} - [{index}] {arguments}")
     @DisplayName("skip incomplete API results")
     @MethodSource("incompleteResults")
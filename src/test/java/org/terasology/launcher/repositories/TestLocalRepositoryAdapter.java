@@ -0,0 +1,162 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.repositories;
+
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.model.Profile;
+import org.terasology.launcher.settings.Settings;
+import org.terasology.launcher.tasks.ProgressListener;
+import org.terasology.launcher.util.FileDigest;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the game manager records installed releases on the JavaFX application thread
+@ExtendWith(ApplicationExtension.class)
+class TestLocalRepositoryAdapter {
+
+    private static final String STABLE = "terasology-omega-5.1.0-stable.zip";
+    private static final String NIGHTLY = "terasology-engine-5.2.0-SNAPSHOT-nightly.zip";
+    private static final String CORRUPT = "terasology-omega-5.0.0-stable.zip";
+    private static final String UNVERIFIED = "terasology-omega-4.0.0-stable.zip";
+
+    @TempDir
+    Path tempFolder;
+
+    private Path cacheDirectory;
+    private Path bundle;
+
+    @BeforeEach
+    void setup() throws IOException {
+        cacheDirectory = Files.createDirectories(tempFolder.resolve("cache"));
+        bundle = Files.createDirectories(tempFolder.resolve("bundle"));
+    }
+
+    @Test
+    void testParseFileName() {
+        final GameIdentifier id = new GameIdentifier("5.2.0-SNAPSHOT", Build.NIGHTLY, Profile.ENGINE);
+        assertEquals(Optional.of(id), LocalRepositoryAdapter.parseFileName(GameManager.getFileNameFor(id)));
+        assertEquals(Optional.empty(), LocalRepositoryAdapter.parseFileName("TerasologyOmega.zip"));
+    }
+
+    @Test
+    void testImportPackages() throws Exception {
+        final byte[] stable = writePackage(STABLE, 1);
+        final byte[] nightly = writePackage(NIGHTLY, 2);
+        writePackage(CORRUPT, 3);
+        writePackage(UNVERIFIED, 4);
+        Files.writeString(bundle.resolve(LocalRepositoryAdapter.CHECKSUMS_FILE),
+                sha256(stable) + "  " + STABLE + "\n" + sha256(new byte[]{0}) + " *" + CORRUPT + "\n");
+        final Path nightlyFile = bundle.resolve(NIGHTLY);
+        FileDigest.of(nightlyFile, Map.of(FileDigest.SHA_256, sha256(nightly))).store(nightlyFile);
+        Files.writeString(bundle.resolve("readme.zip"), "not a game package");
+
+        final LocalRepositoryAdapter repository = new LocalRepositoryAdapter(cacheDirectory);
+        final List<GameRelease> imported = repository.importPackages(List.of(bundle));
+
+        assertEquals(Set.of(STABLE, NIGHTLY), fileNames(imported));
+        assertArrayEquals(stable, Files.readAllBytes(cacheDirectory.resolve(STABLE)));
+        assertEquals(Optional.of(sha256(stable)), FileDigest.load(cacheDirectory.resolve(STABLE))
+                .filter(digest -> digest.isCurrent(cacheDirectory.resolve(STABLE)))
+                .flatMap(digest -> digest.get(FileDigest.SHA_256)));
+        assertFalse(Files.exists(cacheDirectory.resolve(CORRUPT)));
+        assertFalse(Files.exists(cacheDirectory.resolve(UNVERIFIED)));
+        try (var files = Files.list(cacheDirectory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".import")));
+        }
+
+        final List<GameRelease> fetched = new LocalRepositoryAdapter(cacheDirectory).fetchReleases();
+        assertEquals(Set.of(STABLE, NIGHTLY), fileNames(fetched));
+        final GameRelease release = fetched.stream()
+                .filter(r -> r.getId().getBuild() == Build.STABLE)
+                .findFirst().orElseThrow();
+        assertTrue(release.getChecksum().orElseThrow().matches(sha256(stable)));
+        assertEquals(cacheDirectory.resolve(STABLE).toUri().toURL(), release.getUrl());
+
+        Files.delete(cacheDirectory.resolve(NIGHTLY));
+        assertEquals(Set.of(STABLE), fileNames(repository.fetchReleases()));
+    }
+
+    @Test
+    void testInstallWithoutMirrors() throws Exception {
+        final Path source = bundle.resolve(STABLE);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(source))) {
+            zip.putNextEntry(new ZipEntry("libs/Terasology.jar"));
+            zip.write("not really a jar".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        Files.writeString(bundle.resolve(LocalRepositoryAdapter.CHECKSUMS_FILE),
+                sha256(Files.readAllBytes(source)) + "  " + STABLE + "\n");
+        final GameRelease release = new LocalRepositoryAdapter(cacheDirectory).importPackages(List.of(source)).get(0);
+        final Settings settings = Settings.getDefault();
+        assertTrue(settings.downloadMirrors.isEmpty());
+        final Path installDirectory = Files.createDirectories(tempFolder.resolve("games"));
+        final GameManager gameManager = new GameManager(cacheDirectory, installDirectory, settings, new OkHttpClient());
+
+        gameManager.install(release, new ProgressListener() {
+            @Override
+            public void update() {
+            }
+
+            @Override
+            public void update(int progress) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+
+        assertEquals("not really a jar", Files.readString(
+                gameManager.getInstallDirectory(release.getId()).resolve("libs/Terasology.jar")));
+    }
+
+    private byte[] writePackage(String name, int seed) throws IOException {
+        final byte[] content = new byte[100_000 + seed];
+        new Random(seed).nextBytes(content);
+        Files.write(bundle.resolve(name), content);
+        return content;
+    }
+
+    private static Set<String> fileNames(List<GameRelease> releases) {
+        return releases.stream()
+                .map(release -> GameManager.getFileNameFor(release.getId()))
+                .collect(Collectors.toSet());
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance(FileDigest.SHA_256).digest(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,207 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.spf4j.log.Level;
+import org.spf4j.test.log.LogAssert;
+import org.spf4j.test.log.TestLoggers;
+import org.spf4j.test.matchers.LogMatchers;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.model.Profile;
+import org.terasology.launcher.model.ReleaseMetadata;
+import org.terasology.launcher.util.BandwidthLimiter;
+import org.terasology.launcher.util.DownloadException;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TestInstallScheduler {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private GameManager gameManager;
+    private InstallScheduler scheduler;
+    private List<String> fetched;
+    private CountDownLatch blocker;
+
+    @BeforeEach
+    void setup() throws Exception {
+        gameManager = mock(GameManager.class);
+        when(gameManager.newBandwidthLimiter(anyLong())).thenReturn(BandwidthLimiter.unlimited());
+        fetched = new CopyOnWriteArrayList<>();
+        blocker = new CountDownLatch(0);
+        doAnswer(invocation -> {
+            final GameRelease release = invocation.getArgument(0);
+            fetched.add(release.getId().getDisplayVersion());
+            if (release.getId().getDisplayVersion().equals("blocking")) {
+                blocker.await();
+            }
+            return false;
+        }).when(gameManager).fetch(any(), any(), any(), anyBoolean());
+        scheduler = new InstallScheduler(gameManager, 1, 1, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testFetchThenExtract() throws Exception {
+        final InstallJob job = scheduler.submit(release("1"), 0);
+
+        assertEquals(InstallJob.State.SUCCEEDED, await(job));
+        verify(gameManager).extract(eq(job.getRelease()), eq(job));
+        assertFalse(scheduler.hasActiveJobs());
+    }
+
+    @Test
+    void testStreamedInstallSkipsExtraction() throws Exception {
+        doReturn(true).when(gameManager).fetch(any(), any(), any(), anyBoolean());
+        final InstallJob job = scheduler.submit(release("1"), 0);
+
+        assertEquals(InstallJob.State.SUCCEEDED, await(job));
+        verify(gameManager, never()).extract(any(), any());
+    }
+
+    @Test
+    void testHigherPriorityStartsFirst() throws Exception {
+        blocker = new CountDownLatch(1);
+        final InstallJob first = scheduler.submit(release("blocking"), 0);
+        final InstallJob low = scheduler.submit(release("low"), 0);
+        final InstallJob high = scheduler.submit(release("high"), 5);
+        blocker.countDown();
+
+        await(first);
+        await(low);
+        await(high);
+        assertEquals(List.of("blocking", "high", "low"), fetched);
+    }
+
+    @Test
+    void testReprioritizeQueuedJob() throws Exception {
+        blocker = new CountDownLatch(1);
+        final InstallJob first = scheduler.submit(release("blocking"), 0);
+        final InstallJob second = scheduler.submit(release("second"), 0);
+        final InstallJob third = scheduler.submit(release("third"), 0);
+        scheduler.reprioritize(third, 1);
+        blocker.countDown();
+
+        await(first);
+        await(second);
+        await(third);
+        assertEquals(List.of("blocking", "third", "second"), fetched);
+    }
+
+    @Test
+    void testCancelQueuedJob() throws Exception {
+        blocker = new CountDownLatch(1);
+        final InstallJob first = scheduler.submit(release("blocking"), 0);
+        final InstallJob second = scheduler.submit(release("second"), 0);
+        scheduler.cancel(second);
+        blocker.countDown();
+
+        assertEquals(InstallJob.State.CANCELLED, await(second));
+        assertEquals(InstallJob.State.SUCCEEDED, await(first));
+        assertEquals(List.of("blocking"), fetched);
+    }
+
+    @Test
+    void testCancelRunningJob() throws Exception {
+        blocker = new CountDownLatch(1);
+        final InstallJob job = scheduler.submit(release("blocking"), 0);
+        while (job.getState() != InstallJob.State.DOWNLOADING) {
+            Thread.sleep(10);
+        }
+        scheduler.cancel(job);
+        assertTrue(job.isCancelled());
+        blocker.countDown();
+
+        assertEquals(InstallJob.State.CANCELLED, await(job));
+        verify(gameManager, never()).extract(any(), any());
+    }
+
+    @Test
+    void testCancelAbortsRunningJob() throws Exception {
+        // a fetch which only returns once its blocking work is aborted by the cancellation
+        doAnswer(invocation -> {
+            final ProgressListener listener = invocation.getArgument(1);
+            final CountDownLatch aborted = new CountDownLatch(1);
+            try (ProgressListener.Registration abort = listener.onCancel(aborted::countDown)) {
+                aborted.await();
+            }
+            return false;
+        }).when(gameManager).fetch(any(), any(), any(), anyBoolean());
+        final InstallJob job = scheduler.submit(release("1"), 0);
+        while (job.getState() != InstallJob.State.DOWNLOADING) {
+            Thread.sleep(10);
+        }
+        assertFalse(job.getCancelLatency().isPresent());
+
+        scheduler.cancel(job);
+
+        assertEquals(InstallJob.State.CANCELLED, await(job));
+        assertTrue(job.getCancelLatency().isPresent());
+        assertEquals(1, scheduler.getCancelLatencies().getCount());
+    }
+
+    @Test
+    void testFailedJob() throws Exception {
+        doThrow(new DownloadException("test")).when(gameManager).fetch(any(), any(), any(), anyBoolean());
+        final LogAssert loggedException = TestLoggers.sys().expect(InstallScheduler.class.getName(), Level.ERROR,
+                LogMatchers.hasMatchingExtraThrowable(Matchers.instanceOf(DownloadException.class)));
+        final InstallJob job = scheduler.submit(release("1"), 0);
+
+        assertEquals(InstallJob.State.FAILED, await(job));
+        assertFalse(scheduler.getJob(job.getRelease().getId()).isPresent());
+        loggedException.assertObservation();
+    }
+
+    @Test
+    void testSubmitSameReleaseTwice() throws Exception {
+        blocker = new CountDownLatch(1);
+        final GameRelease release = release("blocking");
+        final InstallJob job = scheduler.submit(release, 0);
+
+        assertSame(job, scheduler.submit(release, 3));
+        blocker.countDown();
+    }
+
+    private static InstallJob.State await(InstallJob job) throws Exception {
+        return job.getCompletion().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static GameRelease release(String version) throws MalformedURLException {
+        return new GameRelease(new GameIdentifier(version, Build.NIGHTLY, Profile.OMEGA),
+                new URL("https://example.com/" + version + ".zip"), new ReleaseMetadata("", new Date()));
+    }
+}
@@ -0,0 +1,124 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestProgressAggregator {
+
+    private static final long FRAME = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private long now;
+    private List<Progress> updates;
+    private ProgressAggregator aggregator;
+
+    @BeforeEach
+    void setup() {
+        now = 0;
+        updates = new ArrayList<>();
+        aggregator = new ProgressAggregator(new RecordingListener(), FRAME, () -> now);
+    }
+
+    @Test
+    void testCoalescesUpdatesWithinFrame() {
+        aggregator.startPhase(Progress.Phase.DOWNLOAD, 100_000);
+        for (int i = 0; i < 1000; i++) {
+            aggregator.advance(10);
+        }
+        now += FRAME;
+        aggregator.advance(10);
+
+        // one update for the start of the phase, one for the frame
+        assertEquals(2, updates.size());
+        assertEquals(10_010, last().getDone());
+    }
+
+    @Test
+    void testThroughputAndRemainingTime() {
+        aggregator.startPhase(Progress.Phase.DOWNLOAD, 10_000);
+        for (int i = 0; i < 4; i++) {
+            now += TimeUnit.SECONDS.toNanos(1);
+            aggregator.advance(1000);
+        }
+
+        assertEquals(1000, last().getBytesPerSecond(), 0.001);
+        assertEquals(Duration.ofSeconds(6), last().getRemaining().orElseThrow());
+        assertEquals(0.4, last().getFraction(), 0.001);
+    }
+
+    @Test
+    void testResumedPhaseDoesNotCountPreviousBytes() {
+        aggregator.startPhase(Progress.Phase.DOWNLOAD, 10_000, 5000);
+        now += TimeUnit.SECONDS.toNanos(1);
+        aggregator.advance(500);
+
+        assertEquals(5500, last().getDone());
+        assertEquals(500, last().getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    void testUnknownTotal() {
+        aggregator.startPhase(Progress.Phase.EXTRACT, -1);
+        now += FRAME;
+        aggregator.advance(500);
+
+        assertEquals(Progress.Phase.EXTRACT, last().getPhase());
+        assertEquals(-1, last().getFraction());
+        assertFalse(last().getRemaining().isPresent());
+    }
+
+    @Test
+    void testFinishPhaseAlwaysReports() {
+        aggregator.startPhase(Progress.Phase.VERIFY, 100);
+        aggregator.advance(100);
+        aggregator.finishPhase();
+
+        assertEquals(2, updates.size());
+        assertEquals(1.0, last().getFraction());
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("512 B", Progress.formatBytes(512));
+        assertEquals(String.format("%.1f KiB", 1.5), Progress.formatBytes(1536));
+        assertEquals(String.format("%.1f MiB", 12.0), Progress.formatBytes(12 * 1024 * 1024));
+        assertEquals("4:02", Progress.formatDuration(Duration.ofSeconds(242)));
+        assertEquals("1:05:09", Progress.formatDuration(Duration.ofSeconds(3909)));
+        assertTrue(new Progress(Progress.Phase.DOWNLOAD, 0, 1, 1, null).toString().startsWith("DOWNLOAD"));
+    }
+
+    private Progress last() {
+        return updates.get(updates.size() - 1);
+    }
+
+    private class RecordingListener implements ProgressListener {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public void update(Progress progress) {
+            updates.add(progress);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
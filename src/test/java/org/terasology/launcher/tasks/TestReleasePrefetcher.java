@@ -0,0 +1,160 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.tasks;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.launcher.game.GameManager;
+import org.terasology.launcher.model.Build;
+import org.terasology.launcher.model.GameIdentifier;
+import org.terasology.launcher.model.GameRelease;
+import org.terasology.launcher.model.Profile;
+import org.terasology.launcher.model.ReleaseMetadata;
+import org.terasology.launcher.settings.Settings;
+import org.terasology.launcher.util.BandwidthLimiter;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TestReleasePrefetcher {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final GameRelease played = release("1", 1);
+    private final GameRelease newest = release("3", 3);
+    private final List<GameRelease> releases = List.of(played, release("2", 2), newest,
+            release("4", 4, Build.STABLE));
+
+    private GameManager gameManager;
+    private InstallScheduler scheduler;
+    private Settings settings;
+    private ObservableSet<GameIdentifier> installed;
+    private AtomicBoolean gameRunning;
+    private CountDownLatch blocker;
+    private ReleasePrefetcher prefetcher;
+
+    @BeforeEach
+    void setup() throws Exception {
+        gameManager = mock(GameManager.class);
+        when(gameManager.newBandwidthLimiter(anyLong())).thenReturn(BandwidthLimiter.unlimited());
+        installed = FXCollections.observableSet(played.getId());
+        when(gameManager.getInstalledGames()).thenReturn(installed);
+        blocker = new CountDownLatch(0);
+        doAnswer(invocation -> {
+            final ProgressListener listener = invocation.getArgument(1);
+            try (ProgressListener.Registration abort = listener.onCancel(blocker::countDown)) {
+                blocker.await();
+            }
+            return false;
+        }).when(gameManager).fetch(any(), any(), any(), anyBoolean());
+        scheduler = new InstallScheduler(gameManager, 1, 1, Runnable::run);
+        settings = Settings.getDefault();
+        settings.prefetchReleases.set(true);
+        settings.lastPlayedGameVersion.set(played.getId());
+        gameRunning = new AtomicBoolean();
+        prefetcher = new ReleasePrefetcher(scheduler, gameManager, settings, () -> releases, gameRunning::get,
+                Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testPrefetchNewestOfLastPlayedLine() throws Exception {
+        prefetcher.check();
+
+        final InstallJob job = scheduler.getJob(newest.getId()).orElseThrow();
+        assertEquals(ReleasePrefetcher.PRIORITY, job.getPriority());
+        assertTrue(job.isFetchOnly());
+        assertEquals(InstallJob.State.SUCCEEDED, job.getCompletion().get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        verify(gameManager).fetch(eq(newest), eq(job), any(), eq(false));
+    }
+
+    @Test
+    void testNothingToPrefetch() {
+        settings.prefetchReleases.set(false);
+        prefetcher.check();
+        assertFalse(scheduler.hasActiveJobs());
+
+        settings.prefetchReleases.set(true);
+        installed.add(newest.getId());
+        prefetcher.check();
+        assertFalse(scheduler.hasActiveJobs());
+    }
+
+    @Test
+    void testWaitWhileGameRuns() {
+        gameRunning.set(true);
+        prefetcher.check();
+        assertFalse(scheduler.hasActiveJobs());
+    }
+
+    @Test
+    void testPauseForOtherInstallation() throws Exception {
+        blocker = new CountDownLatch(1);
+        prefetcher.check();
+        final InstallJob job = scheduler.getJob(newest.getId()).orElseThrow();
+        while (job.getState() != InstallJob.State.DOWNLOADING) {
+            Thread.sleep(10);
+        }
+
+        scheduler.submit(release("other", 0, Build.STABLE), 0);
+        prefetcher.check();
+
+        assertEquals(InstallJob.State.CANCELLED, job.getCompletion().get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testUserTakesOverPrefetch() throws Exception {
+        blocker = new CountDownLatch(1);
+        prefetcher.check();
+        final InstallJob job = scheduler.getJob(newest.getId()).orElseThrow();
+
+        assertSame(job, scheduler.submit(newest, 0));
+        assertFalse(job.isFetchOnly());
+        gameRunning.set(true);
+        prefetcher.check();
+
+        assertFalse(job.isCancelled());
+        assertEquals(Set.of(job), Set.copyOf(scheduler.getJobs()));
+    }
+
+    private static GameRelease release(String version, long timestamp) {
+        return release(version, timestamp, Build.NIGHTLY);
+    }
+
+    private static GameRelease release(String version, long timestamp, Build build) {
+        try {
+            return new GameRelease(new GameIdentifier(version, build, Profile.OMEGA),
+                    new URL("https://example.com/" + version + ".zip"),
+                    new ReleaseMetadata("", new Date(timestamp)));
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
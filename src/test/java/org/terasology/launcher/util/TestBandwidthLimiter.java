@@ -0,0 +1,88 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestBandwidthLimiter {
+
+    private static final long RATE = 1024 * 1024;
+    private static final int CHUNK = DownloadUtils.BUFFER_SIZE;
+
+    private long now;
+    private BandwidthLimiter limiter;
+
+    @BeforeEach
+    void setup() {
+        now = 0;
+        limiter = new BandwidthLimiter(null, RATE, () -> now);
+    }
+
+    @Test
+    void testUnlimited() {
+        final BandwidthLimiter unlimited = new BandwidthLimiter(null, 0, () -> now);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, unlimited.tryTake(CHUNK));
+        }
+    }
+
+    @Test
+    void testWaitsForTokens() {
+        // the bucket starts empty
+        assertEquals(TimeUnit.SECONDS.toNanos(CHUNK) / RATE, limiter.tryTake(CHUNK));
+        now += TimeUnit.SECONDS.toNanos(1);
+        // a full second worth of tokens, no more
+        for (long taken = 0; taken < RATE; taken += CHUNK) {
+            assertEquals(0, limiter.tryTake(CHUNK));
+        }
+        assertTrue(limiter.tryTake(CHUNK) > 0);
+    }
+
+    @Test
+    void testBucketIsCappedAtOneSecond() {
+        now += TimeUnit.SECONDS.toNanos(10);
+        long taken = 0;
+        while (limiter.tryTake(CHUNK) == 0) {
+            taken += CHUNK;
+        }
+        assertEquals(RATE, taken);
+    }
+
+    @Test
+    void testChangeRate() {
+        now += TimeUnit.SECONDS.toNanos(1);
+        limiter.setBytesPerSecond(CHUNK);
+        // the tokens collected at the old rate are capped to the new bucket size
+        assertEquals(0, limiter.tryTake(CHUNK));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.tryTake(CHUNK));
+
+        limiter.setBytesPerSecond(0);
+        assertEquals(0, limiter.tryTake(CHUNK));
+        assertThrows(IllegalArgumentException.class, () -> limiter.setBytesPerSecond(-1));
+    }
+
+    @Test
+    void testChildIsBoundByParent() throws Exception {
+        now += TimeUnit.SECONDS.toNanos(1);
+        final BandwidthLimiter child = limiter.newChild(0);
+        for (long taken = 0; taken < RATE; taken += CHUNK) {
+            child.acquire(CHUNK, () -> false);
+        }
+        assertTrue(limiter.tryTake(CHUNK) > 0);
+    }
+
+    @Test
+    void testCancelledAcquireReturns() throws Exception {
+        // would have to wait forever with the clock standing still
+        limiter.acquire(CHUNK, () -> true);
+        assertTrue(limiter.tryTake(CHUNK) > 0);
+    }
+}
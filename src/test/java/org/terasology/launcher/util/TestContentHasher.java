@@ -0,0 +1,125 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestContentHasher {
+
+    private static final int CHUNK = 1000;
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void testSegmentsWrittenOutOfOrder() throws Exception {
+        final byte[] content = new byte[4 * CHUNK];
+        new Random(7).nextBytes(content);
+        final DownloadState.Segment first = new DownloadState.Segment(0, 2 * CHUNK - 1, 0);
+        final DownloadState.Segment second = new DownloadState.Segment(2 * CHUNK, 4 * CHUNK - 1, 2 * CHUNK);
+
+        try (FileChannel channel = FileChannel.open(tempFolder.resolve("download.zip"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ContentHasher hasher = ContentHasher.forSegments(Set.of(FileDigest.SHA_256),
+                    List.of(first, second), channel);
+
+            // the second segment completes before the first one has even started
+            write(channel, hasher, second, content, 2 * CHUNK);
+            write(channel, hasher, second, content, 3 * CHUNK);
+            assertEquals(0, hasher.getHashedBytes());
+            write(channel, hasher, first, content, 0);
+            write(channel, hasher, first, content, CHUNK);
+            assertEquals(content.length, hasher.getHashedBytes());
+
+            assertEquals(TestDownloadUtils.sha256(content), hasher.finish().get(FileDigest.SHA_256));
+        }
+    }
+
+    @Test
+    void testSegmentsWrittenConcurrently() throws Exception {
+        final int segmentCount = 4;
+        final int chunksPerSegment = 50;
+        final byte[] content = new byte[segmentCount * chunksPerSegment * CHUNK];
+        new Random(11).nextBytes(content);
+        final List<DownloadState.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < segmentCount; i++) {
+            final long start = (long) i * chunksPerSegment * CHUNK;
+            segments.add(new DownloadState.Segment(start, start + chunksPerSegment * CHUNK - 1, start));
+        }
+
+        try (FileChannel channel = FileChannel.open(tempFolder.resolve("download.zip"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ContentHasher hasher = ContentHasher.forSegments(Set.of(FileDigest.SHA_256), segments, channel);
+            final ExecutorService executor = Executors.newFixedThreadPool(segmentCount);
+            try {
+                final List<Future<?>> writers = new ArrayList<>();
+                for (DownloadState.Segment segment : segments) {
+                    writers.add(executor.submit(() -> {
+                        for (int position = (int) segment.getStart(); position < segment.getEnd();
+                             position += CHUNK) {
+                            write(channel, hasher, segment, content, position);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(TestDownloadUtils.sha256(content), hasher.finish().get(FileDigest.SHA_256));
+            assertEquals(content.length, hasher.getHashedBytes());
+        }
+    }
+
+    @Test
+    void testFileDigestRoundTrip() throws IOException {
+        final Path file = tempFolder.resolve("game.zip");
+        Files.write(file, new byte[]{1, 2, 3});
+        FileDigest.of(file, Map.of(FileDigest.SHA_256, "abc")).store(file);
+
+        final FileDigest loaded = FileDigest.load(file).orElseThrow();
+        assertTrue(loaded.isCurrent(file));
+        assertEquals("abc", loaded.get(FileDigest.SHA_256).orElseThrow());
+        assertTrue(loaded.hasAll(Set.of(FileDigest.SHA_256)));
+        assertFalse(loaded.hasAll(Set.of(FileDigest.SHA_256, "MD5")));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        assertFalse(loaded.isCurrent(file));
+
+        FileDigest.delete(file);
+        assertFalse(FileDigest.load(file).isPresent());
+    }
+
+    private static void write(FileChannel channel, ContentHasher hasher, DownloadState.Segment segment,
+                              byte[] content, int position) throws IOException {
+        final ByteBuffer data = ByteBuffer.wrap(content, position, CHUNK);
+        channel.write(data.duplicate(), position);
+        segment.setPosition(position + CHUNK);
+        hasher.update(position, data);
+    }
+}
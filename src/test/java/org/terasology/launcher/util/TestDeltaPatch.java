@@ -0,0 +1,122 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestDeltaPatch {
+
+    private static final int JAR_SIZE = 256 * 1024;
+
+    @TempDir
+    Path tempFolder;
+
+    private final Random random = new Random(11);
+    private byte[] engine;
+    private byte[] newEngine;
+
+    @BeforeEach
+    void setup() {
+        engine = randomBytes(JAR_SIZE);
+        // a changed class in the middle, an added one near the end
+        newEngine = Arrays.copyOf(engine, JAR_SIZE + 2000);
+        System.arraycopy(randomBytes(300), 0, newEngine, 100_000, 300);
+        System.arraycopy(engine, 200_000, newEngine, 202_000, JAR_SIZE - 200_000);
+        System.arraycopy(randomBytes(2000), 0, newEngine, 200_000, 2000);
+    }
+
+    @Test
+    void testBinaryDeltaRoundTrip() throws IOException {
+        final byte[] delta = BinaryDelta.diff(engine, newEngine);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDelta.apply(engine, new ByteArrayInputStream(delta), out);
+
+        assertArrayEquals(newEngine, out.toByteArray());
+        assertTrue(delta.length < 4 * 1024, "delta has " + delta.length + " bytes");
+    }
+
+    @Test
+    void testBinaryDeltaOfUnrelatedContent() throws IOException {
+        final byte[] other = randomBytes(1000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDelta.apply(engine, new ByteArrayInputStream(BinaryDelta.diff(engine, other)), out);
+
+        assertArrayEquals(other, out.toByteArray());
+    }
+
+    @Test
+    void testApplyPatch() throws IOException {
+        final byte[] readme = "Terasology".getBytes(StandardCharsets.UTF_8);
+        final byte[] module = randomBytes(10_000);
+        final Path baseZip = zip("base.zip", Map.of("README", readme, "libs/engine.jar", engine,
+                "modules/Removed.jar", randomBytes(10_000)));
+        final Path targetZip = zip("target.zip", Map.of("README", readme, "libs/engine.jar", newEngine,
+                "modules/Added.jar", module));
+        final Path baseDir = tempFolder.resolve("base");
+        FileUtils.extractZipTo(baseZip, baseDir);
+        final Path patch = tempFolder.resolve("target.patch");
+
+        DeltaPatch.create(baseZip, targetZip, patch);
+        final Path targetDir = tempFolder.resolve("target");
+        DeltaPatch.apply(patch, baseDir, targetDir, () -> false);
+
+        assertArrayEquals(readme, Files.readAllBytes(targetDir.resolve("README")));
+        assertArrayEquals(newEngine, Files.readAllBytes(targetDir.resolve("libs/engine.jar")));
+        assertArrayEquals(module, Files.readAllBytes(targetDir.resolve("modules/Added.jar")));
+        assertFalse(Files.exists(targetDir.resolve("modules/Removed.jar")));
+        // the patch carries the new module and the changes to the engine, not the whole engine
+        assertTrue(Files.size(patch) < module.length + JAR_SIZE / 4, "patch has " + Files.size(patch) + " bytes");
+    }
+
+    @Test
+    void testPatchDoesNotFitModifiedInstallation() throws IOException {
+        final Path baseZip = zip("base.zip", Map.of("libs/engine.jar", engine));
+        final Path targetZip = zip("target.zip", Map.of("libs/engine.jar", newEngine));
+        final Path baseDir = tempFolder.resolve("base");
+        FileUtils.extractZipTo(baseZip, baseDir);
+        final Path patch = tempFolder.resolve("target.patch");
+        DeltaPatch.create(baseZip, targetZip, patch);
+        Files.write(baseDir.resolve("libs/engine.jar"), randomBytes(JAR_SIZE));
+
+        final Path targetDir = tempFolder.resolve("target");
+        assertThrows(IOException.class, () -> DeltaPatch.apply(patch, baseDir, targetDir, () -> false));
+    }
+
+    private byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private Path zip(String name, Map<String, byte[]> entries) throws IOException {
+        final Path file = tempFolder.resolve(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+}
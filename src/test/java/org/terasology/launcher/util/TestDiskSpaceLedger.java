@@ -0,0 +1,85 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TestDiskSpaceLedger {
+
+    private static final long USABLE = 1000;
+
+    @TempDir
+    Path tempFolder;
+
+    private final DiskSpaceLedger ledger = new DiskSpaceLedger(store -> USABLE);
+
+    @Test
+    void testReservationsAddUp() throws Exception {
+        final Path cache = tempFolder.resolve("cache");
+        final Path games = tempFolder.resolve("games");
+
+        final DiskSpaceLedger.Reservation reservation = ledger.reserve(Map.of(cache, 300L, games, 500L), () -> false);
+        assertEquals(800, ledger.getReserved(games));
+
+        reservation.release(cache);
+        assertEquals(500, ledger.getReserved(games));
+        reservation.close();
+        assertEquals(0, ledger.getReserved(games));
+    }
+
+    @Test
+    void testRefuseWhatNeverFits() {
+        assertThrows(DownloadException.class, () -> ledger.reserve(Map.of(tempFolder, USABLE + 1), () -> false));
+    }
+
+    @Test
+    void testWaitForOtherReservations() throws Exception {
+        final DiskSpaceLedger.Reservation first = ledger.reserve(Map.of(tempFolder, 600L), () -> false);
+        final CompletableFuture<DiskSpaceLedger.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ledger.reserve(Map.of(tempFolder, 600L), () -> false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        first.close();
+
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(600, ledger.getReserved(tempFolder));
+    }
+
+    @Test
+    void testCancelWhileWaiting() throws Exception {
+        ledger.reserve(Map.of(tempFolder, 600L), () -> false);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final CompletableFuture<DiskSpaceLedger.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ledger.reserve(Map.of(tempFolder, 600L), cancelled::get);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertFalse(second.isDone());
+
+        cancelled.set(true);
+
+        assertNull(second.get(5, TimeUnit.SECONDS));
+    }
+}
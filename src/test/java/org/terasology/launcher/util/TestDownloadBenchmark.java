@@ -0,0 +1,374 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.Benchmark;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures {@link DownloadUtils#downloadToFile} against a {@link MockWebServer} on localhost which stands in for a
+ * download mirror.
+ * <p>
+ * The stand-in serves a synthetic artifact of {@code -Dbenchmark.downloadMiB} MiB (128 by default; the game packages
+ * are 100 MiB to 1 GiB), and can limit the bandwidth and add latency per connection, reset connections in the middle of
+ * a response, and let responses drip a few bytes before they break off. Each network condition is measured as a
+ * single stream, with segments, and resuming a download which was cancelled halfway.
+ * <p>
+ * Besides the throughput, the CPU time and allocations of the launcher's threads are reported. They are sampled per
+ * thread, excluding the threads of the stand-in server, so the last moments of threads which end during a run are
+ * missed.
+ */
+class TestDownloadBenchmark {
+
+    private static final int SIZE = Integer.getInteger("benchmark.downloadMiB", 128) * 1024 * 1024;
+    private static final int SEGMENTS = 4;
+    private static final int WARMUP_ITERATIONS = 1;
+    private static final int ITERATIONS = 3;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final String ETAG = "\"benchmark\"";
+
+    /**
+     * How many bytes a dripping response delivers, and at which rate, before it breaks off.
+     */
+    private static final int DRIP_BYTES = 256 * 1024;
+    private static final int DRIP_BYTES_PER_SECOND = 64 * 1024;
+
+    private static byte[] content;
+    private static String sha256;
+
+    @TempDir
+    Path tempFolder;
+
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+
+    @BeforeAll
+    static void setupContent() throws NoSuchAlgorithmException {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        sha256 = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    void benchmarkLocal() throws Exception {
+        measureModes(new Network("local"));
+    }
+
+    @Benchmark
+    void benchmarkThrottled() throws Exception {
+        measureModes(new Network("16 MiB/s per connection, 50 ms").bandwidth(16 * 1024 * 1024).latency(50));
+    }
+
+    @Benchmark
+    void benchmarkConnectionResets() throws Exception {
+        measureModes(new Network("reset every 4th response").resetEvery(4));
+    }
+
+    @Benchmark
+    void benchmarkSlowDrip() throws Exception {
+        measureModes(new Network("drip every 3rd response").dripEvery(3));
+    }
+
+    private void measureModes(Network network) throws Exception {
+        server.setDispatcher(new StandInMirror(network));
+        System.out.printf("%s, %d MiB%n", network.name, SIZE / 1024 / 1024);
+        report("  single stream", measure(() -> download(1, null)));
+        report("  " + SEGMENTS + " segments", measure(() -> download(SEGMENTS, null)));
+        report("  resume at 50%", measure(() -> download(SEGMENTS, 50)));
+    }
+
+    /**
+     * Download the artifact to a fresh file.
+     *
+     * @param cancelAt if set, the download is first cancelled at this percentage, and only continuing it is measured
+     * @return the resources used to download the missing bytes
+     */
+    private Usage download(int segments, Integer cancelAt) throws Exception {
+        final Path file = tempFolder.resolve("artifact.zip");
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(DownloadUtils.getStateFileFor(file));
+        final URL url = server.url("/artifact.zip").url();
+        if (cancelAt != null) {
+            DownloadUtils.downloadToFile(client, DownloadSources.of(url), file,
+                    new ProgressAggregator(new CancellingListener(cancelAt)), segments, Set.of(FileDigest.SHA_256),
+                    BandwidthLimiter.unlimited()).get();
+        }
+
+        final long resumedAt = DownloadState.load(file).map(DownloadState::getCompletedBytes).orElse(0L);
+        final ResourceMeter meter = ResourceMeter.start();
+        final Map<String, String> digests = DownloadUtils.downloadToFile(client, DownloadSources.of(url), file,
+                new ProgressAggregator(new CancellingListener(Integer.MAX_VALUE)), segments,
+                Set.of(FileDigest.SHA_256), BandwidthLimiter.unlimited()).get();
+        final Usage usage = meter.stop(SIZE - resumedAt);
+        assertEquals(sha256, digests.get(FileDigest.SHA_256));
+        return usage;
+    }
+
+    private static Usage[] measure(Run run) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run.run();
+        }
+        final Usage[] usages = new Usage[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            usages[i] = run.run();
+        }
+        Arrays.sort(usages, Comparator.comparingDouble(Usage::getBytesPerSecond));
+        return usages;
+    }
+
+    private static void report(String name, Usage[] usages) {
+        final Usage median = usages[usages.length / 2];
+        System.out.printf("%-20s %8.1f MB/s (%.1f-%.1f), cpu %8.1f ms, alloc %8.1f MB/s (%.1f MB)%n", name,
+                median.getBytesPerSecond() / 1e6, usages[0].getBytesPerSecond() / 1e6,
+                usages[usages.length - 1].getBytesPerSecond() / 1e6, median.cpuNanos / 1e6,
+                median.allocatedBytes / 1e6 / (median.wallNanos / 1e9), median.allocatedBytes / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        Usage run() throws Exception;
+    }
+
+    /**
+     * The conditions the stand-in server simulates.
+     */
+    private static final class Network {
+        private final String name;
+        private long bytesPerSecond;
+        private long latencyMillis;
+        private int resetEvery;
+        private int dripEvery;
+
+        Network(String name) {
+            this.name = name;
+        }
+
+        Network bandwidth(long newBytesPerSecond) {
+            this.bytesPerSecond = newBytesPerSecond;
+            return this;
+        }
+
+        Network latency(long newLatencyMillis) {
+            this.latencyMillis = newLatencyMillis;
+            return this;
+        }
+
+        Network resetEvery(int responses) {
+            this.resetEvery = responses;
+            return this;
+        }
+
+        Network dripEvery(int responses) {
+            this.dripEvery = responses;
+            return this;
+        }
+    }
+
+    /**
+     * Serves the artifact with byte range support under the given network conditions.
+     */
+    private static final class StandInMirror extends Dispatcher {
+        private final Network network;
+        private final AtomicInteger responses = new AtomicInteger();
+
+        StandInMirror(Network network) {
+            this.network = network;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            final MockResponse response = new MockResponse()
+                    .setHeader("ETag", ETAG)
+                    .setHeader("Accept-Ranges", "bytes")
+                    .setHeadersDelay(network.latencyMillis, TimeUnit.MILLISECONDS);
+            if ("HEAD".equals(request.getMethod())) {
+                return response.setHeader("Content-Length", SIZE);
+            }
+
+            int start = 0;
+            int end = SIZE - 1;
+            final String range = request.getHeader("Range");
+            final Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            if (matcher != null && matcher.matches()) {
+                start = Integer.parseInt(matcher.group(1));
+                end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                response.setResponseCode(206).setHeader("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+            }
+            final int length = end - start + 1;
+
+            final int count = responses.incrementAndGet();
+            if (network.dripEvery > 0 && count % network.dripEvery == 0 && length > DRIP_BYTES) {
+                // announce the whole range, but break off after a slow start
+                return response.setBody(new Buffer().write(content, start, DRIP_BYTES))
+                        .setHeader("Content-Length", length)
+                        .throttleBody(DRIP_BYTES_PER_SECOND / 10, 100, TimeUnit.MILLISECONDS)
+                        .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+            }
+            response.setBody(new Buffer().write(content, start, length));
+            if (network.resetEvery > 0 && count % network.resetEvery == 0) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            if (network.bytesPerSecond > 0) {
+                response.throttleBody(network.bytesPerSecond / 10, 100, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+    }
+
+    private static final class Usage {
+        private final long bytes;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        Usage(long bytes, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.bytes = bytes;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double getBytesPerSecond() {
+            return bytes / (wallNanos / 1e9);
+        }
+    }
+
+    /**
+     * Samples the CPU time and allocations of all threads except the stand-in server's while a download runs.
+     */
+    private static final class ResourceMeter {
+        private static final long SAMPLE_MILLIS = 20;
+
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final Map<Long, long[]> baseline = new HashMap<>();
+        private final Map<Long, long[]> latest = new HashMap<>();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        private final long start = System.nanoTime();
+
+        private ResourceMeter() {
+            sample(baseline);
+        }
+
+        static ResourceMeter start() {
+            final ResourceMeter meter = new ResourceMeter();
+            meter.sampler.scheduleAtFixedRate(meter::sampleLatest, SAMPLE_MILLIS, SAMPLE_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            return meter;
+        }
+
+        Usage stop(long bytes) throws InterruptedException {
+            final long wall = System.nanoTime() - start;
+            sampler.shutdown();
+            sampler.awaitTermination(1, TimeUnit.SECONDS);
+            sampleLatest();
+            long cpu = 0;
+            long allocated = 0;
+            for (Map.Entry<Long, long[]> thread : latest.entrySet()) {
+                final long[] before = baseline.getOrDefault(thread.getKey(), new long[2]);
+                cpu += thread.getValue()[0] - before[0];
+                allocated += thread.getValue()[1] - before[1];
+            }
+            return new Usage(bytes, wall, cpu, allocated);
+        }
+
+        private synchronized void sampleLatest() {
+            sample(latest);
+        }
+
+        private void sample(Map<Long, long[]> samples) {
+            final List<Long> ids = new ArrayList<>();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (!thread.getName().contains("MockWebServer")) {
+                    ids.add(thread.getId());
+                }
+            }
+            final long[] idArray = ids.stream().mapToLong(Long::longValue).toArray();
+            final long[] cpu = threads.getThreadCpuTime(idArray);
+            final long[] allocated = threads.getThreadAllocatedBytes(idArray);
+            for (int i = 0; i < idArray.length; i++) {
+                if (cpu[i] >= 0 && allocated[i] >= 0) {
+                    samples.put(idArray[i], new long[]{cpu[i], allocated[i]});
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the download once it reaches the given percentage.
+     */
+    private static final class CancellingListener implements ProgressListener {
+        private final int cancelAt;
+        private volatile boolean cancelled;
+
+        CancellingListener(int cancelAt) {
+            this.cancelAt = cancelAt;
+        }
+
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+            if (progress >= cancelAt) {
+                cancelled = true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
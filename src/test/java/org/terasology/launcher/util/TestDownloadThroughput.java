@@ -0,0 +1,152 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.Benchmark;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the copy loop of {@link DownloadUtils} against the stream based loop it replaced.
+ * <p>
+ * The network is taken out of the picture by reading from memory, so that the numbers reflect the CPU cost of the loop
+ * itself (buffering, progress updates, cancellation checks) plus the file system writes.
+ */
+class TestDownloadThroughput {
+
+    private static final int SIZE = 128 * 1024 * 1024;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+
+    private static byte[] content;
+
+    @TempDir
+    Path tempFolder;
+
+    @BeforeAll
+    static void setup() {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+    }
+
+    @Benchmark
+    void benchmarkStreamCopy() throws IOException {
+        final Path file = tempFolder.resolve("stream.zip");
+        report("stream copy (2 KiB array)", measure(() -> {
+            try (BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(content));
+                 BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                streamCopy(new StubListener(), SIZE, in, out);
+            }
+        }));
+        assertEquals(SIZE, Files.size(file));
+    }
+
+    @Benchmark
+    void benchmarkChannelCopy() throws IOException {
+        final Path file = tempFolder.resolve("channel.zip");
+        report("channel copy (" + DownloadUtils.BUFFER_SIZE / 1024 + " KiB direct buffer)", measure(() -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final DownloadState.Segment segment = new DownloadState.Segment(0, SIZE - 1, 0);
+                DownloadUtils.downloadSegment(new ProgressAggregator(new StubListener()), segment,
+                        Channels.newChannel(new ByteArrayInputStream(content)), channel,
+                        ContentHasher.forSegments(Set.of(), List.of(segment), channel),
+                        BandwidthLimiter.unlimited(), new ThroughputMonitor(() -> false, System::nanoTime),
+                        new AtomicLong(), new AtomicBoolean(), () -> { });
+            }
+        }));
+        assertEquals(SIZE, Files.size(file));
+    }
+
+    /**
+     * The copy loop as it was before the download path was switched to file channels.
+     */
+    private static void streamCopy(ProgressListener listener, long contentLength, BufferedInputStream in,
+                                   BufferedOutputStream out) throws IOException {
+        final byte[] buffer = new byte[2048];
+        long writtenBytes = 0;
+        int n;
+        if (!listener.isCancelled()) {
+            while ((n = in.read(buffer)) != -1) {
+                if (listener.isCancelled()) {
+                    break;
+                }
+
+                out.write(buffer, 0, n);
+                writtenBytes += n;
+
+                int percentage = (int) (100f / contentLength * writtenBytes);
+                listener.update(Math.max(1, Math.min(99, percentage)));
+
+                if (listener.isCancelled()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static long[] measure(IORunnable run) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run.run();
+        }
+        final long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            run.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] nanos) {
+        final long median = nanos[nanos.length / 2];
+        System.out.printf("%-40s median %6.1f ms, %7.1f MiB/s (min %6.1f ms, max %6.1f ms)%n", name,
+                median / 1e6, SIZE / 1024d / 1024d / (median / 1e9), nanos[0] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+
+    private static class StubListener implements ProgressListener {
+        private volatile int progress;
+
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int newProgress) {
+            // keep the update from being optimized away, like a real listener would
+            progress = newProgress;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
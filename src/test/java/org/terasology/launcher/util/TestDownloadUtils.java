@@ -0,0 +1,452 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestDownloadUtils {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int SIZE = (int) (4.5 * DownloadUtils.MIN_SEGMENT_SIZE);
+
+    @TempDir
+    Path tempFolder;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private byte[] content;
+    private String etag;
+    private AtomicInteger rangeRequests;
+    private AtomicLong requestedBytes;
+
+    @BeforeEach
+    void setup() throws IOException {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        etag = "\"v1\"";
+        rangeRequests = new AtomicInteger();
+        requestedBytes = new AtomicLong();
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void testSegmentedDownload() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+        final Path file = tempFolder.resolve("segmented.zip");
+
+        final Map<String, String> digests = DownloadUtils.downloadToFile(client, url(), file,
+                new ProgressAggregator(new StubListener()), 4).get();
+
+        assertEquals(4, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file));
+        assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+    }
+
+    @Test
+    void testBandwidthLimitIsSharedBySegments() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+        final Path file = tempFolder.resolve("limited.zip");
+        final BandwidthLimiter limiter = new BandwidthLimiter(2L * SIZE);
+
+        final long start = System.nanoTime();
+        DownloadUtils.downloadToFile(client, DownloadSources.of(url()), file,
+                new ProgressAggregator(new StubListener()), 4, Set.of(), limiter).get();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // four segments, but half a second at the combined rate
+        assertEquals(4, rangeRequests.get());
+        assertTrue(elapsedMillis >= 450, "download took only " + elapsedMillis + " ms");
+        assertArrayEquals(content, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testFallbackWithoutRangeSupport() throws Exception {
+        server.setDispatcher(new ContentDispatcher(false));
+        final Path file = tempFolder.resolve("single.zip");
+
+        DownloadUtils.downloadToFile(client, url(), file, new ProgressAggregator(new StubListener()), 4).get();
+
+        assertEquals(0, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testResumeInterruptedDownload() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+        final Path file = tempFolder.resolve("resume.zip.part");
+        final RemoteResource resource = DownloadUtils.probe(client, url());
+        // simulate an earlier attempt which got through the first half of the only segment
+        final DownloadState previous = DownloadState.create(resource, 1);
+        final int downloaded = SIZE / 2;
+        Files.write(file, Arrays.copyOf(content, downloaded));
+        previous.getSegments().get(0).setPosition(downloaded);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            previous.store(file, channel);
+        }
+
+        final Map<String, String> digests = DownloadUtils.downloadToFile(client, url(), file,
+                new ProgressAggregator(new StubListener()), 1).get();
+
+        assertEquals(1, rangeRequests.get());
+        assertEquals(SIZE - downloaded, requestedBytes.get());
+        assertArrayEquals(content, Files.readAllBytes(file));
+        // the part downloaded in the earlier attempt is read back from the file
+        assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+        assertFalse(Files.exists(DownloadState.stateFileFor(file)));
+    }
+
+    @Test
+    void testRestartWhenRemoteChanged() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+        final Path file = tempFolder.resolve("changed.zip.part");
+        final DownloadState previous = DownloadState.create(DownloadUtils.probe(client, url()), 1);
+        Files.write(file, new byte[SIZE / 2]);
+        previous.getSegments().get(0).setPosition(SIZE / 2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            previous.store(file, channel);
+        }
+        etag = "\"v2\"";
+
+        DownloadUtils.downloadToFile(client, url(), file, new ProgressAggregator(new StubListener()), 1).get();
+
+        assertEquals(0, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testRestartWhenRemoteChangesDuringDownload() throws Exception {
+        // the file changes after the download was checked against the recorded state, but before it continues
+        server.setDispatcher(new ContentDispatcher(true) {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if ("GET".equals(request.getMethod())) {
+                    etag = "\"v2\"";
+                }
+                return super.dispatch(request);
+            }
+        });
+        final Path file = tempFolder.resolve("changing.zip.part");
+        final DownloadState previous = DownloadState.create(DownloadUtils.probe(client, url()), 1);
+        Files.write(file, new byte[SIZE / 2]);
+        previous.getSegments().get(0).setPosition(SIZE / 2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            previous.store(file, channel);
+        }
+
+        final Map<String, String> digests = DownloadUtils.downloadToFile(client, url(), file,
+                new ProgressAggregator(new StubListener()), 1).get();
+
+        assertEquals(0, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file));
+        assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+        assertFalse(Files.exists(DownloadState.stateFileFor(file)));
+    }
+
+    @Test
+    void testReuseConnectionOfSharedClient() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+        final Path file = tempFolder.resolve("reuse.zip");
+
+        DownloadUtils.probe(client, url());
+        DownloadUtils.downloadToFile(client, url(), file, new ProgressAggregator(new StubListener()), 1).get();
+
+        // probe, probe again before downloading, download -- all over the same pooled connection
+        assertEquals(3, server.getRequestCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, server.takeRequest().getSequenceNumber());
+        }
+    }
+
+    @Test
+    void testRaceSelectsFastestSource() throws Exception {
+        final MockWebServer mirror = new MockWebServer();
+        mirror.start();
+        try {
+            server.setDispatcher(new ContentDispatcher(true) {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    return super.dispatch(request).throttleBody(16 * 1024, 1, TimeUnit.SECONDS);
+                }
+            });
+            mirror.setDispatcher(new ContentDispatcher(true));
+            final DownloadSources sources =
+                    new DownloadSources(List.of(url(), mirrorUrl(mirror)), new HostStatistics());
+            final Path file = tempFolder.resolve("raced.zip");
+
+            DownloadUtils.downloadToFile(client, sources, file, new ProgressAggregator(new StubListener()), 4,
+                    Set.of(), BandwidthLimiter.unlimited()).get();
+
+            // the slow server only got the race request, everything else went to the mirror
+            assertEquals(1, server.getRequestCount());
+            assertEquals(mirrorUrl(mirror), sources.getPreferred());
+            assertArrayEquals(content, Files.readAllBytes(file));
+        } finally {
+            mirror.shutdown();
+        }
+    }
+
+    @Test
+    void testSegmentsFailOverToMirror() throws Exception {
+        final MockWebServer mirror = new MockWebServer();
+        mirror.start();
+        try {
+            final AtomicInteger downloads = new AtomicInteger();
+            // the server wins the race, but fails all further downloads
+            server.setDispatcher(new ContentDispatcher(true) {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if ("GET".equals(request.getMethod()) && downloads.getAndIncrement() > 0) {
+                        return new MockResponse().setResponseCode(500);
+                    }
+                    return super.dispatch(request);
+                }
+            });
+            mirror.setDispatcher(new ContentDispatcher(true) {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    final MockResponse response = super.dispatch(request);
+                    return request.getSequenceNumber() == 0 ? response.setBodyDelay(1, TimeUnit.SECONDS) : response;
+                }
+            });
+            final HostStatistics statistics = new HostStatistics();
+            final DownloadSources sources = new DownloadSources(List.of(url(), mirrorUrl(mirror)), statistics);
+            final Path file = tempFolder.resolve("failover.zip");
+
+            final Map<String, String> digests = DownloadUtils.downloadToFile(client, sources, file,
+                    new ProgressAggregator(new StubListener()), 4, Set.of(FileDigest.SHA_256),
+                    BandwidthLimiter.unlimited()).get();
+
+            assertArrayEquals(content, Files.readAllBytes(file));
+            assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+            assertEquals(List.of(mirrorUrl(mirror)), sources.getAvailable());
+            assertTrue(statistics.getBytesPerSecond(mirrorUrl(mirror)).isPresent());
+        } finally {
+            mirror.shutdown();
+        }
+    }
+
+    @Test
+    void testRetryContinuesFromLastByte() throws Exception {
+        final AtomicInteger downloads = new AtomicInteger();
+        // the only source drops the connection half way through the first download
+        server.setDispatcher(new ContentDispatcher(true) {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final MockResponse response = super.dispatch(request);
+                if ("GET".equals(request.getMethod()) && downloads.getAndIncrement() == 0) {
+                    return response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+                return response;
+            }
+        });
+        final Path file = tempFolder.resolve("retry.zip");
+
+        final Map<String, String> digests = DownloadUtils.downloadToFile(client, url(), file,
+                new ProgressAggregator(new StubListener()), 1).get();
+
+        assertArrayEquals(content, Files.readAllBytes(file));
+        assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+        // the first request is for the whole file, the retry only for what is still missing
+        assertEquals(1, rangeRequests.get());
+        assertTrue(requestedBytes.get() < SIZE, "requested " + requestedBytes.get() + " bytes");
+    }
+
+    @Test
+    void testCancelAbortsSegments() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            private final Dispatcher content = new ContentDispatcher(true);
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                final MockResponse response = content.dispatch(request);
+                // far slower than the read timeout would ever notice
+                return "HEAD".equals(request.getMethod()) ? response : response.throttleBody(1024, 1, TimeUnit.SECONDS);
+            }
+        });
+        final Path file = tempFolder.resolve("cancelled.zip.part");
+        final CancellableListener listener = new CancellableListener();
+        final CompletableFuture<Map<String, String>> download = DownloadUtils.downloadToFile(client, url(), file,
+                new ProgressAggregator(listener), 4);
+        while (rangeRequests.get() < 4) {
+            Thread.sleep(10);
+        }
+
+        final long start = System.nanoTime();
+        listener.cancel();
+        download.get(5, TimeUnit.SECONDS);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        // the progress is kept to resume later
+        assertTrue(Files.exists(DownloadState.stateFileFor(file)));
+    }
+
+    @Test
+    void testDownloadToConsumerWithTee() throws Exception {
+        server.setDispatcher(new ContentDispatcher(false));
+        final Path tee = tempFolder.resolve("tee.zip");
+        final byte[] consumed = new byte[1024];
+
+        // the consumer reads only the start, the rest still has to end up in the tee file
+        final Map<String, String> digests = DownloadUtils.downloadToConsumer(client, url(), tee,
+                new ProgressAggregator(new StubListener()), Set.of(FileDigest.SHA_256, "MD5"),
+                BandwidthLimiter.unlimited(), in -> assertEquals(consumed.length, in.readNBytes(consumed, 0, consumed.length)));
+
+        assertArrayEquals(Arrays.copyOf(content, consumed.length), consumed);
+        assertArrayEquals(content, Files.readAllBytes(tee));
+        assertEquals(sha256(content), digests.get(FileDigest.SHA_256));
+        assertEquals(2, digests.size());
+    }
+
+    @Test
+    void testProbe() throws Exception {
+        server.setDispatcher(new ContentDispatcher(true));
+
+        final RemoteResource resource = DownloadUtils.probe(client, url());
+
+        assertEquals(SIZE, resource.getContentLength());
+        assertTrue(resource.acceptsRanges());
+    }
+
+    @Test
+    void testProbeWithoutRangeSupport() throws Exception {
+        server.setDispatcher(new ContentDispatcher(false));
+
+        assertFalse(DownloadUtils.probe(client, url()).acceptsRanges());
+    }
+
+    private URL url() {
+        return server.url("/terasology.zip").url();
+    }
+
+    private static URL mirrorUrl(MockWebServer mirror) {
+        return mirror.url("/terasology.zip").url();
+    }
+
+    static String sha256(byte[] data) throws NoSuchAlgorithmException {
+        return ContentHasher.toHex(MessageDigest.getInstance(FileDigest.SHA_256).digest(data));
+    }
+
+    /**
+     * Serves {@link #content}, honoring single byte range requests if {@code acceptRanges} is set and the
+     * {@code If-Range} validator (if any) matches the current {@link #etag}.
+     */
+    private class ContentDispatcher extends Dispatcher {
+        private final boolean acceptRanges;
+
+        ContentDispatcher(boolean acceptRanges) {
+            this.acceptRanges = acceptRanges;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            final MockResponse response = new MockResponse();
+            response.setHeader("ETag", etag);
+            if (acceptRanges) {
+                response.setHeader("Accept-Ranges", "bytes");
+            }
+            if ("HEAD".equals(request.getMethod())) {
+                return response.setHeader("Content-Length", content.length);
+            }
+            final String range = request.getHeader("Range");
+            final String ifRange = request.getHeader("If-Range");
+            if (acceptRanges && range != null && (ifRange == null || ifRange.equals(etag))) {
+                final Matcher matcher = RANGE.matcher(range);
+                if (matcher.matches()) {
+                    rangeRequests.incrementAndGet();
+                    final int start = Integer.parseInt(matcher.group(1));
+                    final int end = Integer.parseInt(matcher.group(2));
+                    requestedBytes.addAndGet(end - start + 1);
+                    return response.setResponseCode(206)
+                            .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                            .setBody(new Buffer().write(content, start, end - start + 1));
+                }
+            }
+            return response.setBody(new Buffer().write(content));
+        }
+    }
+
+    private static class CancellableListener extends StubListener {
+        private final Set<Runnable> actions = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+            actions.forEach(Runnable::run);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public Registration onCancel(Runnable action) {
+            actions.add(action);
+            if (cancelled) {
+                action.run();
+            }
+            return () -> actions.remove(action);
+        }
+    }
+
+    private static class StubListener implements ProgressListener {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
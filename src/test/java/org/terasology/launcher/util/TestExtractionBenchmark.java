@@ -0,0 +1,193 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.Benchmark;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the {@link ZipExtractor} against the single-threaded {@link ArchiveCopyVisitor} walk over a zipfs
+ * {@link FileSystem} it replaced.
+ * <p>
+ * The archive is synthetic, but shaped like a game package: many small, compressible files (modules, assets,
+ * configuration) plus a few dozen large libraries. Its uncompressed size is {@code -Dbenchmark.extractMiB} MiB (256 by
+ * default). The extractor is measured with a single thread, to separate the gain of parallel inflation from the cost
+ * of the file system walk, and with one thread per core. Repairing the extracted directory is measured as well; with
+ * the {@link ExtractionManifest} in place, it only compares file attributes.
+ */
+class TestExtractionBenchmark {
+
+    private static final long SIZE = Integer.getInteger("benchmark.extractMiB", 256) * 1024L * 1024L;
+    private static final int SMALL_FILES = 4000;
+    private static final int LARGE_FILES = 40;
+    private static final int WARMUP_ITERATIONS = 1;
+    private static final int ITERATIONS = 3;
+
+    @TempDir
+    static Path tempFolder;
+
+    private static Path archive;
+
+    @BeforeAll
+    static void setupArchive() throws IOException {
+        archive = tempFolder.resolve("terasology-omega-1.0.0-stable.zip");
+        final Random random = new Random(42);
+        final long smallSize = SIZE / 4 / SMALL_FILES;
+        final long largeSize = SIZE * 3 / 4 / LARGE_FILES;
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (int i = 0; i < SMALL_FILES; i++) {
+                zip.putNextEntry(new ZipEntry("modules/module" + i % 100 + "/assets/file" + i + ".json"));
+                // text-like content, which compresses well
+                final byte[] content = new byte[(int) smallSize];
+                for (int j = 0; j < content.length; j++) {
+                    content[j] = (byte) ('a' + random.nextInt(8));
+                }
+                zip.write(content);
+                zip.closeEntry();
+            }
+            for (int i = 0; i < LARGE_FILES; i++) {
+                zip.putNextEntry(new ZipEntry("libs/library" + i + ".jar"));
+                // jars are compressed already, so they hardly shrink any further
+                final byte[] content = new byte[(int) largeSize];
+                random.nextBytes(content);
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Benchmark
+    void benchmarkArchiveCopyVisitor() throws IOException {
+        report("zipfs walk (ArchiveCopyVisitor)", measure(target -> {
+            Files.createDirectories(target);
+            try (FileSystem fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null)) {
+                for (Path rootDirectory : fileSystem.getRootDirectories()) {
+                    Files.walkFileTree(rootDirectory, new ArchiveCopyVisitor(target));
+                }
+            }
+        }));
+    }
+
+    @Benchmark
+    void benchmarkSingleThread() throws IOException {
+        report("ZipExtractor, 1 thread", measure(target -> new ZipExtractor(1).extract(archive, target)));
+    }
+
+    @Benchmark
+    void benchmarkAllCores() throws IOException {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        report("ZipExtractor, 1 thread per core (" + threads + ")", measure(target ->
+                new ZipExtractor(threads).extract(archive, target)));
+    }
+
+    @Benchmark
+    void benchmarkRepairIntact() throws IOException {
+        final Path target = tempFolder.resolve("installed");
+        new ZipExtractor().extract(archive, target);
+        final long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            new ZipExtractor().repair(archive, target, new StubListener(), Set.of());
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        FileUtils.delete(target);
+        report("ZipExtractor, repair of intact directory", nanos);
+    }
+
+    private static long[] measure(Extraction extraction) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(extraction);
+        }
+        final long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            nanos[i] = run(extraction);
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static long run(Extraction extraction) throws IOException {
+        final Path target = tempFolder.resolve("extracted");
+        final long start = System.nanoTime();
+        extraction.extractTo(target);
+        final long nanos = System.nanoTime() - start;
+        try (var files = Files.walk(target)) {
+            assertEquals(SMALL_FILES + LARGE_FILES, files.filter(Files::isRegularFile)
+                    .filter(file -> !file.endsWith(ExtractionManifest.FILE_NAME))
+                    .count());
+        }
+        FileUtils.delete(target);
+        return nanos;
+    }
+
+    private static void report(String name, long[] nanos) {
+        final long median = nanos[nanos.length / 2];
+        System.out.printf("%-40s median %7.1f ms, %7.1f MiB/s (min %7.1f ms, max %7.1f ms)%n", name,
+                median / 1e6, SIZE / 1024d / 1024d / (median / 1e9), nanos[0] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Extraction {
+        void extractTo(Path target) throws IOException;
+    }
+
+    /**
+     * The walk over a zipfs {@link FileSystem} which the launcher extracted packages with before the
+     * {@link ZipExtractor}.
+     */
+    private static class ArchiveCopyVisitor extends SimpleFileVisitor<Path> {
+        private final Path targetLocation;
+
+        ArchiveCopyVisitor(Path targetLocation) {
+            this.targetLocation = targetLocation;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Files.copy(file, Path.of(targetLocation.toString() + file.toString()), StandardCopyOption.REPLACE_EXISTING);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            Files.createDirectories(Path.of(targetLocation.toString() + dir.toString()));
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    private static class StubListener implements ProgressListener {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -13,6 +13,8 @@ import org.spf4j.log.Level;
 import org.spf4j.test.log.TestLoggers;
 import org.spf4j.test.matchers.LogMatchers;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryNotEmptyException;
@@ -273,6 +275,36 @@ class TestFileUtils {
         assertEquals(file2Contents, Files.readAllLines(extractedFileInFolder).get(0));
     }
 
+    @Test
+    void testExtractStream(@TempDir Path outputDir) throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+            zipOutputStream.putNextEntry(new ZipEntry("folder/"));
+            zipOutputStream.closeEntry();
+            zipOutputStream.putNextEntry(new ZipEntry("folder/fileInFolder"));
+            zipOutputStream.write(SAMPLE_TEXT.getBytes());
+            zipOutputStream.closeEntry();
+        }
+
+        FileUtils.extractZipStreamTo(new ByteArrayInputStream(archive.toByteArray()), outputDir);
+
+        assertEquals(SAMPLE_TEXT, Files.readAllLines(outputDir.resolve("folder/fileInFolder")).get(0));
+    }
+
+    @Test
+    void testExtractStreamRejectsEntriesOutsideTarget(@TempDir Path outputDir) throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+            zipOutputStream.putNextEntry(new ZipEntry("../evil"));
+            zipOutputStream.write(SAMPLE_TEXT.getBytes());
+            zipOutputStream.closeEntry();
+        }
+
+        assertThrows(IOException.class,
+                () -> FileUtils.extractZipStreamTo(new ByteArrayInputStream(archive.toByteArray()), outputDir));
+        assertFalse(Files.exists(outputDir.resolveSibling("evil")));
+    }
+
     private void removeAclS(AclFileAttributeView view, boolean removeRead) throws IOException {
         var entries = new ArrayList<AclEntry>();
         for (var acl : view.getAcl()) {
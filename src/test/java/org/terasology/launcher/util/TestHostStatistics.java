@@ -0,0 +1,123 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestHostStatistics {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIB = 1024 * 1024;
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void testRankByThroughput() throws Exception {
+        final HostStatistics statistics = new HostStatistics();
+        final URL slow = new URL("https://slow.example.com/terasology.zip");
+        final URL fast = new URL("https://fast.example.com/terasology.zip");
+        final URL unknown = new URL("https://new.example.com/terasology.zip");
+        statistics.recordTransfer(slow, MIB, SECOND);
+        statistics.recordTransfer(fast, 10 * MIB, SECOND);
+
+        assertEquals(List.of(unknown, fast, slow), statistics.rank(List.of(slow, fast, unknown)));
+    }
+
+    @Test
+    void testFailuresLowerRank() throws Exception {
+        final HostStatistics statistics = new HostStatistics();
+        final URL a = new URL("https://a.example.com/terasology.zip");
+        final URL b = new URL("https://b.example.com/terasology.zip");
+        statistics.recordTransfer(a, 3 * MIB, SECOND);
+        statistics.recordTransfer(b, 2 * MIB, SECOND);
+        statistics.recordFailure(a);
+
+        assertEquals(List.of(b, a), statistics.rank(List.of(a, b)));
+    }
+
+    @Test
+    void testSmallTransfersAreIgnored() throws Exception {
+        final HostStatistics statistics = new HostStatistics();
+        final URL url = new URL("https://example.com/terasology.zip");
+        statistics.recordTransfer(url, HostStatistics.MIN_SAMPLE_BYTES - 1, 1);
+
+        assertFalse(statistics.getBytesPerSecond(url).isPresent());
+    }
+
+    @Test
+    void testStoreAndLoad() throws Exception {
+        final Path file = tempFolder.resolve("mirror-statistics.properties");
+        final HostStatistics statistics = new HostStatistics();
+        final URL url = new URL("https://example.com:8443/terasology.zip");
+        statistics.recordTransfer(url, MIB, SECOND);
+        statistics.store(file);
+
+        final HostStatistics loaded = HostStatistics.load(file);
+
+        assertEquals(MIB, loaded.getBytesPerSecond(url).orElseThrow(), 1);
+        assertFalse(loaded.getBytesPerSecond(new URL("https://example.com/terasology.zip")).isPresent());
+    }
+
+    @Test
+    void testSourcesSkipFailedUrls() throws Exception {
+        final URL a = new URL("https://a.example.com/terasology.zip");
+        final URL b = new URL("https://b.example.com/terasology.zip");
+        final DownloadSources sources = new DownloadSources(List.of(a, b), new HostStatistics());
+
+        assertEquals(b, sources.next(a));
+        sources.demote(a);
+        assertEquals(List.of(b, a), sources.getAvailable());
+        sources.fail(b);
+        assertFalse(sources.hasAlternativeTo(a));
+        assertEquals(a, sources.next(b));
+        sources.fail(a);
+        assertNull(sources.next(a));
+    }
+
+    @Test
+    void testThroughputCollapse() throws Exception {
+        final long[] now = {0};
+        final ThroughputMonitor monitor = new ThroughputMonitor(() -> true, () -> now[0]);
+        now[0] += ThroughputMonitor.WINDOW_NANOS;
+        monitor.update(10 * MIB, 0);
+        // time spent waiting for the bandwidth limiter is no collapse
+        now[0] += 10 * ThroughputMonitor.WINDOW_NANOS;
+        monitor.update(10 * MIB, 9 * ThroughputMonitor.WINDOW_NANOS);
+
+        now[0] += ThroughputMonitor.WINDOW_NANOS;
+        assertThrows(ThroughputMonitor.SlowSourceException.class, () -> monitor.update(MIB, 0));
+        assertEquals(21 * MIB, monitor.getBytes());
+        assertTrue(monitor.getNanos() > 0);
+    }
+
+    @Test
+    void testStallWithoutAlternative() throws Exception {
+        final long[] now = {0};
+        final ThroughputMonitor monitor = new ThroughputMonitor(() -> false, () -> now[0],
+                ThroughputMonitor.MIN_BYTES_PER_SECOND);
+        now[0] += ThroughputMonitor.STALL_NANOS;
+        monitor.update(10 * MIB, 0);
+        // time spent waiting for the bandwidth limiter is no stall
+        now[0] += 10 * ThroughputMonitor.STALL_NANOS;
+        monitor.update(MIB, 10 * ThroughputMonitor.STALL_NANOS - TimeUnit.SECONDS.toNanos(1));
+        now[0] += ThroughputMonitor.STALL_NANOS;
+        monitor.update(1024, 0);
+
+        now[0] += ThroughputMonitor.STALL_NANOS;
+        assertThrows(ThroughputMonitor.StalledException.class, () -> monitor.update(1024, 0));
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestMappedZip {
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void testReadsLikeZipFile() throws IOException {
+        final Path archive = tempFolder.resolve("archive.zip");
+        final Random random = new Random(3);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.setComment("a comment before the end of the central directory");
+            zip.putNextEntry(new ZipEntry("libs/"));
+            zip.closeEntry();
+            for (int i = 0; i < 20; i++) {
+                zip.putNextEntry(new ZipEntry("libs/file" + i + ".jar"));
+                final byte[] content = new byte[random.nextInt(100_000)];
+                random.nextBytes(content);
+                zip.write(content);
+                zip.closeEntry();
+            }
+            final byte[] stored = "stored content".getBytes(StandardCharsets.UTF_8);
+            final ZipEntry entry = new ZipEntry("modules/ümlaut/stored.txt");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            final CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(stored);
+            zip.closeEntry();
+        }
+
+        try (MappedZip mapped = MappedZip.open(archive); ZipFile expected = new ZipFile(archive.toFile())) {
+            assertEquals(expected.size(), mapped.getEntryCount());
+            long total = 0;
+            for (int i = 0; i < mapped.getEntryCount(); i++) {
+                final ZipEntry entry = expected.getEntry(mapped.getName(i));
+                assertEquals(entry.isDirectory(), mapped.isDirectory(i));
+                assertEquals(entry.getSize(), mapped.getSize(i));
+                assertEquals(entry.getCompressedSize(), mapped.getCompressedSize(i));
+                assertEquals(entry.getCrc(), mapped.getCrc(i));
+                assertEquals(entry.getTimeLocal(), mapped.getTimeLocal(i));
+                assertEquals(i, mapped.find(entry.getName()));
+                try (InputStream in = expected.getInputStream(entry); InputStream actual = mapped.getInputStream(i)) {
+                    assertArrayEquals(in.readAllBytes(), actual.readAllBytes());
+                }
+                total += entry.isDirectory() ? 0 : entry.getSize();
+            }
+            assertEquals(total, mapped.getUncompressedSize());
+            assertEquals(mapped.find("modules/ümlaut/stored.txt"), mapped.findEndingWith("stored.txt"));
+            assertEquals(-1, mapped.find("libs"));
+            assertEquals(-1, mapped.findEndingWith("missing.txt"));
+        }
+    }
+
+    @Test
+    void testEmptyArchive() throws IOException {
+        final Path archive = tempFolder.resolve("empty.zip");
+        new ZipOutputStream(Files.newOutputStream(archive)).close();
+
+        try (MappedZip mapped = MappedZip.open(archive)) {
+            assertEquals(0, mapped.getEntryCount());
+            assertEquals(0, mapped.getUncompressedSize());
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        final Path notAZip = Files.writeString(tempFolder.resolve("archive.zip"), "not a ZIP file");
+        final Path empty = Files.createFile(tempFolder.resolve("empty"));
+
+        assertThrows(IOException.class, () -> MappedZip.open(notAZip));
+        assertThrows(IOException.class, () -> MappedZip.open(empty));
+    }
+
+    @Test
+    void testRejectsTruncatedEntry() throws IOException {
+        final Path archive = tempFolder.resolve("archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("file.txt"));
+            zip.write(new byte[10_000]);
+            zip.closeEntry();
+        }
+        // claim a bigger compressed size than there is data before the central directory
+        final byte[] bytes = Files.readAllBytes(archive);
+        final int header = bytes.length - 22 - (46 + "file.txt".length());
+        bytes[header + 22] = (byte) 0xff;
+        bytes[header + 23] = (byte) 0xff;
+        Files.write(archive, bytes);
+
+        try (MappedZip mapped = MappedZip.open(archive)) {
+            assertFalse(mapped.isDirectory(0));
+            assertTrue(mapped.getCompressedSize(0) > bytes.length);
+            assertThrows(IOException.class, () -> mapped.getInputStream(0));
+        }
+    }
+
+    @Test
+    void testClose() throws IOException {
+        final Path archive = tempFolder.resolve("archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("file.txt"));
+            zip.write("content".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        final MappedZip mapped = MappedZip.open(archive);
+        final InputStream in = mapped.getInputStream(0);
+
+        mapped.close();
+        mapped.close();
+
+        assertThrows(IOException.class, () -> mapped.getInputStream(0));
+        assertThrows(IllegalStateException.class, () -> mapped.getName(0));
+        // the stream keeps the mapping until it is closed itself
+        assertEquals("content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        in.close();
+        assertThrows(IOException.class, in::read);
+        Files.delete(archive);
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestPackageCache {
+
+    private static final Instant NOW = Instant.parse("2021-06-01T12:00:00Z");
+    private static final String OLD = "terasology-omega-1.0.0-stable.zip";
+    private static final String MIDDLE = "terasology-omega-1.1.0-stable.zip";
+    private static final String NEW = "terasology-omega-1.2.0-stable.zip";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private long maxBytes;
+    private boolean keepInstalled = true;
+    private final Set<String> installed = new HashSet<>();
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws IOException {
+        final PackageCache cache = newCache();
+        addPackage(OLD, 100, NOW.minusSeconds(300));
+        addPackage(MIDDLE, 100, NOW.minusSeconds(200));
+        addPackage(NEW, 100, NOW.minusSeconds(100));
+        maxBytes = 250;
+
+        cache.hit(cacheDirectory.resolve(OLD));
+        cache.trim();
+
+        assertTrue(Files.exists(cacheDirectory.resolve(OLD)));
+        assertFalse(Files.exists(cacheDirectory.resolve(MIDDLE)));
+        assertFalse(Files.exists(FileDigest.digestFileFor(cacheDirectory.resolve(MIDDLE))));
+        assertTrue(Files.exists(cacheDirectory.resolve(NEW)));
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getEvictions());
+        assertEquals(100, cache.getStatistics().getEvictedBytes());
+    }
+
+    @Test
+    void testEvictsInstalledReleasesFirst() throws IOException {
+        final PackageCache cache = newCache();
+        addPackage(OLD, 100, NOW.minusSeconds(300));
+        addPackage(NEW, 100, NOW.minusSeconds(100));
+        installed.add(NEW);
+        maxBytes = 150;
+
+        cache.trim();
+
+        assertTrue(Files.exists(cacheDirectory.resolve(OLD)));
+        assertFalse(Files.exists(cacheDirectory.resolve(NEW)));
+    }
+
+    @Test
+    void testDoesNotKeepInstalledReleases() throws IOException {
+        final PackageCache cache = newCache();
+        addPackage(OLD, 100, NOW);
+        addPackage(NEW, 100, NOW);
+        installed.add(NEW);
+        keepInstalled = false;
+
+        cache.pin(cacheDirectory.resolve(NEW));
+        cache.trim();
+        assertTrue(Files.exists(cacheDirectory.resolve(NEW)));
+
+        cache.unpin(cacheDirectory.resolve(NEW));
+        assertFalse(Files.exists(cacheDirectory.resolve(NEW)));
+        assertTrue(Files.exists(cacheDirectory.resolve(OLD)));
+    }
+
+    @Test
+    void testDoesNotEvictPinnedPackages() throws IOException {
+        final PackageCache cache = newCache();
+        addPackage(OLD, 100, NOW.minusSeconds(300));
+        addPackage(NEW, 100, NOW.minusSeconds(100));
+        maxBytes = 50;
+
+        cache.pin(cacheDirectory.resolve(NEW));
+        cache.miss(cacheDirectory.resolve(NEW));
+        cache.trim();
+
+        assertFalse(Files.exists(cacheDirectory.resolve(OLD)));
+        assertTrue(Files.exists(cacheDirectory.resolve(NEW)));
+        assertEquals(1, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    void testRemoveOrphans() throws IOException {
+        final PackageCache cache = newCache();
+        final Path stale = cacheDirectory.resolve(OLD + ".part");
+        Files.write(stale, new byte[10]);
+        Files.writeString(DownloadUtils.getStateFileFor(stale), "");
+        Files.setLastModifiedTime(stale, FileTime.from(NOW.minus(PackageCache.ORPHAN_AGE).minusSeconds(1)));
+        final Path resumable = cacheDirectory.resolve(MIDDLE + ".part");
+        Files.write(resumable, new byte[10]);
+        Files.writeString(DownloadUtils.getStateFileFor(resumable), "");
+        Files.setLastModifiedTime(resumable, FileTime.from(NOW.minusSeconds(3600)));
+        final Path stream = cacheDirectory.resolve(NEW + ".part");
+        Files.write(stream, new byte[10]);
+        final Path pinned = cacheDirectory.resolve("terasology-omega-2.0.0-stable.zip.part");
+        Files.write(pinned, new byte[10]);
+        cache.pin(cacheDirectory.resolve("terasology-omega-2.0.0-stable.zip"));
+        final Path patch = cacheDirectory.resolve("terasology-omega-1.2.0-stable.from-1.1.0.patch");
+        Files.write(patch, new byte[10]);
+        final Path digest = FileDigest.digestFileFor(cacheDirectory.resolve(OLD));
+        Files.writeString(digest, "");
+        final Path journal = cacheDirectory.resolve("journal");
+        Files.writeString(journal, "");
+        final Path response = cacheDirectory.resolve("0123456789abcdef0123456789abcdef.1");
+        Files.writeString(response, "");
+        final Path statistics = cacheDirectory.resolve("mirror-statistics.properties");
+        Files.writeString(statistics, "");
+        final Path httpJournal = Files.createDirectories(cacheDirectory.resolve("http")).resolve("journal");
+        Files.writeString(httpJournal, "");
+
+        cache.removeOrphans();
+
+        for (Path removed : new Path[]{stale, DownloadUtils.getStateFileFor(stale), stream, patch, digest, journal,
+                response}) {
+            assertFalse(Files.exists(removed), removed + " was not removed");
+        }
+        for (Path kept : new Path[]{resumable, DownloadUtils.getStateFileFor(resumable), pinned, statistics,
+                httpJournal}) {
+            assertTrue(Files.exists(kept), kept + " was removed");
+        }
+    }
+
+    private PackageCache newCache() {
+        return new PackageCache(cacheDirectory, () -> maxBytes, () -> keepInstalled, () -> installed,
+                Clock.fixed(NOW, ZoneOffset.UTC), MoreExecutors.newDirectExecutorService());
+    }
+
+    private void addPackage(String name, int size, Instant lastUsed) throws IOException {
+        final Path file = cacheDirectory.resolve(name);
+        Files.write(file, new byte[size]);
+        FileDigest.of(file, Map.of(FileDigest.SHA_256, "00")).store(file);
+        Files.getFileAttributeView(file, BasicFileAttributeView.class)
+                .setTimes(null, FileTime.from(lastUsed), null);
+    }
+}
@@ -0,0 +1,224 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.tasks.ProgressAggregator;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestRemoteZip {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int JAR_SIZE = 512 * 1024;
+
+    @TempDir
+    Path tempFolder;
+
+    private final Random random = new Random(5);
+    private MockWebServer server;
+    private OkHttpClient client;
+    private byte[] archive;
+    private AtomicLong servedBytes;
+
+    @BeforeEach
+    void setup() throws IOException {
+        servedBytes = new AtomicLong();
+        server = new MockWebServer();
+        server.setDispatcher(new RangeDispatcher());
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void testFetchOnlyChangedEntries() throws Exception {
+        final byte[] engine = randomBytes(4 * JAR_SIZE);
+        final byte[] oldModule = randomBytes(JAR_SIZE);
+        final byte[] newModule = randomBytes(JAR_SIZE);
+        final byte[] config = "logLevel=INFO".repeat(100).getBytes();
+        final Path baseDir = tempFolder.resolve("base");
+        extract(zip(Map.of("libs/engine.jar", engine, "modules/Module.jar", oldModule, "config.txt", config)), baseDir);
+        archive = zip(Map.of("libs/engine.jar", engine, "modules/Module.jar", newModule, "config.txt", config,
+                "modules/Added.jar", randomBytes(1000)));
+
+        final RemoteZip zip = RemoteZip.open(client, DownloadUtils.probe(client, url()));
+        final RemoteZip.Plan plan = zip.plan(baseDir);
+
+        assertEquals(List.of("libs/engine.jar", "config.txt"), names(plan.getReused()));
+        assertEquals(List.of("modules/Module.jar", "modules/Added.jar"), names(plan.getFetched()));
+
+        final Path targetDir = tempFolder.resolve("target");
+        servedBytes.set(0);
+        plan.extractTo(targetDir, new ProgressAggregator(new StubListener()), BandwidthLimiter.unlimited());
+
+        assertArrayEquals(engine, Files.readAllBytes(targetDir.resolve("libs/engine.jar")));
+        assertArrayEquals(newModule, Files.readAllBytes(targetDir.resolve("modules/Module.jar")));
+        assertArrayEquals(config, Files.readAllBytes(targetDir.resolve("config.txt")));
+        assertTrue(Files.exists(targetDir.resolve("modules/Added.jar")));
+        assertEquals(plan.getFetchBytes(), servedBytes.get());
+        assertTrue(servedBytes.get() < archive.length / 2, "fetched " + servedBytes.get() + " bytes");
+    }
+
+    @Test
+    void testModifiedFilesAreFetched() throws Exception {
+        final byte[] engine = randomBytes(JAR_SIZE);
+        archive = zip(Map.of("libs/engine.jar", engine));
+        final Path baseDir = tempFolder.resolve("base");
+        extract(archive, baseDir);
+        final byte[] modified = engine.clone();
+        modified[42]++;
+        Files.write(baseDir.resolve("libs/engine.jar"), modified);
+
+        final RemoteZip.Plan plan = RemoteZip.open(client, DownloadUtils.probe(client, url())).plan(baseDir);
+
+        assertEquals(List.of("libs/engine.jar"), names(plan.getFetched()));
+        final Path targetDir = tempFolder.resolve("target");
+        plan.extractTo(targetDir, new ProgressAggregator(new StubListener()), BandwidthLimiter.unlimited());
+        assertArrayEquals(engine, Files.readAllBytes(targetDir.resolve("libs/engine.jar")));
+    }
+
+    @Test
+    void testCentralDirectory() throws Exception {
+        final byte[] content = randomBytes(1000);
+        archive = zip(Map.of("folder/file.bin", content));
+
+        final List<RemoteZip.Entry> entries = RemoteZip.open(client, DownloadUtils.probe(client, url())).getEntries();
+
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(1, entries.size());
+        assertEquals("folder/file.bin", entries.get(0).getName());
+        assertEquals(content.length, entries.get(0).getSize());
+        assertEquals(crc.getValue(), entries.get(0).getCrc());
+        assertFalse(entries.get(0).isDirectory());
+    }
+
+    private static List<String> names(List<RemoteZip.Entry> entries) {
+        return entries.stream().map(RemoteZip.Entry::getName).collect(Collectors.toList());
+    }
+
+    private byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A ZIP archive of the given entries, in a fixed order: the first entries stored, the rest deflated.
+     */
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        final Map<String, byte[]> ordered = new LinkedHashMap<>();
+        entries.keySet().stream().sorted((a, b) -> order(a) - order(b)).forEach(name -> ordered.put(name,
+                entries.get(name)));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : ordered.entrySet()) {
+                final ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (entry.getKey().endsWith(".jar")) {
+                    // jars are stored, as they are compressed already
+                    final CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int order(String name) {
+        return List.of("libs/engine.jar", "modules/Module.jar", "config.txt", "modules/Added.jar").indexOf(name);
+    }
+
+    private void extract(byte[] zip, Path directory) throws IOException {
+        final Path file = tempFolder.resolve("base.zip");
+        Files.write(file, zip);
+        FileUtils.extractZipTo(file, directory);
+    }
+
+    private URL url() {
+        return server.url("/terasology.zip").url();
+    }
+
+    /**
+     * Serves {@link #archive}, honoring single byte range requests, and counts the bytes served.
+     */
+    private class RangeDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            final MockResponse response = new MockResponse()
+                    .setHeader("Accept-Ranges", "bytes")
+                    .setHeader("ETag", "\"v1\"");
+            if ("HEAD".equals(request.getMethod())) {
+                return response.setHeader("Content-Length", archive.length);
+            }
+            final String range = request.getHeader("Range");
+            final Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            if (matcher == null || !matcher.matches()) {
+                servedBytes.addAndGet(archive.length);
+                return response.setBody(new Buffer().write(archive));
+            }
+            final int start = Integer.parseInt(matcher.group(1));
+            final int end = Math.min(Integer.parseInt(matcher.group(2)), archive.length - 1);
+            servedBytes.addAndGet(end - start + 1);
+            return response.setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + archive.length)
+                    .setBody(new Buffer().write(archive, start, end - start + 1));
+        }
+    }
+
+    private static class StubListener implements ProgressListener {
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestRetryPolicy {
+
+    @Test
+    void testDelayGrowsWithJitter() {
+        final Random random = new Random(3);
+        final RetryPolicy policy = new RetryPolicy(8, Duration.ofMillis(100), Duration.ofSeconds(2), () -> random);
+
+        for (int retry = 1; retry <= 8; retry++) {
+            final long ceiling = Math.min(2000, 100L << (retry - 1));
+            final long delay = policy.getDelayMillis(retry);
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling, "retry " + retry + " waits " + delay + " ms");
+        }
+        assertTrue(policy.canRetry(8));
+        assertFalse(policy.canRetry(9));
+    }
+
+    @Test
+    void testPauseEndsOnCancel() throws Exception {
+        final long start = System.nanoTime();
+        RetryPolicy.pause(Duration.ofMinutes(1).toMillis(), () -> System.nanoTime() - start > 50_000_000L);
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    }
+}
@@ -0,0 +1,193 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.tasks.Progress;
+import org.terasology.launcher.tasks.ProgressListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestZipExtractor {
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void testExtract() throws IOException {
+        final Map<String, byte[]> files = new HashMap<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 40; i++) {
+            final byte[] content = new byte[random.nextInt(200_000)];
+            random.nextBytes(content);
+            files.put("libs/" + (i % 3) + "/file" + i + ".jar", content);
+        }
+        files.put("Terasology.exe", new byte[0]);
+        final Path archive = writeArchive(files, "empty/", "libs/");
+        final RecordingListener listener = new RecordingListener(false);
+
+        assertTrue(new ZipExtractor(4).extract(archive, tempFolder.resolve("out"), listener));
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), Files.readAllBytes(tempFolder.resolve("out").resolve(file.getKey())));
+        }
+        assertTrue(Files.isDirectory(tempFolder.resolve("out/empty")));
+        final long total = files.values().stream().mapToLong(content -> content.length).sum();
+        assertEquals(Progress.Phase.EXTRACT, listener.last.getPhase());
+        assertEquals(total, listener.last.getTotal());
+        assertEquals(total, listener.last.getDone());
+    }
+
+    @Test
+    void testExtractUnmappableArchive() throws IOException {
+        final Map<String, byte[]> files = Map.of("libs/Terasology.jar", new byte[]{1, 2, 3}, "README", new byte[]{4});
+        final Path archive = writeArchive(files);
+        // entry counts of 0xffff refer to ZIP64 extensions, which are not mapped; ZipFile counts the entries instead
+        final byte[] content = Files.readAllBytes(archive);
+        Arrays.fill(content, content.length - 14, content.length - 10, (byte) 0xff);
+        Files.write(archive, content);
+        assertThrows(ZipException.class, () -> MappedZip.open(archive));
+
+        assertTrue(new ZipExtractor(2).extract(archive, tempFolder.resolve("out"), new RecordingListener(false)));
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            assertArrayEquals(file.getValue(), Files.readAllBytes(tempFolder.resolve("out").resolve(file.getKey())));
+        }
+    }
+
+    @Test
+    void testRejectsEntriesOutsideTarget() throws IOException {
+        final Path archive = writeArchive(Map.of("folder/../../evil", new byte[]{1}));
+
+        assertThrows(IOException.class,
+                () -> new ZipExtractor(2).extract(archive, tempFolder.resolve("out"), new RecordingListener(false)));
+        assertFalse(Files.exists(tempFolder.resolve("evil")));
+    }
+
+    @Test
+    void testCancel() throws IOException {
+        final Map<String, byte[]> files = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            files.put("file" + i, new byte[1000]);
+        }
+        final Path archive = writeArchive(files);
+        final RecordingListener listener = new RecordingListener(true);
+
+        assertFalse(new ZipExtractor(2).extract(archive, tempFolder.resolve("out"), listener));
+        try (var extracted = Files.list(tempFolder.resolve("out"))) {
+            assertEquals(0, extracted.filter(file -> !file.endsWith(ExtractionManifest.FILE_NAME)).count());
+        }
+    }
+
+    @Test
+    void testRepair() throws IOException {
+        final Path archive = writeArchive(Map.of(
+                "intact.txt", "intact".getBytes(StandardCharsets.UTF_8),
+                "changed.txt", "original".getBytes(StandardCharsets.UTF_8),
+                "libs/1/missing.jar", "missing".getBytes(StandardCharsets.UTF_8)));
+        final Path out = tempFolder.resolve("out");
+        assertTrue(new ZipExtractor(2).extract(archive, out, new RecordingListener(false)));
+        final FileTime intactTime = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(out.resolve("intact.txt"), intactTime);
+        Files.writeString(out.resolve("changed.txt"), "modified");
+        Files.delete(out.resolve("libs/1/missing.jar"));
+        Files.createDirectories(out.resolve("old"));
+        Files.writeString(out.resolve("old/removed.jar"), "removed");
+        Files.writeString(out.resolve(".installed"), "");
+        final RecordingListener listener = new RecordingListener(false);
+
+        assertTrue(new ZipExtractor(2).repair(archive, out, listener, Set.of(".installed")));
+
+        assertEquals("intact", Files.readString(out.resolve("intact.txt")));
+        assertEquals(intactTime, Files.getLastModifiedTime(out.resolve("intact.txt")));
+        assertEquals("original", Files.readString(out.resolve("changed.txt")));
+        assertEquals("missing", Files.readString(out.resolve("libs/1/missing.jar")));
+        assertFalse(Files.exists(out.resolve("old")));
+        assertTrue(Files.exists(out.resolve(".installed")));
+        assertEquals(listener.last.getTotal(), listener.last.getDone());
+    }
+
+    @Test
+    void testRepairTrustsManifest() throws IOException {
+        final Path archive = writeArchive(Map.of("file.txt", "original".getBytes(StandardCharsets.UTF_8)));
+        final Path out = tempFolder.resolve("out");
+        assertTrue(new ZipExtractor(1).extract(archive, out, new RecordingListener(false)));
+        final Path file = out.resolve("file.txt");
+        final FileTime time = Files.getLastModifiedTime(file);
+        // same size and modification time: the file is taken to be unchanged without reading it
+        Files.writeString(file, "modified");
+        Files.setLastModifiedTime(file, time);
+
+        assertTrue(new ZipExtractor(1).repair(archive, out, new RecordingListener(false), Set.of()));
+        assertEquals("modified", Files.readString(file));
+
+        // without the manifest, the file is checked against the entry's CRC-32
+        Files.delete(out.resolve(ExtractionManifest.FILE_NAME));
+        assertTrue(new ZipExtractor(1).repair(archive, out, new RecordingListener(false), Set.of()));
+        assertEquals("original", Files.readString(file));
+        assertTrue(Files.exists(out.resolve(ExtractionManifest.FILE_NAME)));
+    }
+
+    private Path writeArchive(Map<String, byte[]> files, String... directories) throws IOException {
+        final Path archive = tempFolder.resolve("archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (String directory : directories) {
+                zip.putNextEntry(new ZipEntry(directory));
+                zip.closeEntry();
+            }
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                zip.write(file.getValue());
+                zip.closeEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static class RecordingListener implements ProgressListener {
+        private final boolean cancelled;
+        private volatile Progress last;
+
+        RecordingListener(boolean cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void update(int progress) {
+        }
+
+        @Override
+        public void update(Progress progress) {
+            last = progress;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.launcher.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.launcher.Benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.Random;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the {@link MappedZip} reader against {@link ZipFile}/{@link JarFile} and a zipfs {@link FileSystem}.
+ * <p>
+ * Two uses are measured on a synthetic engine jar with {@value #CLASSES} small entries: looking up the version info of
+ * the jar, which happens for each installation the launcher lists, and reading all of its entries, as extraction and
+ * verification do. Each run opens the archive anew, as the launcher does.
+ */
+class TestZipReaderBenchmark {
+
+    private static final int CLASSES = 8000;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+    private static final String VERSION_INFO = "org/terasology/engine/version/versionInfo.properties";
+
+    @TempDir
+    static Path tempFolder;
+
+    private static Path jar;
+
+    @BeforeAll
+    static void setupJar() throws IOException {
+        jar = tempFolder.resolve("engine-5.1.0.jar");
+        final Random random = new Random(11);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < CLASSES; i++) {
+                zip.putNextEntry(new ZipEntry("org/terasology/engine/package" + i % 200 + "/Class" + i + ".class"));
+                final byte[] content = new byte[500 + random.nextInt(4000)];
+                for (int j = 0; j < content.length; j++) {
+                    content[j] = (byte) random.nextInt(32);
+                }
+                zip.write(content);
+                zip.closeEntry();
+            }
+            // the version info is written last by the build, so finding it means going through all entries
+            zip.putNextEntry(new ZipEntry(VERSION_INFO));
+            zip.write("engineVersion=5.1.0\n".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+
+    @Benchmark
+    void benchmarkVersionProbe() throws IOException {
+        report("probe: JarFile stream", measure(() -> {
+            try (JarFile file = new JarFile(jar.toFile())) {
+                final ZipEntry entry = file.stream()
+                        .filter(e -> e.getName().endsWith("versionInfo.properties")).findAny().orElseThrow();
+                try (InputStream in = file.getInputStream(entry)) {
+                    return load(in);
+                }
+            }
+        }));
+        report("probe: zipfs", measure(() -> {
+            try (FileSystem fileSystem = FileSystems.newFileSystem(jar, (ClassLoader) null);
+                 Stream<Path> paths = Files.walk(fileSystem.getPath("/"))) {
+                final Path entry = paths.filter(p -> p.toString().endsWith("versionInfo.properties"))
+                        .findAny().orElseThrow();
+                try (InputStream in = Files.newInputStream(entry)) {
+                    return load(in);
+                }
+            }
+        }));
+        report("probe: MappedZip", measure(() -> {
+            try (MappedZip zip = MappedZip.open(jar);
+                 InputStream in = zip.getInputStream(zip.findEndingWith("versionInfo.properties"))) {
+                return load(in);
+            }
+        }));
+    }
+
+    @Benchmark
+    void benchmarkReadAll() throws IOException {
+        final byte[] buffer = new byte[64 * 1024];
+        report("read all: ZipFile", measure(() -> {
+            long total = 0;
+            try (ZipFile file = new ZipFile(jar.toFile())) {
+                final Enumeration<? extends ZipEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    try (InputStream in = file.getInputStream(entries.nextElement())) {
+                        total += drain(in, buffer);
+                    }
+                }
+            }
+            return total;
+        }));
+        report("read all: zipfs", measure(() -> {
+            long total = 0;
+            try (FileSystem fileSystem = FileSystems.newFileSystem(jar, (ClassLoader) null);
+                 Stream<Path> paths = Files.walk(fileSystem.getPath("/"))) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    if (Files.isRegularFile(path)) {
+                        try (InputStream in = Files.newInputStream(path)) {
+                            total += drain(in, buffer);
+                        }
+                    }
+                }
+            }
+            return total;
+        }));
+        report("read all: MappedZip", measure(() -> {
+            long total = 0;
+            try (MappedZip zip = MappedZip.open(jar)) {
+                for (int i = 0; i < zip.getEntryCount(); i++) {
+                    try (InputStream in = zip.getInputStream(i)) {
+                        total += drain(in, buffer);
+                    }
+                }
+            }
+            return total;
+        }));
+    }
+
+    private static Object load(InputStream in) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(in);
+        assertEquals("5.1.0", properties.getProperty("engineVersion"));
+        return properties;
+    }
+
+    private static long drain(InputStream in, byte[] buffer) throws IOException {
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            total += n;
+        }
+        return total;
+    }
+
+    private static long[] measure(Read read) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            read.run();
+        }
+        final long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            read.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] nanos) {
+        System.out.printf("%-30s median %8.3f ms (min %8.3f ms, max %8.3f ms)%n", name,
+                nanos[nanos.length / 2] / 1e6, nanos[0] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        Object run() throws IOException;
+    }
+}